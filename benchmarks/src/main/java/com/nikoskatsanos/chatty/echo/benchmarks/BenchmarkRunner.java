@@ -0,0 +1,21 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks matching the given regular expression (all of them by default) with the {@link org.openjdk.jmh.profile.GCProfiler} attached, so
+ * that the allocation rate and the GC activity are reported along with the timings</p>
+ *
+ * @author nikkatsa
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String... args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(args.length > 0 ? args[0] : ".*").addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
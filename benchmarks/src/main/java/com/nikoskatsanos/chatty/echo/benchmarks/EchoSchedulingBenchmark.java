@@ -0,0 +1,80 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the scheduling path of {@link com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler}, from a decoded {@link
+ * io.netty.handler.codec.http.websocketx.TextWebSocketFrame} request to all of its echoes being flushed, on an {@link
+ * io.netty.channel.embedded.EmbeddedChannel} holding only the handler. Echoes have no delay, so a single operation emits a whole burst</p>
+ *
+ * @author nikkatsa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoSchedulingBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Param({"1", "100"})
+    private int times;
+
+    @Param({"false", "true"})
+    private boolean sequenced;
+
+    private EmbeddedChannel channel;
+    private ByteBuf request;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.channel = new EmbeddedChannel(new ChattyEchoHandler(new EchoScheduler()));
+        final byte[] json = JSON_MAPPER.writeValueAsBytes(new ChattyEchoInboundMessage("Hello Chatty Echo Server", this.times, 0L, this.sequenced));
+        this.request = Unpooled.directBuffer(json.length).writeBytes(json);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+        this.request.release();
+    }
+
+    @Benchmark
+    public int echo() {
+        this.channel.writeInbound(new TextWebSocketFrame(this.request.retainedDuplicate()));
+        this.channel.runPendingTasks();
+
+        int echoes = 0;
+        Object echo;
+        while ((echo = this.channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(echo);
+            echoes++;
+        }
+        return echoes;
+    }
+}
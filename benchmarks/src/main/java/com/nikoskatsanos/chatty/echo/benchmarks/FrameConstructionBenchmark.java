@@ -0,0 +1,92 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import com.nikoskatsanos.chatty.echo.codec.BinaryEchoFrameSource;
+import com.nikoskatsanos.chatty.echo.codec.JsonEchoFrameSource;
+import com.nikoskatsanos.chatty.echo.engine.EchoFrameSource;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the construction of a single echo frame by the {@link com.nikoskatsanos.chatty.echo.engine.EchoFrameSource}s, with and without the sequence
+ * header. The frame is released straight away, as the channel would after writing it</p>
+ *
+ * @author nikkatsa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameConstructionBenchmark {
+
+    @Param({"16", "1024"})
+    private int msgLength;
+
+    private EchoFrameSource json;
+    private EchoFrameSource sequencedJson;
+    private EchoFrameSource binary;
+    private EchoFrameSource sequencedBinary;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws IOException {
+        final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        final char[] msg = new char[this.msgLength];
+        Arrays.fill(msg, 'x');
+        final ChattyEchoOutboundMessage message = new ChattyEchoOutboundMessage(new String(msg));
+        this.json = new JsonEchoFrameSource(allocator, ChattyEchoHandler.encode(allocator, message), 1L, false);
+        this.sequencedJson = new JsonEchoFrameSource(allocator, ChattyEchoHandler.encode(allocator, message), 1L, true);
+
+        final byte[] payload = new byte[this.msgLength];
+        Arrays.fill(payload, (byte) 'x');
+        this.binary = new BinaryEchoFrameSource(allocator, allocator.directBuffer(this.msgLength).writeBytes(payload), 1L, false);
+        this.sequencedBinary = new BinaryEchoFrameSource(allocator, allocator.directBuffer(this.msgLength).writeBytes(payload), 1L, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.json.release();
+        this.sequencedJson.release();
+        this.binary.release();
+        this.sequencedBinary.release();
+    }
+
+    @Benchmark
+    public boolean json() {
+        return this.json.frame(this.sequence++).release();
+    }
+
+    @Benchmark
+    public boolean sequencedJson() {
+        return this.sequencedJson.frame(this.sequence++).release();
+    }
+
+    @Benchmark
+    public boolean binary() {
+        return this.binary.frame(this.sequence++).release();
+    }
+
+    @Benchmark
+    public boolean sequencedBinary() {
+        return this.sequencedBinary.frame(this.sequence++).release();
+    }
+}
@@ -0,0 +1,74 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoRequestDecoder;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares decoding an inbound request the way the server used to, by copying the frame into a {@link java.lang.String} and binding it to a {@link
+ * com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}, against the streaming {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoRequestDecoder}</p>
+ *
+ * @author nikkatsa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InboundDecodeBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Param({"16", "1024"})
+    private int msgLength;
+
+    private ByteBuf content;
+    private ChattyEchoRequestDecoder decoder;
+    private ChattyEchoRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        final char[] msg = new char[this.msgLength];
+        Arrays.fill(msg, 'x');
+        final byte[] json = JSON_MAPPER.writeValueAsBytes(new ChattyEchoInboundMessage(new String(msg), 100, 10L));
+        this.content = Unpooled.directBuffer(json.length).writeBytes(json);
+        this.decoder = new ChattyEchoRequestDecoder();
+        this.request = new ChattyEchoRequest();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.content.release();
+    }
+
+    @Benchmark
+    public ChattyEchoInboundMessage databind() throws IOException {
+        return JSON_MAPPER.readValue(this.content.toString(CharsetUtil.UTF_8), ChattyEchoInboundMessage.class);
+    }
+
+    @Benchmark
+    public ChattyEchoRequest streaming() throws IOException {
+        return this.decoder.decode(this.content.duplicate(), this.request);
+    }
+}
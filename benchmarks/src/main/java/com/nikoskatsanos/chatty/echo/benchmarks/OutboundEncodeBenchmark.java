@@ -0,0 +1,67 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares encoding a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage} into a {@link java.lang.String} backed {@link
+ * io.netty.handler.codec.http.websocketx.TextWebSocketFrame}, against encoding it straight into a pooled {@link io.netty.buffer.ByteBuf} the way {@link
+ * com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler} does</p>
+ *
+ * @author nikkatsa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutboundEncodeBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Param({"16", "1024"})
+    private int msgLength;
+
+    private ChattyEchoOutboundMessage message;
+    private ByteBufAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        final char[] msg = new char[this.msgLength];
+        Arrays.fill(msg, 'x');
+        this.message = new ChattyEchoOutboundMessage(new String(msg));
+        this.allocator = PooledByteBufAllocator.DEFAULT;
+    }
+
+    @Benchmark
+    public boolean string() throws IOException {
+        return new TextWebSocketFrame(JSON_MAPPER.writeValueAsString(this.message)).release();
+    }
+
+    @Benchmark
+    public boolean pooled() throws IOException {
+        final ByteBuf encoded = ChattyEchoHandler.encode(this.allocator, this.message);
+        return new TextWebSocketFrame(encoded).release();
+    }
+}
@@ -0,0 +1,110 @@
+package com.nikoskatsanos.chatty.echo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoServerInitializer;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>End to end throughput of the full <em>Chatty Echo Server</em> pipeline, as set up by {@link
+ * com.nikoskatsanos.chatty.echo.handlers.ChattyEchoServerInitializer}, on an {@link io.netty.channel.embedded.EmbeddedChannel}. The WebSocket handshake is
+ * done once at setup; each operation feeds a masked request frame, as a client would send it, and drains the encoded echoes.</p> <p>Run it with {@code -prof
+ * gc}, or through {@link com.nikoskatsanos.chatty.echo.benchmarks.BenchmarkRunner}, to see the allocation rate per echo</p>
+ *
+ * @author nikkatsa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerPipelineBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private static final String HANDSHAKE = "GET " + ChattyEchoServerInitializer.WEBSOCKET_PATH + " HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+            "Sec-WebSocket-Version: 13\r\n" +
+            "\r\n";
+
+    @Param({"1", "100"})
+    private int times;
+
+    @Param({"16", "1024"})
+    private int msgLength;
+
+    private EmbeddedChannel channel;
+    private ByteBuf requestFrame;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.channel = new EmbeddedChannel(new ChattyEchoServerInitializer(new EchoScheduler()));
+        this.channel.writeInbound(Unpooled.copiedBuffer(HANDSHAKE, CharsetUtil.US_ASCII));
+        if (this.drain() == 0) {
+            throw new IllegalStateException("WebSocket handshake did not complete");
+        }
+
+        final StringBuilder msg = new StringBuilder(this.msgLength);
+        for (int i = 0; i < this.msgLength; i++) {
+            msg.append('x');
+        }
+        final EmbeddedChannel client = new EmbeddedChannel(new WebSocket08FrameEncoder(true));
+        client.writeOutbound(new TextWebSocketFrame(JSON_MAPPER.writeValueAsString(new ChattyEchoInboundMessage(msg.toString(), this.times, 0L))));
+        this.requestFrame = Unpooled.directBuffer();
+        ByteBuf encoded;
+        while ((encoded = client.readOutbound()) != null) {
+            this.requestFrame.writeBytes(encoded);
+            encoded.release();
+        }
+        client.finishAndReleaseAll();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+        this.requestFrame.release();
+    }
+
+    @Benchmark
+    public int echo() {
+        this.channel.writeInbound(this.requestFrame.retainedDuplicate());
+        this.channel.runPendingTasks();
+        return this.drain();
+    }
+
+    private int drain() {
+        int drained = 0;
+        Object outbound;
+        while ((outbound = this.channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(outbound);
+            drained++;
+        }
+        return drained;
+    }
+}
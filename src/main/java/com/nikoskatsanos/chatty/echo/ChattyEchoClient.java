@@ -1,24 +1,41 @@
 package com.nikoskatsanos.chatty.echo;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoBinaryCodec;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.compression.ClientCompressionHandler;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.PacingDistribution;
 import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoClientHandler;
 import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoClientHandshaker;
+import com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator;
+import com.nikoskatsanos.chatty.echo.loadgen.LoadGeneratorConfig;
 import com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoPayload;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoScenario;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoSubscription;
+import com.nikoskatsanos.chatty.echo.transport.Transport;
 import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.util.CharsetUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -29,16 +46,21 @@ import org.apache.commons.cli.ParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Command line client that interacts with <em>Chatty Echo Server</em>. This class contains a main method where the user can send {@link
  * com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}s to the server. </p> <p>At startup the user needs to provide the port {@code --port ${PORT}} as
- * a command line argument</p>
+ * a command line argument</p> <p>With {@code --bench} the client runs headless as a {@link com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator}</p>
  *
  * @author nikkatsa
  */
@@ -46,13 +68,42 @@ public class ChattyEchoClient {
 
     private static final Logger log = LogManager.getFormatterLogger(ChattyEchoClient.class);
 
-    private static final Options CLI_OPTIONS = new Options().addOption(Option.builder("p").argName("port").longOpt("port").hasArg(true).required(true).type
-            (Integer.class).desc("Port to connect to the Chatty Echo Server").build());
+    private static final int DEFAULT_MAX_ECHO_BYTES = 64 * 1024 * 1024;
+
+    private static final Options CLI_OPTIONS = LoadGeneratorConfig.addCliOptions(new Options().addOption(Option.builder("p").argName("port").longOpt("port")
+            .hasArg(true).required(true).type(Integer.class).desc("Port to connect to the Chatty Echo Server").build()).addOption(Option.builder().longOpt
+            ("host").argName("host").hasArg(true).desc("Host of the Chatty Echo Server (default localhost)").build()).addOption(Option.builder().longOpt
+            ("transport").argName("transport").hasArg(true).desc(String.format("Network transport, one of %s or %s (default %s)", Arrays.toString(Transport
+                    .values()), Transport.AUTO, Transport.AUTO)).build()).addOption(Option.builder().longOpt("protocol").argName("protocol").hasArg(true).desc
+                    (String.format("Wire protocol, one of %s (default %s)", Arrays.toString(ChattyEchoProtocol.values()), ChattyEchoProtocol.JSON)).build())
+            .addOption(Option.builder().longOpt("echo-log-interval").argName("millis").hasArg(true).desc(String.format("At most one log line for " +
+                    "received echoes every that many milliseconds, 0 disables them (default %d)", EchoLogPolicy.DEFAULT_INTERVAL_MILLIS)).build())
+            .addOption(Option.builder().longOpt("trace-echoes").hasArg(false).desc("Logs every single received echo").build()).addOption(Option.builder()
+            .longOpt("compression").argName("true|false").hasArg(true).desc("Offers permessage-deflate to the server (default true)").build())
+            .addOption(Option.builder().longOpt("max-echo-size").argName("bytes").hasArg(true).desc(String.format("Maximum size of a received echo, after " +
+                    "its fragments are aggregated (default %d)", DEFAULT_MAX_ECHO_BYTES)).build()));
 
     private static final Options CHATTY_SERVER_OPTIONS = new Options().addOption(Option.builder("m").longOpt("msg").argName("msg").numberOfArgs(Option
             .UNLIMITED_VALUES).hasArgs().type(String.class).build()).addOption(Option.builder("t").longOpt("times").argName("times").hasArg(true).type
             (Integer.class).build()).addOption(Option.builder("d").longOpt("delay").argName("delay").hasArg(true).type(Long.class).build()).addOption(Option
-            .builder("q").longOpt("quit").argName("quit").hasArg(false).type(Boolean.class).build());
+            .builder().longOpt("delay-micros").argName("micros").hasArg(true).desc("Delay between echoes in microseconds").build()).addOption(Option.builder
+            ("r").longOpt("rate").argName("echoes/s").hasArg(true).desc("Echoes per second, instead of a delay").build()).addOption(Option.builder().longOpt
+            ("ramp-to").argName("echoes/s").hasArg(true).desc("Echoes per second the rate ramps to by the last echo").build()).addOption(Option.builder()
+            .longOpt("pacing").argName("pacing").hasArg(true).desc(String.format("How echoes are spread in time, one of %s", Arrays.toString(PacingDistribution
+                    .values()))).build()).addOption(Option.builder().longOpt("burst").argName("echoes").hasArg(true).desc("Echoes per group of BURSTY " +
+                    "pacing").build()).addOption(Option.builder("s").longOpt("sequenced").argName("sequenced").hasArg(false).desc("Asks for sequenced " +
+                    "echoes").build()).addOption(Option.builder("b")
+            .longOpt("broadcast").argName("topic").hasArg(true).desc("Broadcasts the echoes to the subscribers of the topic, * for all clients").build())
+            .addOption(Option.builder().longOpt("payload-size").argName("bytes").hasArg(true).desc("Asks the server to echo a generated payload of that " +
+                    "size instead of the message").build()).addOption(Option.builder().longOpt("payload-pattern").argName("pattern").hasArg(true).desc
+                    ("Pattern the generated payload repeats").build()).addOption(Option.builder().longOpt("payload-seed").argName("seed").hasArg(true).desc
+                    ("Seed of a generated random payload").build()).addOption(Option.builder().longOpt("payload-file").argName("file").hasArg(true).desc
+                    ("Asks the server to echo a file of its payload directory").build())
+            .addOption(Option.builder().longOpt("subscribe").argName("topic").hasArg(true).desc("Subscribes to the topic").build()).addOption(Option.builder()
+                    .longOpt("unsubscribe").argName("topic").hasArg(true).desc("Unsubscribes from the topic").build())
+            .addOption(Option.builder().longOpt("scenario").argName("file").hasArg(true).desc("Starts the scenario of the JSON file on the server").build())
+            .addOption(Option.builder().longOpt("stop").hasArg(false).desc("Stops the running scenario or echoes").build())
+            .addOption(Option.builder("q").longOpt("quit").argName("quit").hasArg(false).type(Boolean.class).build());
 
     private static final ObjectMapper mapper;
 
@@ -69,23 +120,43 @@ public class ChattyEchoClient {
             }
 
             final int port = Integer.parseInt(cli.getOptionValue("p"));
+            final String host = cli.getOptionValue("host", "localhost");
+
+            final Transport transport = Transport.select(cli.getOptionValue("transport", Transport.AUTO));
+            final boolean compression = Boolean.parseBoolean(cli.getOptionValue("compression", "true"));
+            if (cli.hasOption("bench")) {
+                new LoadGenerator(LoadGeneratorConfig.fromCli(cli, host, port, transport, compression)).run();
+                LogManager.shutdown();
+                System.exit(0);
+            }
+
+            final EventLoopGroup nioLoop = transport.newEventLoopGroup(1, new NamedThreadFactory(transport + "-Loop"));
+
+            final ChattyEchoProtocol protocol = ChattyEchoProtocol.valueOf(cli.getOptionValue("protocol", ChattyEchoProtocol.JSON.name()).toUpperCase());
 
-            final NioEventLoopGroup nioLoop = new NioEventLoopGroup(1, new NamedThreadFactory("NIO-Loop"));
+            final EchoLogPolicy echoLogPolicy = new EchoLogPolicy(cli.hasOption("trace-echoes"), Long.parseLong(cli.getOptionValue("echo-log-interval",
+                    String.valueOf(EchoLogPolicy.DEFAULT_INTERVAL_MILLIS))), TimeUnit.MILLISECONDS);
 
-            final URI chattyEchoServer = URI.create(String.format("ws://localhost:%d/echo", port));
+            final int maxEchoBytes = Integer.parseInt(cli.getOptionValue("max-echo-size", String.valueOf(DEFAULT_MAX_ECHO_BYTES)));
+
+            final URI chattyEchoServer = URI.create(String.format("ws://%s:%d/echo", host, port));
             final WebSocketClientHandshaker webSocketClientHandshaker = WebSocketClientHandshakerFactory.newHandshaker(chattyEchoServer, WebSocketVersion
-                    .V13, null, true, new DefaultHttpHeaders());
+                    .V13, protocol.getSubprotocol(), true, new DefaultHttpHeaders());
             final ChattyEchoClientHandshaker chattyEchoClientHandshaker = new ChattyEchoClientHandshaker(webSocketClientHandshaker);
 
-            final Bootstrap chattyEchoClient = new Bootstrap().group(nioLoop).channel(NioSocketChannel.class).handler(new ChannelInitializer<NioSocketChannel>() {
+            final Bootstrap chattyEchoClient = new Bootstrap().group(nioLoop).channel(transport.socketChannelClass()).option(ChannelOption
+                    .TCP_NODELAY, true).handler(new ChannelInitializer<SocketChannel>() {
                 @Override
-                protected void initChannel(final NioSocketChannel ch) throws Exception {
+                protected void initChannel(final SocketChannel ch) throws Exception {
                     final ChannelPipeline pipeline = ch.pipeline();
                     pipeline.addLast(new HttpClientCodec(512, 512, 512));
                     pipeline.addLast(new HttpObjectAggregator(16_384));
-                    pipeline.addLast(WebSocketClientCompressionHandler.INSTANCE);
+                    if (compression) {
+                        pipeline.addLast(ClientCompressionHandler.INSTANCE);
+                    }
                     pipeline.addLast(chattyEchoClientHandshaker);
-                    pipeline.addLast(new ChattyEchoClientHandler());
+                    pipeline.addLast(new WebSocketFrameAggregator(maxEchoBytes));
+                    pipeline.addLast(new ChattyEchoClientHandler(echoLogPolicy));
                 }
             });
 
@@ -102,14 +173,50 @@ public class ChattyEchoClient {
                 final CommandLine chattyServerOptions = cliParser.parse(CHATTY_SERVER_OPTIONS, line.split(" "));
                 if (chattyServerOptions.hasOption('q')) {
                     isQuit = true;
+                } else if (chattyServerOptions.hasOption("scenario") || chattyServerOptions.hasOption("stop")) {
+                    try {
+                        final String request = chattyServerOptions.hasOption("stop") ? mapper.writeValueAsString(Collections.singletonMap("stop", true)) :
+                                mapper.writeValueAsString(mapper.readValue(new File(chattyServerOptions.getOptionValue("scenario")), ChattyEchoScenario.class));
+                        log.info(">> %s", request);
+                        chattyEchoClientChannel.writeAndFlush(new TextWebSocketFrame(request));
+                    } catch (final Exception e) {
+                        log.warn(e.getMessage(), e);
+                    }
+                } else if (chattyServerOptions.hasOption("subscribe") || chattyServerOptions.hasOption("unsubscribe")) {
+                    try {
+                        final ChattyEchoSubscription subscription = new ChattyEchoSubscription(chattyServerOptions.getOptionValue("subscribe"),
+                                chattyServerOptions.getOptionValue("unsubscribe"));
+                        log.info(">> %s", subscription.toString());
+                        chattyEchoClientChannel.writeAndFlush(new TextWebSocketFrame(mapper.writeValueAsString(subscription)));
+                    } catch (final Exception e) {
+                        log.warn(e.getMessage(), e);
+                    }
                 } else {
                     try {
+                        final ChattyEchoPayload payload = chattyServerOptions.hasOption("payload-size") || chattyServerOptions.hasOption("payload-file") ?
+                                new ChattyEchoPayload(chattyServerOptions.hasOption("payload-size") ? Integer.valueOf(chattyServerOptions.getOptionValue
+                                        ("payload-size")) : null, chattyServerOptions.getOptionValue("payload-pattern"), chattyServerOptions.hasOption
+                                        ("payload-seed") ? Long.valueOf(chattyServerOptions.getOptionValue("payload-seed")) : null, chattyServerOptions
+                                        .getOptionValue("payload-file")) : null;
                         final ChattyEchoInboundMessage inboundMessage = new ChattyEchoInboundMessage(chattyServerOptions.hasOption('m') ? String.join(" ",
-                                chattyServerOptions.getOptionValues('m')) : "", chattyServerOptions.hasOption('t') ? Integer.parseInt(chattyServerOptions
-                                .getOptionValue('t')) : 0, chattyServerOptions.hasOption('d') ? Long.parseLong(chattyServerOptions.getOptionValue('d')) : 0L);
+                                chattyServerOptions.getOptionValues('m')) : payload == null ? "" : null, chattyServerOptions.hasOption('t') ? Integer
+                                .parseInt(chattyServerOptions.getOptionValue('t')) : 0, chattyServerOptions.hasOption('d') ? Long.parseLong
+                                (chattyServerOptions.getOptionValue('d')) : 0L, chattyServerOptions.hasOption('s'), chattyServerOptions.getOptionValue('b'),
+                                chattyServerOptions.hasOption("delay-micros") ? Long.valueOf(chattyServerOptions.getOptionValue("delay-micros")) : null,
+                                chattyServerOptions.hasOption('r') ? Double.valueOf(chattyServerOptions.getOptionValue('r')) : null, chattyServerOptions
+                                .getOptionValue("pacing"), chattyServerOptions.hasOption("burst") ? Integer.valueOf(chattyServerOptions.getOptionValue
+                                ("burst")) : null, payload, chattyServerOptions.hasOption("ramp-to") ? Double.valueOf(chattyServerOptions.getOptionValue
+                                ("ramp-to")) : null);
 
                         log.info(">> %s", inboundMessage.toString());
-                        chattyEchoClientChannel.writeAndFlush(new TextWebSocketFrame(mapper.writeValueAsString(inboundMessage)));
+                        // broadcasts, burst sizes, ramps and payloads can only be asked for with JSON requests, which the server accepts whatever the protocol
+                        if (protocol == ChattyEchoProtocol.BINARY && inboundMessage.getTopic() == null && inboundMessage.getBurst() == null &&
+                                inboundMessage.getPayload() == null && inboundMessage.getRampTo() == null) {
+                            chattyEchoClientChannel.writeAndFlush(new BinaryWebSocketFrame(encodeBinaryRequest(chattyEchoClientChannel.alloc(),
+                                    inboundMessage)));
+                        } else {
+                            chattyEchoClientChannel.writeAndFlush(new TextWebSocketFrame(mapper.writeValueAsString(inboundMessage)));
+                        }
                     } catch (final Exception e) {
                         log.warn(e.getMessage(), e);
                     }
@@ -121,14 +228,35 @@ public class ChattyEchoClient {
             nioLoop.shutdownGracefully();
         } catch (final ParseException e) {
             log.fatal(e.getMessage(), e);
+            LogManager.shutdown();
             throw new RuntimeException(printUsage(), e);
-        } catch (final InterruptedException e) {
+        } catch (final InterruptedException | FileNotFoundException e) {
             log.error(e.getMessage(), e);
         }
 
+        LogManager.shutdown();
         System.exit(0);
     }
 
+    /**
+     * <p>Encodes the message as a binary request. A rate or a delay in microseconds is sent as a delay in microseconds</p>
+     */
+    private static ByteBuf encodeBinaryRequest(final ByteBufAllocator allocator, final ChattyEchoInboundMessage inboundMessage) {
+        int flags = inboundMessage.isSequenced() ? ChattyEchoBinaryCodec.FLAG_SEQUENCED : 0;
+        if (inboundMessage.getPacing() != null) {
+            flags |= ChattyEchoBinaryCodec.pacingFlags(PacingDistribution.valueOf(inboundMessage.getPacing().toUpperCase()));
+        }
+        long delay = inboundMessage.getDelay();
+        if (inboundMessage.getRate() != null) {
+            delay = TimeUnit.NANOSECONDS.toMicros(EchoPacing.rateToIntervalNanos(inboundMessage.getRate()));
+            flags |= ChattyEchoBinaryCodec.FLAG_DELAY_MICROS;
+        } else if (inboundMessage.getDelayMicros() != null) {
+            delay = inboundMessage.getDelayMicros();
+            flags |= ChattyEchoBinaryCodec.FLAG_DELAY_MICROS;
+        }
+        return ChattyEchoBinaryCodec.encodeRequest(allocator, inboundMessage.getTimes(), delay, flags, inboundMessage.getMsg().getBytes(CharsetUtil.UTF_8));
+    }
+
     private static String printUsage() {
         final StringWriter sw = new StringWriter(128);
         final PrintWriter pw = new PrintWriter(sw, true);
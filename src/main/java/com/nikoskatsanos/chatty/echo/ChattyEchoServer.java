@@ -1,18 +1,25 @@
 package com.nikoskatsanos.chatty.echo;
 
-import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoHandler;
+import com.nikoskatsanos.chatty.echo.bus.EchoBus;
+import com.nikoskatsanos.chatty.echo.bus.TcpEchoBus;
+import com.nikoskatsanos.chatty.echo.compression.CompressionMode;
+import com.nikoskatsanos.chatty.echo.compression.CompressionPolicy;
+import com.nikoskatsanos.chatty.echo.engine.BackpressurePolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoLimits;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.engine.FlushPolicy;
+import com.nikoskatsanos.chatty.echo.engine.SlowConsumerPolicy;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoServerInitializer;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoWarmUp;
+import com.nikoskatsanos.chatty.echo.payload.PayloadCache;
+import com.nikoskatsanos.chatty.echo.transport.Transport;
+import com.nikoskatsanos.chatty.echo.transport.TransportConfig;
 import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -23,8 +30,20 @@ import org.apache.commons.cli.ParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Class with a {@code main} method to start a <em>Chatty Echo Server</em> at a specific port. The port needs to be passed as a command line argument</p>
@@ -34,7 +53,86 @@ import java.io.StringWriter;
 public class ChattyEchoServer {
 
     private static final Logger log = LogManager.getFormatterLogger(ChattyEchoServer.class);
-    private static final Options CLI_OPTIONS = new Options().addOption(new Option("p", "port", true, "Port where Chatty Echo Server will be listening"));
+    private static final Options CLI_OPTIONS;
+
+    static {
+        CLI_OPTIONS = new Options();
+        CLI_OPTIONS.addOption(new Option("p", "port", true, "Port where Chatty Echo Server will be listening"));
+        CLI_OPTIONS.addOption(Option.builder().longOpt("flush-frames").argName("frames").hasArg(true).desc(String.format("Maximum number of echo frames " +
+                "written before flushing (default %d)", FlushPolicy.DEFAULT_MAX_FRAMES_PER_FLUSH)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("flush-bytes").argName("bytes").hasArg(true).desc(String.format("Maximum number of echo bytes written " +
+                "before flushing (default %d)", FlushPolicy.DEFAULT_MAX_BYTES_PER_FLUSH)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("flush-consolidation").argName("flushes").hasArg(true).desc("If set, consolidates explicit flushes, " +
+                "flushing after that many of them (default disabled)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("slow-consumer").argName("policy").hasArg(true).desc(String.format("What to do with echoes when a " +
+                "client cannot keep up, one of %s (default %s)", Arrays.toString(SlowConsumerPolicy.values()), SlowConsumerPolicy.PAUSE)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("write-buffer-low").argName("bytes").hasArg(true).desc(String.format("Low write buffer water mark of " +
+                "a connection (default %d)", BackpressurePolicy.DEFAULT_LOW_WATER_MARK)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("write-buffer-high").argName("bytes").hasArg(true).desc(String.format("High write buffer water mark " +
+                "of a connection (default %d)", BackpressurePolicy.DEFAULT_HIGH_WATER_MARK)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("transport").argName("transport").hasArg(true).desc(String.format("Network transport, one of %s or %s." +
+                " Falls back to NIO if the requested one is not available (default %s)", Arrays.toString(Transport.values()), Transport.AUTO, Transport.AUTO))
+                .build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("acceptors").argName("acceptors").hasArg(true).desc("Number of acceptor event loops, each with its " +
+                "own listening socket. More than one requires --reuse-port (default 1)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("workers").argName("workers").hasArg(true).desc(String.format("Number of worker event loops (default " +
+                "%d)", TransportConfig.DEFAULT_WORKERS)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("reuse-port").hasArg(false).desc("Enables SO_REUSEPORT. Only supported by the EPOLL transport").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("tcp-nodelay").argName("true|false").hasArg(true).desc("TCP_NODELAY of the accepted sockets (default " +
+                "true)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("so-sndbuf").argName("bytes").hasArg(true).desc("SO_SNDBUF of the accepted sockets (default OS)")
+                .build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("lag-report-interval").argName("seconds").hasArg(true).desc("Interval of the emission lag report, 0 " +
+                "disables it (default 60)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("so-rcvbuf").argName("bytes").hasArg(true).desc("SO_RCVBUF of the accepted sockets (default OS)")
+                .build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("echo-log-interval").argName("millis").hasArg(true).desc(String.format("At most one echo log line " +
+                "per connection every that many milliseconds, 0 disables them (default %d)", EchoLogPolicy.DEFAULT_INTERVAL_MILLIS)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("trace-echoes").hasArg(false).desc("Logs every single echo").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-times").argName("times").hasArg(true).desc("Maximum times of a request, 0 is unlimited (default " +
+                "0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("min-delay").argName("millis").hasArg(true).desc("Minimum delay of a request with more than one echo " +
+                "(default 0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-outstanding-per-connection").argName("echoes").hasArg(true).desc("Maximum echoes of a connection " +
+                "not sent yet, 0 is unlimited (default 0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-outstanding").argName("echoes").hasArg(true).desc("Maximum echoes across the server not sent " +
+                "yet, 0 is unlimited (default 0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-bytes-per-connection").argName("bytes/s").hasArg(true).desc("Maximum echo bytes per second " +
+                "emitted to a connection, 0 is unlimited (default 0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-bytes").argName("bytes/s").hasArg(true).desc("Maximum echo bytes per second emitted by the " +
+                "server, 0 is unlimited (default 0)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("node-id").argName("id").hasArg(true).desc("Id of the node within the cluster (default " +
+                "hostname:port)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("bus-port").argName("port").hasArg(true).desc("Port the node listens on for the other nodes of the " +
+                "cluster. If not set the node is standalone").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("bus-peers").argName("host:port,...").hasArg(true).desc("Bus addresses of the other nodes of the " +
+                "cluster").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("bus-metrics-interval").argName("seconds").hasArg(true).desc("Interval the node publishes its " +
+                "metrics to the other nodes (default 5)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("payload-dir").argName("directory").hasArg(true).desc("Directory of the files requests can echo as " +
+                "their payload. If not set file payloads are rejected").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-payload-size").argName("bytes").hasArg(true).desc(String.format("Maximum size of a generated " +
+                "or file payload (default %d)", PayloadCache.DEFAULT_MAX_PAYLOAD_BYTES)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("payload-cache-size").argName("bytes").hasArg(true).desc(String.format("Maximum bytes of payloads " +
+                "kept cached off-heap (default %d)", PayloadCache.DEFAULT_MAX_CACHED_BYTES)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("max-frame-size").argName("bytes").hasArg(true).desc(String.format("Payload echoes above this size " +
+                "are fragmented into continuation frames (default %d)", PayloadCache.DEFAULT_MAX_FRAME_BYTES)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("compression").argName("mode").hasArg(true).desc(String.format("permessage-deflate compression, one " +
+                "of %s (default %s)", Arrays.toString(CompressionMode.values()), CompressionPolicy.DEFAULT.getMode())).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("compression-level").argName("level").hasArg(true).desc(String.format("Deflate level, 0 to 9 " +
+                "(default %d)", CompressionPolicy.DEFAULT_LEVEL)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("compression-threshold").argName("bytes").hasArg(true).desc(String.format("Echoes smaller than " +
+                "this are not compressed (default %d)", CompressionPolicy.DEFAULT_THRESHOLD_BYTES)).build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("config").argName("file").hasArg(true).desc("Properties file with any of the long options, e.g. " +
+                "max-times=10000. Options on the command line take precedence. Limits, flush, backpressure, echo log and compression settings are reloaded " +
+                "when the file changes").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("config-reload-interval").argName("seconds").hasArg(true).desc("Interval the config file is checked " +
+                "for changes, 0 disables reloading (default 5)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("drain-timeout").argName("seconds").hasArg(true).desc("On shutdown, how long pending echoes are " +
+                "given to be sent before they are cancelled (default 30)").build());
+        CLI_OPTIONS.addOption(Option.builder().longOpt("warm-up-requests").argName("requests").hasArg(true).desc("Requests of each protocol the server " +
+                "warms up with before accepting connections, 0 disables warm up (default 5000)").build());
+    }
 
     public static void main(final String... args) {
 
@@ -42,44 +140,158 @@ public class ChattyEchoServer {
         final CommandLineParser cliParser = new DefaultParser();
         try {
             final CommandLine cli = cliParser.parse(CLI_OPTIONS, args);
-            if (!cli.hasOption('p')) {
+            final ChattyEchoServerConfig config = new ChattyEchoServerConfig(cli);
+            if (!config.has("port")) {
                 throw new ParseException("Port is a required command line argument. Please see usage");
             }
 
-            final int port = Integer.parseInt(cli.getOptionValue('p'));
+            final int port = Integer.parseInt(config.get("port", null));
+            final FlushPolicy flushPolicy = config.flushPolicy();
+            final BackpressurePolicy backpressurePolicy = config.backpressurePolicy();
+            final TransportConfig transportConfig = new TransportConfig(selectTransport(config.get("transport", Transport.AUTO)), Integer.parseInt(config
+                    .get("acceptors", "1")), Integer.parseInt(config.get("workers", String.valueOf(TransportConfig.DEFAULT_WORKERS))), config.has("reuse-port"),
+                    Boolean.parseBoolean(config.get("tcp-nodelay", "true")), Integer.parseInt(config.get("so-sndbuf", "0")), Integer.parseInt(config.get
+                    ("so-rcvbuf", "0")));
+            final EchoLogPolicy echoLogPolicy = config.echoLogPolicy();
+            final EchoLimits echoLimits = config.echoLimits();
+            final PayloadCache payloadCache = new PayloadCache(config.has("payload-dir") ? Paths.get(config.get("payload-dir", null)) : null, Integer
+                    .parseInt(config.get("max-payload-size", String.valueOf(PayloadCache.DEFAULT_MAX_PAYLOAD_BYTES))), Long.parseLong(config.get
+                    ("payload-cache-size", String.valueOf(PayloadCache.DEFAULT_MAX_CACHED_BYTES))), Integer.parseInt(config.get("max-frame-size", String
+                    .valueOf(PayloadCache.DEFAULT_MAX_FRAME_BYTES))));
+            final CompressionPolicy compressionPolicy = config.compressionPolicy();
+            log.info("Using %s, %s, %s, %s, %s, %s, %s", transportConfig, flushPolicy, backpressurePolicy, echoLogPolicy, echoLimits, payloadCache,
+                    compressionPolicy);
 
-            final NioEventLoopGroup mainLoop = new NioEventLoopGroup(1, new NamedThreadFactory("NIO-EventLoop", true));
-            final NioEventLoopGroup executors = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors() / 2, new NamedThreadFactory("NIO-Executor",
+            final Transport transport = transportConfig.getTransport();
+            final EventLoopGroup mainLoop = transport.newEventLoopGroup(transportConfig.getAcceptors(), new NamedThreadFactory(transport + "-EventLoop", true));
+            final EventLoopGroup executors = transport.newEventLoopGroup(transportConfig.getWorkers(), new NamedThreadFactory(transport + "-Executor", true));
+            final EchoScheduler echoScheduler = new EchoScheduler(flushPolicy, backpressurePolicy, echoLogPolicy, echoLimits);
+            echoScheduler.setPayloadCache(payloadCache);
+            echoScheduler.setCompressionPolicy(compressionPolicy);
+            final EchoBus bus = config.has("bus-port") ? new TcpEchoBus(config.get("node-id", defaultNodeId(port)), transport, Integer.parseInt(config.get
+                    ("bus-port", null)), parsePeers(config.get("bus-peers", "")), echoScheduler.getMetrics()) : null;
+
+            final List<Channel> serverChannels = Collections.synchronizedList(new ArrayList<>(transportConfig.getAcceptors()));
+            final ChattyEchoServerShutdown shutdown = new ChattyEchoServerShutdown(echoScheduler, serverChannels, bus, Long.parseLong(config.get
+                    ("drain-timeout", "30")), TimeUnit.SECONDS, executors, mainLoop);
+            Runtime.getRuntime().addShutdownHook(new Thread(shutdown, "ChattyEchoServer-Shutdown"));
+            // reading the file must not stall the connections of an event loop
+            final ScheduledExecutorService configReloader = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ChattyEchoServer-ConfigReload",
                     true));
             try {
-                final ServerBootstrap chattyEchoServer = new ServerBootstrap().group(mainLoop, executors).channel(NioServerSocketChannel.class).childHandler
-                        (new ChannelInitializer<SocketChannel>() {
-                    protected void initChannel(final SocketChannel socketChannel) throws Exception {
-                        final ChannelPipeline pipeline = socketChannel.pipeline();
-                        pipeline.addLast(new HttpServerCodec());
-                        pipeline.addLast(new HttpObjectAggregator(65_536));
-                        pipeline.addLast(new WebSocketServerCompressionHandler());
-                        pipeline.addLast(new WebSocketServerProtocolHandler("/echo", null, true));
-                        pipeline.addLast(new ChattyEchoHandler());
-                    }
-                });
-
-                final Channel serverChannel = chattyEchoServer.bind(port).sync().channel();
-
-                log.info("Chatty Echo Server started at [%s]", serverChannel.localAddress().toString());
-                serverChannel.closeFuture().sync();
+                if (bus != null) {
+                    log.info("Joining cluster with %s", bus);
+                    bus.start(echoScheduler.newBusListener());
+                    echoScheduler.setBus(bus);
+                    final long busMetricsInterval = Long.parseLong(config.get("bus-metrics-interval", "5"));
+                    mainLoop.next().scheduleAtFixedRate(echoScheduler::publishMetrics, busMetricsInterval, busMetricsInterval, TimeUnit.SECONDS);
+                }
+
+                final int warmUpRequests = Integer.parseInt(config.get("warm-up-requests", "5000"));
+                if (warmUpRequests > 0) {
+                    ChattyEchoWarmUp.warmUp(echoScheduler, executors, warmUpRequests);
+                }
+
+                final ServerBootstrap chattyEchoServer = transportConfig.apply(new ServerBootstrap().group(mainLoop, executors)).childOption(ChannelOption
+                        .WRITE_BUFFER_WATER_MARK, backpressurePolicy.getWriteBufferWaterMark()).childHandler(new ChattyEchoServerInitializer(echoScheduler));
+
+                // with SO_REUSEPORT each acceptor binds its own listening socket, registered with its own event loop
+                for (int i = 0; i < transportConfig.getAcceptors(); i++) {
+                    final Channel serverChannel = chattyEchoServer.bind(port).sync().channel();
+                    serverChannels.add(serverChannel);
+                    log.info("Chatty Echo Server started at [%s]", serverChannel.localAddress().toString());
+                }
+
+                final long lagReportInterval = Long.parseLong(config.get("lag-report-interval", "60"));
+                if (lagReportInterval > 0L) {
+                    mainLoop.next().scheduleAtFixedRate(echoScheduler.getEmissionLagMonitor()::report, lagReportInterval, lagReportInterval, TimeUnit.SECONDS);
+                }
+                final long configReloadInterval = Long.parseLong(config.get("config-reload-interval", "5"));
+                if (config.getFile() != null && configReloadInterval > 0L) {
+                    configReloader.scheduleWithFixedDelay(() -> reload(config, echoScheduler), configReloadInterval, configReloadInterval, TimeUnit.SECONDS);
+                }
+
+                awaitClosed(serverChannels);
             } catch (final InterruptedException e) {
                 log.warn(e.getMessage(), e);
             } finally {
-                executors.shutdownGracefully();
-                mainLoop.shutdownGracefully();
+                configReloader.shutdownNow();
+                shutdown.run();
             }
-        } catch (final ParseException e) {
+        } catch (final ParseException | IOException e) {
             log.fatal(e.getMessage(), e);
+            LogManager.shutdown();
             throw new RuntimeException(printUsage(), e);
         }
     }
 
+    /**
+     * <p>Waits for the server channels to close. The list is copied under its lock and waited on outside of it, as the shutdown hook takes the same lock to
+     * close them</p>
+     */
+    static void awaitClosed(final List<Channel> serverChannels) throws InterruptedException {
+        for (final Channel serverChannel : ChattyEchoServerShutdown.snapshot(serverChannels)) {
+            serverChannel.closeFuture().sync();
+        }
+    }
+
+    /**
+     * <p>Applies the limits, flush, backpressure, echo log and compression policies of the config file, if it changed. An invalid file is logged and the
+     * current settings remain</p>
+     */
+    private static void reload(final ChattyEchoServerConfig config, final EchoScheduler echoScheduler) {
+        try {
+            if (!config.reload()) {
+                return;
+            }
+            final EchoLimits echoLimits = config.echoLimits();
+            final FlushPolicy flushPolicy = config.flushPolicy();
+            final BackpressurePolicy backpressurePolicy = config.backpressurePolicy();
+            final EchoLogPolicy echoLogPolicy = config.echoLogPolicy();
+            final CompressionPolicy compressionPolicy = config.compressionPolicy();
+            echoScheduler.setEchoLimits(echoLimits);
+            echoScheduler.setFlushPolicy(flushPolicy);
+            echoScheduler.setBackpressurePolicy(backpressurePolicy);
+            echoScheduler.setEchoLogPolicy(echoLogPolicy);
+            echoScheduler.setCompressionPolicy(compressionPolicy);
+            log.info("Reloaded %s. Using %s, %s, %s, %s, %s", config.getFile(), echoLimits, flushPolicy, backpressurePolicy, echoLogPolicy, compressionPolicy);
+        } catch (final Exception e) {
+            log.error("Cannot reload %s, keeping the current settings. %s", config.getFile(), e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId(final int port) {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + port;
+        } catch (final UnknownHostException e) {
+            return "localhost:" + port;
+        }
+    }
+
+    private static Transport selectTransport(final String name) throws ParseException {
+        try {
+            return Transport.select(name);
+        } catch (final IllegalArgumentException e) {
+            throw new ParseException(String.format("Unknown transport [%s]. Expected one of %s or %s", name, Arrays.toString(Transport.values()), Transport
+                    .AUTO));
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(final String peers) throws ParseException {
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+        for (final String peer : peers.split(",")) {
+            if (peer.trim().isEmpty()) {
+                continue;
+            }
+            final int separator = peer.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new ParseException(String.format("Invalid bus peer [%s]. Expected host:port", peer));
+            }
+            addresses.add(InetSocketAddress.createUnresolved(peer.substring(0, separator).trim(), Integer.parseInt(peer.substring(separator + 1).trim())));
+        }
+        return addresses;
+    }
+
     private static String printUsage() {
         final StringWriter sw = new StringWriter(128);
         final HelpFormatter helpFormatter = new HelpFormatter();
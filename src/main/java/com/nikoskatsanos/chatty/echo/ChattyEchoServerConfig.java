@@ -0,0 +1,121 @@
+package com.nikoskatsanos.chatty.echo;
+
+import com.nikoskatsanos.chatty.echo.compression.CompressionMode;
+import com.nikoskatsanos.chatty.echo.compression.CompressionPolicy;
+import com.nikoskatsanos.chatty.echo.engine.BackpressurePolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoLimits;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.FlushPolicy;
+import com.nikoskatsanos.chatty.echo.engine.SlowConsumerPolicy;
+import org.apache.commons.cli.CommandLine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Settings of a {@link com.nikoskatsanos.chatty.echo.ChattyEchoServer}, read from its command line and, if {@code --config} is given, from a properties
+ * file whose keys are the long names of the command line options, e.g. {@code max-times=10000}. An option given on the command line takes precedence over
+ * the file.</p> <p>The file can be {@link #reload()}ed while the server runs; the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits}, {@link
+ * com.nikoskatsanos.chatty.echo.engine.FlushPolicy}, {@link com.nikoskatsanos.chatty.echo.engine.BackpressurePolicy}, {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy} and {@link com.nikoskatsanos.chatty.echo.compression.CompressionPolicy} are then applied anew, while
+ * the rest of the settings only take effect on a restart</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoServerConfig {
+
+    private final CommandLine cli;
+    private final Path file;
+    private volatile Properties properties;
+    private long lastModified;
+
+    public ChattyEchoServerConfig(final CommandLine cli) throws IOException {
+        this.cli = cli;
+        this.file = cli.hasOption("config") ? Paths.get(cli.getOptionValue("config")) : null;
+        this.properties = new Properties();
+        this.reload();
+    }
+
+    /**
+     * @return The value of the option, from the command line or the config file, or the default value if neither has it
+     */
+    public String get(final String option, final String defaultValue) {
+        if (this.cli.hasOption(option)) {
+            return this.cli.getOptionValue(option);
+        }
+        final String value = this.properties.getProperty(option);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    /**
+     * @return Whether the option is given, either on the command line or in the config file. A flag is set in the file as {@code true}
+     */
+    public boolean has(final String option) {
+        if (this.cli.hasOption(option)) {
+            return true;
+        }
+        final String value = this.properties.getProperty(option);
+        return value != null && !value.trim().isEmpty() && !"false".equalsIgnoreCase(value.trim());
+    }
+
+    /**
+     * <p>Reads the config file again, if it changed since it was last read</p>
+     *
+     * @return {@code true} if the file changed
+     * @throws java.io.IOException If the file cannot be read, in which case the settings read previously remain
+     */
+    public synchronized boolean reload() throws IOException {
+        if (this.file == null) {
+            return false;
+        }
+        final long modified = Files.getLastModifiedTime(this.file).toMillis();
+        if (modified == this.lastModified) {
+            return false;
+        }
+        final Properties properties = new Properties();
+        try (final Reader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        this.properties = properties;
+        this.lastModified = modified;
+        return true;
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    public EchoLimits echoLimits() {
+        return new EchoLimits(Integer.parseInt(this.get("max-times", "0")), Long.parseLong(this.get("min-delay", "0")), Long.parseLong(this.get
+                ("max-outstanding-per-connection", "0")), Long.parseLong(this.get("max-outstanding", "0")), Long.parseLong(this.get("max-bytes-per-connection",
+                "0")), Long.parseLong(this.get("max-bytes", "0")));
+    }
+
+    public FlushPolicy flushPolicy() {
+        return new FlushPolicy(Integer.parseInt(this.get("flush-frames", String.valueOf(FlushPolicy.DEFAULT_MAX_FRAMES_PER_FLUSH))), Integer.parseInt(this
+                .get("flush-bytes", String.valueOf(FlushPolicy.DEFAULT_MAX_BYTES_PER_FLUSH))), Integer.parseInt(this.get("flush-consolidation", "0")));
+    }
+
+    public BackpressurePolicy backpressurePolicy() {
+        return new BackpressurePolicy(SlowConsumerPolicy.valueOf(this.get("slow-consumer", SlowConsumerPolicy.PAUSE.name()).toUpperCase()), Integer.parseInt
+                (this.get("write-buffer-low", String.valueOf(BackpressurePolicy.DEFAULT_LOW_WATER_MARK))), Integer.parseInt(this.get("write-buffer-high",
+                String.valueOf(BackpressurePolicy.DEFAULT_HIGH_WATER_MARK))));
+    }
+
+    public EchoLogPolicy echoLogPolicy() {
+        return new EchoLogPolicy(this.has("trace-echoes"), Long.parseLong(this.get("echo-log-interval", String.valueOf(EchoLogPolicy
+                .DEFAULT_INTERVAL_MILLIS))), TimeUnit.MILLISECONDS);
+    }
+
+    public CompressionPolicy compressionPolicy() {
+        return new CompressionPolicy(CompressionMode.valueOf(this.get("compression", CompressionPolicy.DEFAULT.getMode().name()).toUpperCase()), Integer
+                .parseInt(this.get("compression-level", String.valueOf(CompressionPolicy.DEFAULT_LEVEL))), Integer.parseInt(this.get("compression-threshold",
+                String.valueOf(CompressionPolicy.DEFAULT_THRESHOLD_BYTES))));
+    }
+}
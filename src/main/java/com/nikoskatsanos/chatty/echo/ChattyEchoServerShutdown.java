@@ -0,0 +1,111 @@
+package com.nikoskatsanos.chatty.echo;
+
+import com.nikoskatsanos.chatty.echo.bus.EchoBus;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Graceful shutdown of a {@link com.nikoskatsanos.chatty.echo.ChattyEchoServer}, run as a JVM shutdown hook on {@code SIGTERM} and when the server stops
+ * otherwise. It:
+ * <pre>
+ * <ol>
+ *     <li>Closes the listening sockets, so the load balancer moves new connections to the other nodes</li>
+ *     <li>Stops admitting requests and waits up to the drain timeout for the pending echoes to be sent</li>
+ *     <li>Cancels the bursts still running and closes the connections with a {@code 1001 Going Away} close frame</li>
+ *     <li>Leaves the cluster and shuts the event loops down, waiting for their threads to terminate</li>
+ * </ol>
+ * </pre>
+ * Only the first run shuts down; any other waits for it to complete</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoServerShutdown implements Runnable {
+
+    private static final Logger log = LogManager.getFormatterLogger(ChattyEchoServerShutdown.class);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5L;
+
+    private final EchoScheduler echoScheduler;
+    private final List<Channel> serverChannels;
+    private final EchoBus bus;
+    private final long drainTimeoutMillis;
+    private final EventLoopGroup[] eventLoopGroups;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    /**
+     * @param serverChannels The listening channels. Channels bound later can still be added to the list
+     * @param bus            The cluster bus, {@code null} if the node is standalone
+     */
+    public ChattyEchoServerShutdown(final EchoScheduler echoScheduler, final List<Channel> serverChannels, final EchoBus bus, final long drainTimeout,
+                                    final TimeUnit timeUnit, final EventLoopGroup... eventLoopGroups) {
+        this.echoScheduler = echoScheduler;
+        this.serverChannels = serverChannels;
+        this.bus = bus;
+        this.drainTimeoutMillis = timeUnit.toMillis(drainTimeout);
+        this.eventLoopGroups = eventLoopGroups;
+    }
+
+    @Override
+    public void run() {
+        if (!this.started.compareAndSet(false, true)) {
+            try {
+                this.completed.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        try {
+            log.warn("Shutting down. Draining the pending echoes for up to %dms", this.drainTimeoutMillis);
+            for (final Channel serverChannel : snapshot(this.serverChannels)) {
+                serverChannel.close().awaitUninterruptibly();
+            }
+
+            final long pending = this.echoScheduler.drain(this.drainTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (pending > 0L) {
+                log.warn("Cancelling %d echoes which were not sent within the drain timeout", pending);
+            }
+            if (!this.echoScheduler.closeConnections().await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Connections did not close within %ds", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (final InterruptedException e) {
+            log.warn("Interrupted while draining. Shutting down right away");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (this.bus != null) {
+                this.bus.close();
+            }
+            for (final EventLoopGroup eventLoopGroup : this.eventLoopGroups) {
+                eventLoopGroup.shutdownGracefully(0L, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            for (final EventLoopGroup eventLoopGroup : this.eventLoopGroups) {
+                eventLoopGroup.terminationFuture().awaitUninterruptibly(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            this.echoScheduler.getPayloadCache().clear();
+            log.warn("Chatty Echo Server stopped");
+            // the shutdown hook of log4j is disabled, so that the above is logged, see log4j2.xml
+            LogManager.shutdown();
+            this.completed.countDown();
+        }
+    }
+
+    /**
+     * @return A copy of the synchronized list, taken under its lock, so that the channels can be closed or waited on without holding it
+     */
+    static List<Channel> snapshot(final List<Channel> serverChannels) {
+        synchronized (serverChannels) {
+            return new ArrayList<>(serverChannels);
+        }
+    }
+}
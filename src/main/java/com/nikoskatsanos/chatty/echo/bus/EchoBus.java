@@ -0,0 +1,33 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>Bus between the nodes of a cluster of <em>Chatty Echo Servers</em>. Broadcasts published by one node are delivered to the {@link
+ * com.nikoskatsanos.chatty.echo.bus.EchoBusListener} of every other node, which writes them to its own subscribers, hence a number of nodes behind a load
+ * balancer behave like a single server. Nodes also exchange {@link com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot}s, so any node can report the
+ * metrics of the whole cluster.</p> <p>Frames are forwarded as their raw encoded bytes; they are never decoded into messages nor re-encoded. Implementations
+ * are thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public interface EchoBus extends AutoCloseable {
+
+    String getNodeId();
+
+    /**
+     * <p>Connects the node to the bus. Messages of the other nodes are delivered to the given listener</p>
+     */
+    void start(EchoBusListener listener) throws InterruptedException;
+
+    /**
+     * <p>Publishes a batch of broadcast frames of the given topic to the other nodes. The frames are not released; the caller still owns them</p>
+     */
+    void publish(String topic, WebSocketFrame[] frames);
+
+    void publishMetrics(EchoMetricsSnapshot snapshot);
+
+    @Override
+    void close();
+}
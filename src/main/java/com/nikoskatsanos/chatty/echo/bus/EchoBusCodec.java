@@ -0,0 +1,168 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+
+/**
+ * <p>Wire format of the messages exchanged over the {@link com.nikoskatsanos.chatty.echo.bus.TcpEchoBus}. Framing, a 4 byte length prefix, is left to the
+ * pipeline. All numbers are big endian:
+ * <pre>
+ * broadcast: type (byte, 1) | topic length (short) | topic (UTF-8) | frame count (int) | { kind (byte) | length (int) | bytes }*
+ * metrics:   type (byte, 2) | node id length (short) | node id (UTF-8) | timestamp millis (long) | value count (int) | { value (long) }*
+ * </pre>
+ * The kind of a frame is 0 for text, 1 for binary and 2 for continuation frames, with the {@code 0x80} bit set if the frame is not the final fragment of its
+ * message. The frames of a broadcast are composed as they are, without being copied, and decoded as slices of the received buffer.</p>
+ *
+ * @author nikkatsa
+ */
+public final class EchoBusCodec {
+
+    static final byte BROADCAST = 1;
+    static final byte METRICS = 2;
+
+    private static final byte TEXT = 0;
+    private static final byte BINARY = 1;
+    private static final byte CONTINUATION = 2;
+    private static final int NOT_FINAL = 0x80;
+
+    private EchoBusCodec() {
+    }
+
+    /**
+     * <p>Encodes a broadcast. The returned buffer holds retained duplicates of the frames' content, which are released with it</p>
+     */
+    public static ByteBuf encodeBroadcast(final ByteBufAllocator allocator, final String topic, final WebSocketFrame[] frames) {
+        final CompositeByteBuf message = allocator.compositeBuffer(1 + 2 * frames.length);
+        try {
+            final ByteBuf header = allocator.buffer(7 + ByteBufUtil.utf8MaxBytes(topic));
+            header.writeByte(BROADCAST);
+            writeString(header, topic);
+            header.writeInt(frames.length);
+            message.addComponent(true, header);
+            for (final WebSocketFrame frame : frames) {
+                final ByteBuf content = frame.content();
+                final ByteBuf frameHeader = allocator.buffer(5).writeByte(kind(frame)).writeInt(content.readableBytes());
+                message.addComponent(true, frameHeader);
+                message.addComponent(true, content.retainedDuplicate());
+            }
+            return message;
+        } catch (final RuntimeException e) {
+            message.release();
+            throw e;
+        }
+    }
+
+    public static ByteBuf encodeMetrics(final ByteBufAllocator allocator, final EchoMetricsSnapshot snapshot) {
+        final long[] values = snapshot.values();
+        final ByteBuf message = allocator.buffer(15 + ByteBufUtil.utf8MaxBytes(snapshot.getNodeId()) + 8 * values.length);
+        message.writeByte(METRICS);
+        writeString(message, snapshot.getNodeId());
+        message.writeLong(snapshot.getTimestampMillis());
+        message.writeInt(values.length);
+        for (final long value : values) {
+            message.writeLong(value);
+        }
+        return message;
+    }
+
+    /**
+     * <p>Decodes a message and hands it to the listener. The buffer's reference count is left intact</p>
+     *
+     * @throws io.netty.handler.codec.CorruptedFrameException If the message is malformed
+     */
+    public static void decode(final ByteBuf message, final EchoBusListener listener) {
+        final byte type = message.readByte();
+        switch (type) {
+            case BROADCAST:
+                decodeBroadcast(message, listener);
+                break;
+            case METRICS:
+                decodeMetrics(message, listener);
+                break;
+            default:
+                throw new CorruptedFrameException(String.format("Unknown bus message type %d", type));
+        }
+    }
+
+    private static void decodeMetrics(final ByteBuf message, final EchoBusListener listener) {
+        final String nodeId = readString(message);
+        final long timestampMillis = message.readLong();
+        final int count = message.readInt();
+        if (count < 0 || count > message.readableBytes() / Long.BYTES) {
+            throw new CorruptedFrameException(String.format("Invalid metrics count %d", count));
+        }
+        final long[] values = new long[count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = message.readLong();
+        }
+        listener.onMetrics(new EchoMetricsSnapshot(nodeId, timestampMillis, values));
+    }
+
+    private static void decodeBroadcast(final ByteBuf message, final EchoBusListener listener) {
+        final String topic = readString(message);
+        final int count = message.readInt();
+        if (count < 0 || count > message.readableBytes() / 5) {
+            throw new CorruptedFrameException(String.format("Invalid broadcast frame count %d", count));
+        }
+        final WebSocketFrame[] frames = new WebSocketFrame[count];
+        int decoded = 0;
+        try {
+            for (; decoded < count; decoded++) {
+                final int kind = message.readUnsignedByte();
+                final int length = message.readInt();
+                if (length < 0 || length > message.readableBytes()) {
+                    throw new CorruptedFrameException(String.format("Invalid broadcast frame length %d", length));
+                }
+                frames[decoded] = frame(kind, message.readRetainedSlice(length));
+            }
+            listener.onBroadcast(topic, frames);
+        } finally {
+            for (int i = 0; i < decoded; i++) {
+                frames[i].release();
+            }
+        }
+    }
+
+    private static int kind(final WebSocketFrame frame) {
+        final int kind = frame instanceof BinaryWebSocketFrame ? BINARY : frame instanceof ContinuationWebSocketFrame ? CONTINUATION : TEXT;
+        return frame.isFinalFragment() ? kind : kind | NOT_FINAL;
+    }
+
+    private static WebSocketFrame frame(final int kind, final ByteBuf content) {
+        final boolean finalFragment = (kind & NOT_FINAL) == 0;
+        switch (kind & ~NOT_FINAL) {
+            case BINARY:
+                return new BinaryWebSocketFrame(finalFragment, 0, content);
+            case CONTINUATION:
+                return new ContinuationWebSocketFrame(finalFragment, 0, content);
+            case TEXT:
+                return new TextWebSocketFrame(finalFragment, 0, content);
+            default:
+                content.release();
+                throw new CorruptedFrameException(String.format("Unknown broadcast frame kind %d", kind));
+        }
+    }
+
+    private static void writeString(final ByteBuf buffer, final String value) {
+        final int lengthIndex = buffer.writerIndex();
+        buffer.writeShort(0);
+        final int length = ByteBufUtil.writeUtf8(buffer, value);
+        buffer.setShort(lengthIndex, length);
+    }
+
+    private static String readString(final ByteBuf buffer) {
+        final int length = buffer.readUnsignedShort();
+        final String value = buffer.toString(buffer.readerIndex(), length, CharsetUtil.UTF_8);
+        buffer.skipBytes(length);
+        return value;
+    }
+}
@@ -0,0 +1,20 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>Receives the messages other nodes published on the {@link com.nikoskatsanos.chatty.echo.bus.EchoBus}</p>
+ *
+ * @author nikkatsa
+ */
+public interface EchoBusListener {
+
+    /**
+     * <p>A batch of broadcast frames of the given topic. The frames are released once the call returns; the listener has to retain them if it needs them
+     * any longer</p>
+     */
+    void onBroadcast(String topic, WebSocketFrame[] frames);
+
+    void onMetrics(EchoMetricsSnapshot snapshot);
+}
@@ -0,0 +1,83 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.bus.EchoBus} between nodes running within the same JVM, for tests and local experiments. Nodes joined to the same
+ * {@link com.nikoskatsanos.chatty.echo.bus.InProcessEchoBus.Network} see each other's messages. Messages go through the {@link
+ * com.nikoskatsanos.chatty.echo.bus.EchoBusCodec}, exactly as over the network, and are delivered on the publisher's thread</p>
+ *
+ * @author nikkatsa
+ */
+public class InProcessEchoBus implements EchoBus {
+
+    private static final Logger log = LogManager.getFormatterLogger(InProcessEchoBus.class);
+
+    private final String nodeId;
+    private final Network network;
+    private volatile EchoBusListener listener;
+
+    public InProcessEchoBus(final String nodeId, final Network network) {
+        this.nodeId = nodeId;
+        this.network = network;
+    }
+
+    @Override
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    @Override
+    public void start(final EchoBusListener listener) {
+        this.listener = listener;
+        this.network.nodes.add(this);
+    }
+
+    @Override
+    public void publish(final String topic, final WebSocketFrame[] frames) {
+        this.network.deliver(this, EchoBusCodec.encodeBroadcast(ByteBufAllocator.DEFAULT, topic, frames));
+    }
+
+    @Override
+    public void publishMetrics(final EchoMetricsSnapshot snapshot) {
+        this.network.deliver(this, EchoBusCodec.encodeMetrics(ByteBufAllocator.DEFAULT, snapshot));
+    }
+
+    @Override
+    public void close() {
+        this.network.nodes.remove(this);
+    }
+
+    /**
+     * <p>The nodes sharing an {@link com.nikoskatsanos.chatty.echo.bus.InProcessEchoBus}</p>
+     */
+    public static class Network {
+
+        private final List<InProcessEchoBus> nodes = new CopyOnWriteArrayList<>();
+
+        private void deliver(final InProcessEchoBus publisher, final ByteBuf message) {
+            try {
+                for (final InProcessEchoBus node : this.nodes) {
+                    if (node == publisher) {
+                        continue;
+                    }
+                    try {
+                        EchoBusCodec.decode(message.duplicate(), node.listener);
+                    } catch (final RuntimeException e) {
+                        log.error("Failed to deliver bus message to [%s]", node.nodeId, e);
+                    }
+                }
+            } finally {
+                message.release();
+            }
+        }
+    }
+}
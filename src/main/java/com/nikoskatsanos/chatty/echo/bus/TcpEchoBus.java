@@ -0,0 +1,240 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.google.common.base.MoreObjects;
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import com.nikoskatsanos.chatty.echo.transport.Transport;
+import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.bus.EchoBus} over plain TCP. The nodes form a full mesh: every node listens on its bus port for the messages of the
+ * others and keeps a send only connection to each of its peers, re-connecting every second while a peer is down. Messages are length prefixed and encoded by
+ * the {@link com.nikoskatsanos.chatty.echo.bus.EchoBusCodec}.</p> <p>The bus runs on its own single threaded event loop. Published messages are queued and
+ * drained in batches, each batch written to every peer with a single flush. A message is encoded once and shared by all the peers; peers which cannot keep up,
+ * or are not connected, miss it.</p> <p>At most {@link #MAX_PENDING_MESSAGES} messages are queued; while the bus thread cannot keep up with the publishers
+ * further messages are dropped rather than holding on to their buffers. Both the dropped messages and the messages missed by peers which were not writable are
+ * counted by the {@link com.nikoskatsanos.chatty.echo.metrics.EchoMetrics}</p>
+ *
+ * @author nikkatsa
+ */
+public class TcpEchoBus implements EchoBus {
+
+    private static final Logger log = LogManager.getFormatterLogger(TcpEchoBus.class);
+
+    public static final int MAX_PENDING_MESSAGES = 4_096;
+
+    private static final int MAX_MESSAGE_BYTES = 256 * 1024 * 1024;
+    private static final long RECONNECT_DELAY_MILLIS = 1_000L;
+
+    private final String nodeId;
+    private final Transport transport;
+    private final int port;
+    private final List<InetSocketAddress> peerAddresses;
+    private final EchoMetrics metrics;
+    private final Queue<ByteBuf> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    /** Connected peers, accessed only from within the bus' event loop */
+    private final List<Channel> peers = new ArrayList<>();
+    private EventLoopGroup eventLoop;
+    private Channel serverChannel;
+    private volatile boolean closed;
+
+    /**
+     * @param port          The port to listen on for the messages of the other nodes
+     * @param peerAddresses The bus addresses of the other nodes
+     * @param metrics       Counts the messages which were dropped or missed by a peer
+     */
+    public TcpEchoBus(final String nodeId, final Transport transport, final int port, final List<InetSocketAddress> peerAddresses, final EchoMetrics
+            metrics) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.port = port;
+        this.peerAddresses = peerAddresses;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    @Override
+    public void start(final EchoBusListener listener) throws InterruptedException {
+        this.eventLoop = this.transport.newEventLoopGroup(1, new NamedThreadFactory("EchoBus", true));
+        this.serverChannel = new ServerBootstrap().group(this.eventLoop).channel(this.transport.serverChannelClass()).childOption(ChannelOption.TCP_NODELAY,
+                true).childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel channel) {
+                channel.pipeline().addLast(new LengthFieldBasedFrameDecoder(MAX_MESSAGE_BYTES, 0, 4, 0, 4), new InboundHandler(listener));
+            }
+        }).bind(this.port).sync().channel();
+        log.info("Echo bus of node [%s] listening at [%s]", this.nodeId, this.serverChannel.localAddress());
+
+        final Bootstrap peerBootstrap = new Bootstrap().group(this.eventLoop).channel(this.transport.socketChannelClass()).option(ChannelOption.TCP_NODELAY,
+                true).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel channel) {
+                channel.pipeline().addLast(new LengthFieldPrepender(4));
+            }
+        });
+        for (final InetSocketAddress peerAddress : this.peerAddresses) {
+            this.connect(peerBootstrap, peerAddress);
+        }
+    }
+
+    @Override
+    public void publish(final String topic, final WebSocketFrame[] frames) {
+        this.enqueue(EchoBusCodec.encodeBroadcast(ByteBufAllocator.DEFAULT, topic, frames));
+    }
+
+    @Override
+    public void publishMetrics(final EchoMetricsSnapshot snapshot) {
+        this.enqueue(EchoBusCodec.encodeMetrics(ByteBufAllocator.DEFAULT, snapshot));
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.eventLoop == null) {
+            return;
+        }
+        this.eventLoop.execute(() -> {
+            this.serverChannel.close();
+            this.peers.forEach(Channel::close);
+            this.drain();
+        });
+        this.eventLoop.shutdownGracefully();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("nodeId", this.nodeId).add("port", this.port).add("peers", this.peerAddresses).toString();
+    }
+
+    private void connect(final Bootstrap bootstrap, final InetSocketAddress peerAddress) {
+        if (this.closed) {
+            return;
+        }
+        bootstrap.connect(peerAddress).addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                if (this.closed) {
+                    return;
+                }
+                log.debug("Could not connect to echo bus peer [%s]. Retrying", peerAddress);
+                f.channel().eventLoop().schedule(() -> this.connect(bootstrap, peerAddress), RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            final Channel peer = f.channel();
+            if (this.closed) {
+                peer.close();
+                return;
+            }
+            this.peers.add(peer);
+            log.info("Connected to echo bus peer [%s]", peerAddress);
+            peer.closeFuture().addListener(closed -> {
+                this.peers.remove(peer);
+                if (this.closed) {
+                    return;
+                }
+                log.warn("Disconnected from echo bus peer [%s]", peerAddress);
+                peer.eventLoop().schedule(() -> this.connect(bootstrap, peerAddress), RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            });
+        });
+    }
+
+    private void enqueue(final ByteBuf message) {
+        if (this.closed || this.eventLoop == null) {
+            message.release();
+            return;
+        }
+        if (this.pendingCount.incrementAndGet() > MAX_PENDING_MESSAGES) {
+            this.pendingCount.decrementAndGet();
+            message.release();
+            this.metrics.onBusDropped(1);
+            return;
+        }
+        this.pending.offer(message);
+        if (this.draining.compareAndSet(false, true)) {
+            this.eventLoop.execute(this::drain);
+        }
+    }
+
+    /**
+     * <p>Writes all the queued messages to every writable peer and flushes once. Runs within the bus' event loop</p>
+     */
+    private void drain() {
+        this.draining.set(false);
+        ByteBuf message;
+        int missed = 0;
+        while ((message = this.pending.poll()) != null) {
+            this.pendingCount.decrementAndGet();
+            try {
+                for (int i = 0; i < this.peers.size(); i++) {
+                    final Channel peer = this.peers.get(i);
+                    if (peer.isWritable()) {
+                        peer.write(message.retainedDuplicate(), peer.voidPromise());
+                    } else {
+                        missed++;
+                    }
+                }
+            } finally {
+                message.release();
+            }
+        }
+        for (int i = 0; i < this.peers.size(); i++) {
+            this.peers.get(i).flush();
+        }
+        if (missed > 0) {
+            this.metrics.onBusDropped(missed);
+        }
+    }
+
+    /**
+     * <p>Hands the messages received from a peer to the {@link com.nikoskatsanos.chatty.echo.bus.EchoBusListener}</p>
+     */
+    private static class InboundHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+        private final EchoBusListener listener;
+
+        InboundHandler(final EchoBusListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        protected void channelRead0(final ChannelHandlerContext ctx, final ByteBuf message) {
+            EchoBusCodec.decode(message, this.listener);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+            log.error("Echo bus connection from [%s] failed. Closing", ctx.channel().remoteAddress(), cause);
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoClock;
+import com.nikoskatsanos.chatty.echo.engine.EchoFrameSource;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.engine.EchoFrameSource} of the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol#BINARY} protocol. Every
+ * echo is a {@link io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame} sharing the raw payload of the request. If sequenced, each echo gets its own
+ * small header, composed with the shared payload.</p> <p>Echoes larger than the maximum frame size are fragmented into a first binary frame and {@link
+ * io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame}s, each a slice of the shared payload, hence still no bytes are copied per echo</p>
+ *
+ * @author nikkatsa
+ */
+public class BinaryEchoFrameSource implements EchoFrameSource {
+
+    private final ByteBufAllocator allocator;
+    private final ByteBuf payload;
+    private final long burstId;
+    private final boolean sequenced;
+    private final int maxFrameBytes;
+    private final int fragments;
+
+    /**
+     * @param payload The raw payload. The source takes ownership of it
+     */
+    public BinaryEchoFrameSource(final ByteBufAllocator allocator, final ByteBuf payload, final long burstId, final boolean sequenced) {
+        this(allocator, payload, burstId, sequenced, 0);
+    }
+
+    /**
+     * @param payload       The raw payload. The source takes ownership of it
+     * @param maxFrameBytes Echoes larger than this are fragmented, {@code 0} never fragments them
+     */
+    public BinaryEchoFrameSource(final ByteBufAllocator allocator, final ByteBuf payload, final long burstId, final boolean sequenced, final int
+            maxFrameBytes) {
+        this.allocator = allocator;
+        this.payload = payload;
+        this.burstId = burstId;
+        this.sequenced = sequenced;
+        // the first fragment always carries some of the payload after the sequence header
+        this.maxFrameBytes = maxFrameBytes <= 0 ? Integer.MAX_VALUE : Math.max(maxFrameBytes, ChattyEchoBinaryCodec.RESPONSE_HEADER_LENGTH + 1);
+        final int frameSize = this.frameSize();
+        this.fragments = frameSize <= this.maxFrameBytes ? 1 : (frameSize + this.maxFrameBytes - 1) / this.maxFrameBytes;
+    }
+
+    @Override
+    public WebSocketFrame frame(final long sequence) {
+        if (this.fragments == 1) {
+            return new BinaryWebSocketFrame(this.content(sequence, this.payload.retainedDuplicate()));
+        }
+        final int firstPayloadBytes = this.maxFrameBytes - this.headerLength();
+        return new BinaryWebSocketFrame(false, 0, this.content(sequence, this.payload.retainedSlice(this.payload.readerIndex(), firstPayloadBytes)));
+    }
+
+    @Override
+    public int frameSize() {
+        return this.headerLength() + this.payload.readableBytes();
+    }
+
+    @Override
+    public int fragments() {
+        return this.fragments;
+    }
+
+    @Override
+    public WebSocketFrame continuation(final long sequence, final int fragment) {
+        final int offset = fragment * this.maxFrameBytes - this.headerLength();
+        final int length = Math.min(this.maxFrameBytes, this.payload.readableBytes() - offset);
+        return new ContinuationWebSocketFrame(fragment == this.fragments - 1, 0, this.payload.retainedSlice(this.payload.readerIndex() + offset, length));
+    }
+
+    @Override
+    public void release() {
+        this.payload.release();
+    }
+
+    private int headerLength() {
+        return this.sequenced ? ChattyEchoBinaryCodec.RESPONSE_HEADER_LENGTH : 0;
+    }
+
+    private ByteBuf content(final long sequence, final ByteBuf payload) {
+        if (!this.sequenced) {
+            return payload;
+        }
+        final ByteBuf header = this.allocator.directBuffer(ChattyEchoBinaryCodec.RESPONSE_HEADER_LENGTH).writeLong(this.burstId).writeLong(sequence)
+                .writeLong(EchoClock.epochNanos());
+        return this.allocator.compositeDirectBuffer(2).addComponents(true, header, payload);
+    }
+}
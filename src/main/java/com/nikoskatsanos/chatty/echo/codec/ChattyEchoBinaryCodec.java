@@ -0,0 +1,101 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.PacingDistribution;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Encoding of the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol#BINARY} protocol. All numbers are big endian.</p> <p>A request is a fixed
+ * header followed by the raw payload to echo back:
+ * <pre>
+ * +-----------+-----------+-----------+--------------------+
+ * | times (4) | delay (8) | flags (1) | payload (0..n)     |
+ * +-----------+-----------+-----------+--------------------+
+ * </pre>
+ * where {@code delay} is in milliseconds, or in microseconds with the {@link #FLAG_DELAY_MICROS} flag. Bits 2 and 3 of the flags carry the ordinal of the
+ * {@link com.nikoskatsanos.chatty.echo.engine.PacingDistribution}, see {@link #pacingFlags(PacingDistribution)}; groups of bursty pacing have the default size.
+ * A {@code delay} above {@link com.nikoskatsanos.chatty.echo.engine.EchoPacing#MAX_INTERVAL_NANOS} is rejected.</p> <p>A response is the raw payload. If the
+ * request had the {@link #FLAG_SEQUENCED} flag set, the payload is prefixed by the id of the burst, the zero based sequence of the echo within its burst and
+ * the server's send timestamp, in nanoseconds since the epoch:
+ * <pre>
+ * +--------------+--------------+---------------+--------------------+
+ * | burstId (8)  | sequence (8) | timestamp (8) | payload (0..n)     |
+ * +--------------+--------------+---------------+--------------------+
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public final class ChattyEchoBinaryCodec {
+
+    public static final int REQUEST_HEADER_LENGTH = 4 + 8 + 1;
+    public static final int RESPONSE_HEADER_LENGTH = 8 + 8 + 8;
+
+    /**
+     * <p>Prefixes every echo with its burst id, sequence and send timestamp</p>
+     */
+    public static final int FLAG_SEQUENCED = ChattyEchoRequest.FLAG_SEQUENCED;
+
+    /**
+     * <p>The {@code delay} is in microseconds rather than milliseconds</p>
+     */
+    public static final int FLAG_DELAY_MICROS = 1 << 1;
+
+    private static final int PACING_SHIFT = 2;
+    private static final int PACING_MASK = 0b11 << PACING_SHIFT;
+
+    private ChattyEchoBinaryCodec() {
+    }
+
+    /**
+     * <p>Decodes a binary request into {@code request}. The request's payload is a retained slice of {@code content}, which the caller owns</p>
+     *
+     * @throws CorruptedFrameException                                    If the content is shorter than the request header, names an unknown pacing or has
+     *                                                                     a negative delay
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the delay is above {@link
+     *                                                                     com.nikoskatsanos.chatty.echo.engine.EchoPacing#MAX_INTERVAL_NANOS}
+     */
+    public static ChattyEchoRequest decodeRequest(final ByteBuf content, final ChattyEchoRequest request) throws EchoRejectedException {
+        if (content.readableBytes() < REQUEST_HEADER_LENGTH) {
+            throw new CorruptedFrameException(String.format("Binary request needs at least %d bytes, got %d", REQUEST_HEADER_LENGTH, content.readableBytes()));
+        }
+        request.reset();
+        request.setTimes(content.readInt());
+        final long delay = content.readLong();
+        final int flags = content.readUnsignedByte();
+        final int pacing = (flags & PACING_MASK) >>> PACING_SHIFT;
+        if (pacing >= PacingDistribution.values().length) {
+            throw new CorruptedFrameException(String.format("Unknown pacing %d in binary request flags 0x%02x", pacing, flags));
+        }
+        if (delay < 0L) {
+            throw new CorruptedFrameException(String.format("Negative delay %d in binary request", delay));
+        }
+        // toNanos saturates, hence an oversized delay cannot wrap around below the limit
+        final long intervalNanos = (flags & FLAG_DELAY_MICROS) != 0 ? TimeUnit.MICROSECONDS.toNanos(delay) : TimeUnit.MILLISECONDS.toNanos(delay);
+        ChattyEchoRequestDecoder.checkMaxInterval(intervalNanos);
+        request.setIntervalNanos(intervalNanos);
+        request.setPacing(PacingDistribution.values()[pacing]);
+        request.setFlags(flags);
+        request.setPayload(content.readRetainedSlice(content.readableBytes()));
+        return request;
+    }
+
+    /**
+     * @return The flags bits selecting the given pacing distribution
+     */
+    public static int pacingFlags(final PacingDistribution pacing) {
+        return pacing.ordinal() << PACING_SHIFT;
+    }
+
+    /**
+     * <p>Encodes a binary request. The caller owns the returned buffer</p>
+     */
+    public static ByteBuf encodeRequest(final ByteBufAllocator allocator, final int times, final long delay, final int flags, final byte[] payload) {
+        return allocator.buffer(REQUEST_HEADER_LENGTH + payload.length).writeInt(times).writeLong(delay).writeByte(flags).writeBytes(payload);
+    }
+}
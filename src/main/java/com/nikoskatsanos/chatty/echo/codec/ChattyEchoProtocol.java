@@ -0,0 +1,35 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+/**
+ * <p>The wire protocols the <em>Chatty Echo Server</em> speaks, negotiated through the WebSocket subprotocol. {@link #JSON} is the default, used when the
+ * client does not ask for a subprotocol.</p> <p>With {@link #BINARY}, requests are sent in {@link io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame}s
+ * encoded as described by {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoBinaryCodec}. JSON requests in text frames are still understood</p>
+ *
+ * @author nikkatsa
+ */
+public enum ChattyEchoProtocol {
+    JSON("chatty.json"),
+    BINARY("chatty.binary");
+
+    /**
+     * <p>Comma separated list of all the subprotocols, as expected by {@link io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler}</p>
+     */
+    public static final String SUBPROTOCOLS = JSON.subprotocol + "," + BINARY.subprotocol;
+
+    private final String subprotocol;
+
+    ChattyEchoProtocol(final String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    public String getSubprotocol() {
+        return this.subprotocol;
+    }
+
+    /**
+     * @return The protocol of the given subprotocol, or {@link #JSON} if none was negotiated
+     */
+    public static ChattyEchoProtocol fromSubprotocol(final String subprotocol) {
+        return BINARY.subprotocol.equals(subprotocol) ? BINARY : JSON;
+    }
+}
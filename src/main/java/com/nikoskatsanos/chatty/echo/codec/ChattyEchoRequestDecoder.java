@@ -0,0 +1,402 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableSet;
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import com.nikoskatsanos.chatty.echo.engine.PacingDistribution;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import com.nikoskatsanos.chatty.echo.payload.PayloadSpec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Decodes the JSON representation of a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage} straight from the frame's {@link
+ * io.netty.buffer.ByteBuf} into a reusable {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest}. It uses Jackson's streaming {@link
+ * com.fasterxml.jackson.core.JsonParser}, hence the payload is neither copied into a {@link java.lang.String} nor bound through reflection.</p> <p>The decoder
+ * is as strict as binding {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}: all the fields are required and unknown fields are rejected.
+ * The optional {@code sequenced} field sets the {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest#FLAG_SEQUENCED} flag and the optional {@code
+ * topic} broadcasts the echoes.</p> <p>The pace of the echoes is either a {@code delay} in milliseconds, a {@code delayMicros} or a {@code rate} in echoes per
+ * second; one of them is required and, if more are present, {@code rate} takes precedence over {@code delayMicros} and that over {@code delay}, either of which
+ * is treated as no delay if negative. A pace slower than {@link com.nikoskatsanos.chatty.echo.engine.EchoPacing#MAX_INTERVAL_NANOS} is rejected. The optional
+ * {@code pacing} names the {@link com.nikoskatsanos.chatty.echo.engine.PacingDistribution} and {@code burst} the size of its groups. The optional {@code
+ * rampTo}, in echoes per second, ramps the {@code rate} to it over the echoes.</p> <p>Instead of a {@code msg}, a request can carry a {@code payload} object
+ * describing a {@link com.nikoskatsanos.chatty.echo.payload.PayloadSpec} for the server to generate; its echoes are binary frames of the generated bytes.</p>
+ * <p>A {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoSubscription}, carrying {@code subscribe} and/or {@code unsubscribe}, is decoded into the same
+ * request and cannot carry any of the echo fields.</p> <p>So is a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoScenario}, carrying up to {@link
+ * #MAX_SCENARIO_STEPS} {@code steps} and optionally {@code repeat}, whose steps are decoded into new requests, and a {@code {"stop": true}} request. The
+ * decoder is stateless and thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoRequestDecoder {
+
+    public static final int MAX_SCENARIO_STEPS = 1_024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int MSG = 1;
+    private static final int TIMES = 1 << 1;
+    private static final int DELAY = 1 << 2;
+    private static final int REQUIRED = MSG | TIMES | DELAY;
+    private static final int SUBSCRIPTION = 1 << 3;
+    private static final int PACING = 1 << 4;
+    private static final int PAYLOAD = 1 << 5;
+    private static final int SCENARIO = 1 << 6;
+    private static final int STOP = 1 << 7;
+    private static final Set<String> STEP_EXCLUDED_FIELDS = ImmutableSet.of("subscribe", "unsubscribe", "steps", "repeat", "stop");
+
+    /**
+     * <p>Decodes the readable bytes of {@code content} into {@code request}. The reader index of {@code content} is advanced, but its reference count is left
+     * intact</p>
+     *
+     * @return The populated {@code request}
+     * @throws IOException                                                 If the content is not a valid request
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the request, or a step of its scenario, is paced slower than allowed
+     */
+    public ChattyEchoRequest decode(final ByteBuf content, final ChattyEchoRequest request) throws IOException, EchoRejectedException {
+        request.reset();
+        // a heap buffer is parsed in place, sparing the stream over it
+        if (content.hasArray()) {
+            final int length = content.readableBytes();
+            try (final JsonParser parser = JSON_FACTORY.createParser(content.array(), content.arrayOffset() + content.readerIndex(), length)) {
+                decode(parser, request);
+            }
+            content.skipBytes(length);
+        } else {
+            try (final JsonParser parser = JSON_FACTORY.createParser((InputStream) new ByteBufInputStream(content))) {
+                decode(parser, request);
+            }
+        }
+        return request;
+    }
+
+    private static void decode(final JsonParser parser, final ChattyEchoRequest request) throws IOException, EchoRejectedException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        decodeObject(parser, request, false);
+    }
+
+    /**
+     * <p>Decodes the fields of an object into {@code request}, up to the end of the object. The parser is positioned at the object's start. The echo of a
+     * scenario step has the fields of an echo request only</p>
+     */
+    private static void decodeObject(final JsonParser parser, final ChattyEchoRequest request, final boolean step) throws IOException, EchoRejectedException {
+        int fields = 0;
+        long delayMillis = 0L;
+        long delayMicros = 0L;
+        boolean hasDelayMicros = false;
+        double rate = 0.0D;
+        double rampTo = 0.0D;
+        int repeat = 1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (step && STEP_EXCLUDED_FIELDS.contains(field)) {
+                throw new JsonParseException(parser, String.format("Field '%s' is not allowed in the echo of a scenario step", field));
+            }
+            switch (field) {
+                case "msg":
+                    if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+                        throw new JsonParseException(parser, "Field 'msg' must be a string");
+                    }
+                    request.setMsg(parser.getValueAsString());
+                    fields |= MSG;
+                    break;
+                case "times":
+                    request.setTimes(intValue(parser, field, value));
+                    fields |= TIMES;
+                    break;
+                case "delay":
+                    delayMillis = Math.max(0L, longValue(parser, field, value));
+                    fields |= DELAY;
+                    break;
+                case "delayMicros":
+                    delayMicros = Math.max(0L, longValue(parser, field, value));
+                    hasDelayMicros = true;
+                    fields |= DELAY;
+                    break;
+                case "rate":
+                    if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT) {
+                        throw new JsonParseException(parser, "Field 'rate' must be a number");
+                    }
+                    rate = parser.getDoubleValue();
+                    if (!(rate > 0.0D) || Double.isInfinite(rate)) {
+                        throw new JsonParseException(parser, String.format("Field 'rate' must be a positive number of echoes per second, was %s", rate));
+                    }
+                    fields |= DELAY;
+                    break;
+                case "rampTo":
+                    if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT) {
+                        throw new JsonParseException(parser, "Field 'rampTo' must be a number");
+                    }
+                    rampTo = parser.getDoubleValue();
+                    if (!(rampTo > 0.0D) || Double.isInfinite(rampTo)) {
+                        throw new JsonParseException(parser, String.format("Field 'rampTo' must be a positive number of echoes per second, was %s", rampTo));
+                    }
+                    fields |= PACING;
+                    break;
+                case "pacing":
+                    request.setPacing(pacingValue(parser, stringValue(parser, field, value)));
+                    fields |= PACING;
+                    break;
+                case "burst":
+                    final int burstSize = intValue(parser, field, value);
+                    if (burstSize < 1) {
+                        throw new JsonParseException(parser, String.format("Field 'burst' must be positive, was %d", burstSize));
+                    }
+                    request.setBurstSize(burstSize);
+                    fields |= PACING;
+                    break;
+                case "payload":
+                    if (value != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(parser, "Field 'payload' must be an object");
+                    }
+                    request.setPayloadSpec(payloadSpec(parser));
+                    fields |= PAYLOAD;
+                    break;
+                case "topic":
+                    request.setTopic(stringValue(parser, field, value));
+                    break;
+                case "subscribe":
+                    request.setSubscribe(stringValue(parser, field, value));
+                    fields |= SUBSCRIPTION;
+                    break;
+                case "unsubscribe":
+                    request.setUnsubscribe(stringValue(parser, field, value));
+                    fields |= SUBSCRIPTION;
+                    break;
+                case "steps":
+                    if (value != JsonToken.START_ARRAY) {
+                        throw new JsonParseException(parser, "Field 'steps' must be an array");
+                    }
+                    request.setSteps(steps(parser));
+                    fields |= SCENARIO;
+                    break;
+                case "repeat":
+                    repeat = intValue(parser, field, value);
+                    if (repeat < 0) {
+                        throw new JsonParseException(parser, String.format("Field 'repeat' cannot be negative, was %d", repeat));
+                    }
+                    fields |= SCENARIO;
+                    break;
+                case "stop":
+                    if (value != JsonToken.VALUE_TRUE) {
+                        throw new JsonParseException(parser, "Field 'stop' must be true");
+                    }
+                    request.setStop(true);
+                    fields |= STOP;
+                    break;
+                case "sequenced":
+                    if (value != JsonToken.VALUE_TRUE && value != JsonToken.VALUE_FALSE) {
+                        throw new JsonParseException(parser, "Field 'sequenced' must be a boolean");
+                    }
+                    request.setFlags(value == JsonToken.VALUE_TRUE ? request.getFlags() | ChattyEchoRequest.FLAG_SEQUENCED : request.getFlags() &
+                            ~ChattyEchoRequest.FLAG_SEQUENCED);
+                    break;
+                default:
+                    throw new JsonParseException(parser, String.format("Unrecognized field '%s'", field));
+            }
+        }
+
+        if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected end of JSON object");
+        }
+        if ((fields & STOP) != 0) {
+            if (fields != STOP || request.getTopic() != null) {
+                throw new JsonParseException(parser, String.format("A stop request cannot have any other field: %s", request));
+            }
+            return;
+        }
+        if ((fields & SCENARIO) != 0) {
+            if ((fields & ~SCENARIO) != 0 || request.getTopic() != null) {
+                throw new JsonParseException(parser, String.format("A scenario cannot also be an echo request or a subscription: %s", request));
+            }
+            if (request.getSteps() == null || request.getSteps().isEmpty()) {
+                throw new JsonParseException(parser, "A scenario needs at least one step");
+            }
+            request.setRepeat(repeat);
+            return;
+        }
+        if ((fields & SUBSCRIPTION) != 0) {
+            if ((fields & (REQUIRED | PACING | PAYLOAD)) != 0 || request.getTopic() != null) {
+                throw new JsonParseException(parser, String.format("A subscription cannot also be an echo request: %s", request));
+            }
+        } else if ((fields & (REQUIRED & ~MSG)) != (REQUIRED & ~MSG) || (fields & (MSG | PAYLOAD)) == 0) {
+            throw new JsonParseException(parser, String.format("Missing required field(s) in %s", request));
+        }
+        if (rate > 0.0D) {
+            request.setIntervalNanos(EchoPacing.rateToIntervalNanos(rate));
+        } else if (hasDelayMicros) {
+            request.setIntervalNanos(TimeUnit.MICROSECONDS.toNanos(delayMicros));
+        } else {
+            request.setIntervalNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+        if (rampTo > 0.0D) {
+            if (!(rate > 0.0D)) {
+                throw new JsonParseException(parser, "Field 'rampTo' needs a 'rate' to ramp from");
+            }
+            request.setRampToIntervalNanos(EchoPacing.rateToIntervalNanos(rampTo));
+        }
+        checkMaxInterval(Math.max(request.getIntervalNanos(), request.getRampToIntervalNanos()));
+    }
+
+    /**
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the interval is above {@link
+     *                                                                     com.nikoskatsanos.chatty.echo.engine.EchoPacing#MAX_INTERVAL_NANOS}
+     */
+    static void checkMaxInterval(final long intervalNanos) throws EchoRejectedException {
+        if (intervalNanos > EchoPacing.MAX_INTERVAL_NANOS) {
+            throw new EchoRejectedException(EchoRejection.MAX_DELAY_LIMIT, TimeUnit.NANOSECONDS.toMicros(intervalNanos), TimeUnit.NANOSECONDS.toMicros
+                    (EchoPacing.MAX_INTERVAL_NANOS));
+        }
+    }
+
+    /**
+     * <p>Decodes the {@code steps} array of a scenario. The parser is positioned at the array's start</p>
+     */
+    private static List<ChattyEchoRequest> steps(final JsonParser parser) throws IOException, EchoRejectedException {
+        final List<ChattyEchoRequest> steps = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (steps.size() >= MAX_SCENARIO_STEPS) {
+                throw new JsonParseException(parser, String.format("A scenario can have up to %d steps", MAX_SCENARIO_STEPS));
+            }
+            steps.add(step(parser));
+        }
+        if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Field 'steps' must be an array of objects");
+        }
+        return steps;
+    }
+
+    /**
+     * <p>Decodes a step of a scenario, either {@code {"echo": {...}}}, whose object has the fields of an echo request, or {@code {"pause": 1000}} in
+     * milliseconds. The parser is positioned at the step's start</p>
+     */
+    private static ChattyEchoRequest step(final JsonParser parser) throws IOException, EchoRejectedException {
+        ChattyEchoRequest step = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (step != null) {
+                throw new JsonParseException(parser, "A scenario step is either an 'echo' or a 'pause'");
+            }
+            switch (field) {
+                case "echo":
+                    if (value != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(parser, "Field 'echo' must be an object");
+                    }
+                    step = new ChattyEchoRequest();
+                    decodeObject(parser, step, true);
+                    break;
+                case "pause":
+                    final long pauseMillis = longValue(parser, field, value);
+                    if (pauseMillis < 1L) {
+                        throw new JsonParseException(parser, String.format("Field 'pause' must be a positive number of milliseconds, was %d", pauseMillis));
+                    }
+                    step = new ChattyEchoRequest().setPauseNanos(TimeUnit.MILLISECONDS.toNanos(pauseMillis));
+                    break;
+                default:
+                    throw new JsonParseException(parser, String.format("Unrecognized scenario step field '%s'", field));
+            }
+        }
+        if (step == null) {
+            throw new JsonParseException(parser, "A scenario step needs either an 'echo' or a 'pause'");
+        }
+        return step;
+    }
+
+    /**
+     * <p>Decodes the {@code payload} object, {@code {"size": 1048576, "pattern": "abc"}}, {@code {"size": 1048576, "seed": 42}} or {@code {"file":
+     * "payload.bin"}}. The parser is positioned at the object's start</p>
+     */
+    private static PayloadSpec payloadSpec(final JsonParser parser) throws IOException {
+        int size = -1;
+        String pattern = null;
+        Long seed = null;
+        String file = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            switch (field) {
+                case "size":
+                    size = intValue(parser, field, value);
+                    break;
+                case "pattern":
+                    pattern = stringValue(parser, field, value);
+                    break;
+                case "seed":
+                    seed = longValue(parser, field, value);
+                    break;
+                case "file":
+                    file = stringValue(parser, field, value);
+                    break;
+                default:
+                    throw new JsonParseException(parser, String.format("Unrecognized payload field '%s'", field));
+            }
+        }
+        try {
+            if (file != null) {
+                if (size >= 0 || pattern != null || seed != null) {
+                    throw new JsonParseException(parser, "A payload file cannot also have a size, pattern or seed");
+                }
+                return PayloadSpec.file(file);
+            }
+            if (size < 0) {
+                throw new JsonParseException(parser, "A payload needs either a size or a file");
+            }
+            if (seed != null) {
+                if (pattern != null) {
+                    throw new JsonParseException(parser, "A payload cannot have both a pattern and a seed");
+                }
+                return PayloadSpec.random(size, seed);
+            }
+            return PayloadSpec.pattern(size, pattern == null ? PayloadSpec.DEFAULT_PATTERN : pattern);
+        } catch (final IllegalArgumentException e) {
+            throw new JsonParseException(parser, e.getMessage());
+        }
+    }
+
+    private static PacingDistribution pacingValue(final JsonParser parser, final String pacing) throws IOException {
+        try {
+            return PacingDistribution.valueOf(pacing.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new JsonParseException(parser, String.format("Field 'pacing' must be one of %s, was '%s'", Arrays.toString(PacingDistribution.values()),
+                    pacing));
+        }
+    }
+
+    private static String stringValue(final JsonParser parser, final String field, final JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, String.format("Field '%s' must be a string", field));
+        }
+        return parser.getText();
+    }
+
+    private static int intValue(final JsonParser parser, final String field, final JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw new JsonParseException(parser, String.format("Field '%s' must be an integer", field));
+        }
+        return parser.getIntValue();
+    }
+
+    private static long longValue(final JsonParser parser, final String field, final JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw new JsonParseException(parser, String.format("Field '%s' must be an integer", field));
+        }
+        return parser.getLongValue();
+    }
+}
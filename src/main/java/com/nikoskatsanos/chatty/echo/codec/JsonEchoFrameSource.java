@@ -0,0 +1,127 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoClock;
+import com.nikoskatsanos.chatty.echo.engine.EchoFrameSource;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.engine.EchoFrameSource} of the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol#JSON} protocol. Every
+ * echo is a {@link io.netty.handler.codec.http.websocketx.TextWebSocketFrame} sharing the same encoded {@link
+ * com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage}.</p> <p>If sequenced, the {@code burstId}, {@code seq} and {@code sentNanos} fields of each
+ * echo are written by hand in place of the message's opening brace, into a single pooled buffer sized exactly, followed by a copy of the rest of the
+ * message. Copying a small message costs less than composing two buffers; a message larger than {@value #MAX_COPIED_BYTES} bytes is not copied, its
+ * fields are written into a buffer of their own which is composed with the shared message instead. No {@link java.lang.String}s or Jackson objects are
+ * created per echo</p>
+ *
+ * @author nikkatsa
+ */
+public class JsonEchoFrameSource implements EchoFrameSource {
+
+    private static final byte[] BURST_ID_FIELD = "{\"burstId\":".getBytes();
+    private static final byte[] SEQ_FIELD = ",\"seq\":".getBytes();
+    private static final byte[] SENT_NANOS_FIELD = ",\"sentNanos\":".getBytes();
+    private static final int FIXED_HEADER_BYTES = BURST_ID_FIELD.length + SEQ_FIELD.length + SENT_NANOS_FIELD.length + 1;
+    static final int MAX_COPIED_BYTES = 1024;
+
+    private final ByteBufAllocator allocator;
+    private final ByteBuf encoded;
+    private final long burstId;
+    private final boolean sequenced;
+    private final int burstIdDigits;
+
+    /**
+     * @param encoded The encoded outbound message, a JSON object. The source takes ownership of it
+     */
+    public JsonEchoFrameSource(final ByteBufAllocator allocator, final ByteBuf encoded, final long burstId, final boolean sequenced) {
+        this.allocator = allocator;
+        this.encoded = encoded;
+        this.burstId = burstId;
+        this.sequenced = sequenced;
+        this.burstIdDigits = digits(burstId);
+    }
+
+    public JsonEchoFrameSource(final ByteBuf encoded) {
+        this(null, encoded, 0L, false);
+    }
+
+    @Override
+    public WebSocketFrame frame(final long sequence) {
+        if (!this.sequenced) {
+            return new TextWebSocketFrame(this.encoded.retainedDuplicate());
+        }
+
+        final long sentNanos = EchoClock.epochNanos();
+        final int headerBytes = this.headerBytes(sequence, sentNanos);
+        // the encoded message without its opening brace
+        final int fieldsIndex = this.encoded.readerIndex() + 1;
+        final int fieldsBytes = this.encoded.readableBytes() - 1;
+        if (fieldsBytes <= MAX_COPIED_BYTES) {
+            final ByteBuf content = this.allocator.directBuffer(headerBytes + fieldsBytes, headerBytes + fieldsBytes);
+            this.writeHeader(content, sequence, sentNanos);
+            return new TextWebSocketFrame(content.writeBytes(this.encoded, fieldsIndex, fieldsBytes));
+        }
+        final ByteBuf header = this.allocator.directBuffer(headerBytes, headerBytes);
+        this.writeHeader(header, sequence, sentNanos);
+        return new TextWebSocketFrame(this.allocator.compositeDirectBuffer(2).addComponents(true, header, this.encoded.retainedSlice(fieldsIndex,
+                fieldsBytes)));
+    }
+
+    /**
+     * @return The size of the first echo's frame. The frames of later echoes can be a few bytes larger, as their {@code seq} grows
+     */
+    @Override
+    public int frameSize() {
+        return this.sequenced ? this.headerBytes(0L, EchoClock.epochNanos()) + this.encoded.readableBytes() - 1 : this.encoded.readableBytes();
+    }
+
+    @Override
+    public void release() {
+        this.encoded.release();
+    }
+
+    private int headerBytes(final long sequence, final long sentNanos) {
+        return FIXED_HEADER_BYTES + this.burstIdDigits + digits(sequence) + digits(sentNanos);
+    }
+
+    private void writeHeader(final ByteBuf buf, final long sequence, final long sentNanos) {
+        buf.writeBytes(BURST_ID_FIELD);
+        writeAscii(buf, this.burstId);
+        buf.writeBytes(SEQ_FIELD);
+        writeAscii(buf, sequence);
+        buf.writeBytes(SENT_NANOS_FIELD);
+        writeAscii(buf, sentNanos);
+        buf.writeByte(',');
+    }
+
+    /**
+     * <p>Writes the decimal representation of a non negative {@code long} without going through a {@link java.lang.String}</p>
+     */
+    static void writeAscii(final ByteBuf buf, final long value) {
+        final int digits = digits(value);
+        final int start = buf.writerIndex();
+        buf.ensureWritable(digits);
+        long v = value;
+        for (int i = start + digits - 1; i >= start; i--) {
+            buf.setByte(i, (int) ('0' + v % 10L));
+            v /= 10L;
+        }
+        buf.writerIndex(start + digits);
+    }
+
+    /**
+     * @return The number of decimal digits of a non negative {@code long}
+     */
+    static int digits(final long value) {
+        if (value < 0L) {
+            throw new IllegalArgumentException(String.format("Only non negative values are supported, got %d", value));
+        }
+        int digits = 1;
+        for (long v = value / 10L; v != 0L; v /= 10L) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,24 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+/**
+ * <p>Client side {@code permessage-deflate}, as Netty's {@link io.netty.handler.codec.http.websocketx.extensions.compression
+ * .WebSocketClientCompressionHandler} but asking for {@code server_no_context_takeover}, so that a server in {@link
+ * com.nikoskatsanos.chatty.echo.compression.CompressionMode#CACHED} mode can repeat the echoes it deflated once</p>
+ *
+ * @author nikkatsa
+ */
+@ChannelHandler.Sharable
+public class ClientCompressionHandler extends WebSocketClientExtensionHandler {
+
+    public static final ClientCompressionHandler INSTANCE = new ClientCompressionHandler();
+
+    private ClientCompressionHandler() {
+        super(new PerMessageDeflateClientExtensionHandshaker(CompressionPolicy.DEFAULT_LEVEL, false, PerMessageDeflateServerExtensionHandshaker
+                .MAX_WINDOW_SIZE, true, true));
+    }
+}
@@ -0,0 +1,95 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoFrameSource;
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.engine.EchoFrameSource} which deflates the echo of another source once and repeats the compressed frames, with
+ * their {@code RSV1} bit set so the connection's {@link com.nikoskatsanos.chatty.echo.compression.EchoDeflateEncoder} passes them through. The other source
+ * has to create identical echoes, i.e. not sequenced ones, and the connection must have negotiated {@code server_no_context_takeover}, see {@link
+ * com.nikoskatsanos.chatty.echo.compression.EchoDeflateEncoder#isCacheable(int)}</p>
+ *
+ * @author nikkatsa
+ */
+public class CompressedEchoFrameSource implements EchoFrameSource {
+
+    private final ByteBuf[] deflated;
+    private final boolean text;
+    private final int frameSize;
+    private final int savedBytes;
+    private final EchoMetrics metrics;
+
+    /**
+     * @param source The source of the echoes to compress, which is released once they are. The source takes ownership of it
+     */
+    public CompressedEchoFrameSource(final ByteBufAllocator allocator, final EchoFrameSource source, final EchoDeflateEncoder encoder, final EchoMetrics
+            metrics) {
+        final ByteBuf[] payloads = new ByteBuf[source.fragments()];
+        int originalSize = 0;
+        try {
+            final WebSocketFrame first = source.frame(0L);
+            this.text = first instanceof TextWebSocketFrame;
+            payloads[0] = first.content();
+            for (int i = 1; i < payloads.length; i++) {
+                payloads[i] = source.continuation(0L, i).content();
+            }
+            for (final ByteBuf payload : payloads) {
+                originalSize += payload.readableBytes();
+            }
+            this.deflated = encoder.deflateMessage(allocator, payloads);
+        } finally {
+            for (final ByteBuf payload : payloads) {
+                if (payload != null) {
+                    payload.release();
+                }
+            }
+            source.release();
+        }
+
+        int frameSize = 0;
+        for (final ByteBuf deflated : this.deflated) {
+            frameSize += deflated.readableBytes();
+        }
+        this.frameSize = frameSize;
+        this.savedBytes = originalSize - frameSize;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public WebSocketFrame frame(final long sequence) {
+        this.metrics.onDeflateCacheHit(this.savedBytes);
+        final boolean finalFragment = this.deflated.length == 1;
+        final ByteBuf payload = this.deflated[0].retainedDuplicate();
+        return this.text ? new TextWebSocketFrame(finalFragment, WebSocketExtension.RSV1, payload) : new BinaryWebSocketFrame(finalFragment,
+                WebSocketExtension.RSV1, payload);
+    }
+
+    @Override
+    public int frameSize() {
+        return this.frameSize;
+    }
+
+    @Override
+    public int fragments() {
+        return this.deflated.length;
+    }
+
+    @Override
+    public WebSocketFrame continuation(final long sequence, final int fragment) {
+        return new ContinuationWebSocketFrame(fragment == this.deflated.length - 1, 0, this.deflated[fragment].retainedDuplicate());
+    }
+
+    @Override
+    public void release() {
+        for (final ByteBuf deflated : this.deflated) {
+            deflated.release();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+/**
+ * <p>Whether and how the server compresses echoes with the {@code permessage-deflate} WebSocket extension</p>
+ *
+ * @author nikkatsa
+ */
+public enum CompressionMode {
+    /**
+     * <p>The extension is not negotiated, echoes are never compressed</p>
+     */
+    OFF,
+    /**
+     * <p>Echoes of at least the threshold size are deflated, each one as it is written</p>
+     */
+    ON,
+    /**
+     * <p>As {@link #ON}, but the identical echoes of a burst are deflated once and their compressed frames are repeated. Only possible on connections which
+     * negotiated {@code server_no_context_takeover}, otherwise echoes are deflated as with {@link #ON}</p>
+     */
+    CACHED
+}
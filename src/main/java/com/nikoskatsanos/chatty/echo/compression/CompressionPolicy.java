@@ -0,0 +1,68 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.zip.Deflater;
+
+/**
+ * <p>Controls the {@code permessage-deflate} compression of echoes. Deflating small messages costs more CPU than the bytes it saves, hence echoes smaller
+ * than {@code thresholdBytes} are sent uncompressed even on connections which negotiated the extension</p>
+ *
+ * @author nikkatsa
+ */
+public class CompressionPolicy {
+
+    public static final int DEFAULT_LEVEL = 6;
+    public static final int DEFAULT_THRESHOLD_BYTES = 0;
+
+    public static final CompressionPolicy DEFAULT = new CompressionPolicy(CompressionMode.ON, DEFAULT_LEVEL, DEFAULT_THRESHOLD_BYTES);
+
+    private final CompressionMode mode;
+    private final int level;
+    private final int thresholdBytes;
+
+    /**
+     * @param level          Deflate compression level, from {@code 0} to {@code 9}
+     * @param thresholdBytes Echoes smaller than this are not compressed
+     */
+    public CompressionPolicy(final CompressionMode mode, final int level, final int thresholdBytes) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Compression level must be between %d and %d, was %d", Deflater.NO_COMPRESSION, Deflater
+                    .BEST_COMPRESSION, level));
+        }
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException(String.format("Compression threshold cannot be negative, was %d", thresholdBytes));
+        }
+        this.mode = mode;
+        this.level = level;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public CompressionMode getMode() {
+        return this.mode;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public int getThresholdBytes() {
+        return this.thresholdBytes;
+    }
+
+    public boolean isEnabled() {
+        return this.mode != CompressionMode.OFF;
+    }
+
+    /**
+     * @param bytes The size of a message, or of the first frame of a fragmented one
+     */
+    public boolean shouldCompress(final int bytes) {
+        return this.isEnabled() && bytes > 0 && bytes >= this.thresholdBytes;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("mode", this.mode).add("level", this.level).add("thresholdBytes", this.thresholdBytes).toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+/**
+ * <p>Negotiates {@code permessage-deflate} as Netty's {@link io.netty.handler.codec.http.websocketx.extensions.compression
+ * .PerMessageDeflateServerExtensionHandshaker} does, accepting {@code server_no_context_takeover} when the client asks for it, but compresses outbound
+ * messages with an {@link com.nikoskatsanos.chatty.echo.compression.EchoDeflateEncoder} which applies the {@link
+ * com.nikoskatsanos.chatty.echo.compression.CompressionPolicy}. The server's window is always the default one of {@code 15} bits, the only one {@link
+ * java.util.zip.Deflater} supports. Inbound messages are inflated by Netty's decoder</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoCompressionHandshaker implements WebSocketServerExtensionHandshaker {
+
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    private final CompressionPolicy compressionPolicy;
+    private final EchoMetrics metrics;
+    private final PerMessageDeflateServerExtensionHandshaker delegate;
+
+    public EchoCompressionHandshaker(final CompressionPolicy compressionPolicy, final EchoMetrics metrics) {
+        this.compressionPolicy = compressionPolicy;
+        this.metrics = metrics;
+        this.delegate = new PerMessageDeflateServerExtensionHandshaker(compressionPolicy.getLevel(), false, PerMessageDeflateServerExtensionHandshaker
+                .MAX_WINDOW_SIZE, true, false);
+    }
+
+    @Override
+    public WebSocketServerExtension handshakeExtension(final WebSocketExtensionData extensionData) {
+        final WebSocketServerExtension extension = this.delegate.handshakeExtension(extensionData);
+        if (extension == null) {
+            return null;
+        }
+        final WebSocketExtensionData responseData = extension.newReponseData();
+        final boolean noContext = responseData.parameters().containsKey(SERVER_NO_CONTEXT_TAKEOVER);
+        return new WebSocketServerExtension() {
+            @Override
+            public WebSocketExtensionData newReponseData() {
+                return responseData;
+            }
+
+            @Override
+            public int rsv() {
+                return extension.rsv();
+            }
+
+            @Override
+            public WebSocketExtensionEncoder newExtensionEncoder() {
+                return new EchoDeflateEncoder(compressionPolicy, noContext, metrics);
+            }
+
+            @Override
+            public WebSocketExtensionDecoder newExtensionDecoder() {
+                return extension.newExtensionDecoder();
+            }
+        };
+    }
+}
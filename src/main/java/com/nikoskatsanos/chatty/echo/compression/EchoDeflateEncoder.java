@@ -0,0 +1,132 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.util.AttributeKey;
+
+import java.util.List;
+
+/**
+ * <p>{@code permessage-deflate} encoder of a connection, installed once the extension is negotiated. Messages are deflated according to the {@link
+ * com.nikoskatsanos.chatty.echo.compression.CompressionPolicy}; a message below its threshold is sent uncompressed, which the extension allows per message.
+ * Messages which already have the {@code RSV1} bit set were deflated ahead of time, see {@link com.nikoskatsanos.chatty.echo.compression
+ * .CompressedEchoFrameSource}, and are written as they are, along with their continuation frames.</p> <p>The encoder is reachable from its channel through
+ * {@link #of(io.netty.channel.Channel)}</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoDeflateEncoder extends WebSocketExtensionEncoder {
+
+    private static final AttributeKey<EchoDeflateEncoder> ENCODER = AttributeKey.valueOf(EchoDeflateEncoder.class, "ENCODER");
+
+    private final CompressionPolicy compressionPolicy;
+    private final boolean noContext;
+    private final EchoMetrics metrics;
+    private final EchoDeflater deflater;
+    private boolean compressing;
+
+    /**
+     * @param noContext Whether {@code server_no_context_takeover} was negotiated, in which case every message is deflated on its own
+     */
+    public EchoDeflateEncoder(final CompressionPolicy compressionPolicy, final boolean noContext, final EchoMetrics metrics) {
+        this.compressionPolicy = compressionPolicy;
+        this.noContext = noContext;
+        this.metrics = metrics;
+        this.deflater = new EchoDeflater(compressionPolicy.getLevel(), metrics);
+    }
+
+    /**
+     * @return The encoder of the channel, or {@code null} if it did not negotiate compression
+     */
+    public static EchoDeflateEncoder of(final Channel channel) {
+        return channel.attr(ENCODER).get();
+    }
+
+    /**
+     * @param bytes The size of the identical messages of a burst
+     * @return Whether the messages can be deflated once, by {@link #deflateMessage(io.netty.buffer.ByteBufAllocator, io.netty.buffer.ByteBuf[])}, and
+     * repeated
+     */
+    public boolean isCacheable(final int bytes) {
+        return this.noContext && this.compressionPolicy.getMode() == CompressionMode.CACHED && this.compressionPolicy.shouldCompress(bytes);
+    }
+
+    /**
+     * <p>Deflates a message ahead of time. Only valid without context takeover, where each message is deflated on its own and can hence be repeated</p>
+     *
+     * @param payloads The payloads of the frames of the message, which are not released
+     * @return The deflated payloads of the frames. The caller owns them
+     */
+    public ByteBuf[] deflateMessage(final ByteBufAllocator allocator, final ByteBuf[] payloads) {
+        if (!this.noContext || this.compressing) {
+            throw new IllegalStateException("Messages can only be deflated ahead of time without context takeover and between messages");
+        }
+        final ByteBuf[] deflated = new ByteBuf[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            deflated[i] = this.deflater.deflate(allocator, payloads[i], i == payloads.length - 1);
+        }
+        this.deflater.reset();
+        return deflated;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(ENCODER).set(this);
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(ENCODER).set(null);
+        this.deflater.end();
+    }
+
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final WebSocketFrame frame, final List<Object> out) throws Exception {
+        if (frame instanceof ContinuationWebSocketFrame) {
+            if (this.compressing) {
+                out.add(this.deflate(ctx.alloc(), frame));
+            } else {
+                out.add(frame.retain());
+            }
+            return;
+        }
+        if (!(frame instanceof TextWebSocketFrame) && !(frame instanceof BinaryWebSocketFrame) || (frame.rsv() & WebSocketExtension.RSV1) != 0) {
+            // control frames, which may come in between the fragments of a message, and messages deflated ahead of time
+            out.add(frame.retain());
+            return;
+        }
+        if (this.compressionPolicy.shouldCompress(frame.content().readableBytes())) {
+            this.compressing = true;
+            out.add(this.deflate(ctx.alloc(), frame));
+        } else {
+            this.metrics.onDeflateBypassed();
+            out.add(frame.retain());
+        }
+    }
+
+    private WebSocketFrame deflate(final ByteBufAllocator allocator, final WebSocketFrame frame) {
+        final ByteBuf deflated = this.deflater.deflate(allocator, frame.content(), frame.isFinalFragment());
+        this.metrics.onDeflateSaved(frame.content().readableBytes() - deflated.readableBytes());
+        if (frame.isFinalFragment()) {
+            this.compressing = false;
+            if (this.noContext) {
+                this.deflater.reset();
+            }
+        }
+        if (frame instanceof TextWebSocketFrame) {
+            return new TextWebSocketFrame(frame.isFinalFragment(), frame.rsv() | WebSocketExtension.RSV1, deflated);
+        } else if (frame instanceof BinaryWebSocketFrame) {
+            return new BinaryWebSocketFrame(frame.isFinalFragment(), frame.rsv() | WebSocketExtension.RSV1, deflated);
+        }
+        return new ContinuationWebSocketFrame(frame.isFinalFragment(), frame.rsv(), deflated);
+    }
+}
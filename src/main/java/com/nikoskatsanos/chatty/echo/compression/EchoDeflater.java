@@ -0,0 +1,91 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.zip.Deflater;
+
+/**
+ * <p>Raw deflate of WebSocket message payloads as specified by RFC 7692. Each frame's payload is deflated and sync flushed, and the empty block the sync
+ * flush ends with is removed from the last frame of a message. Without context takeover the deflater has to be {@link #reset()} after every message.</p>
+ * <p>The time spent deflating and the bytes in and out are recorded in the {@link com.nikoskatsanos.chatty.echo.metrics.EchoMetrics}. A deflater is not
+ * thread safe; it belongs to a single connection and is used from its event loop only</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoDeflater {
+
+    private static final int SYNC_FLUSH_TAIL_LENGTH = 4;
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final Deflater deflater;
+    private final EchoMetrics metrics;
+    private byte[] chunk;
+
+    public EchoDeflater(final int level, final EchoMetrics metrics) {
+        this.deflater = new Deflater(level, true);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param payload       The payload of a frame, which is not released
+     * @param finalFragment Whether it is the last frame of its message
+     * @return A new heap buffer with the deflated payload. The caller owns it
+     */
+    public ByteBuf deflate(final ByteBufAllocator allocator, final ByteBuf payload, final boolean finalFragment) {
+        final long start = System.nanoTime();
+        final int length = payload.readableBytes();
+        final ByteBuf out = allocator.heapBuffer(length / 2 + 64);
+        if (payload.hasArray()) {
+            this.deflater.setInput(payload.array(), payload.arrayOffset() + payload.readerIndex(), length);
+            this.deflate(out, Deflater.SYNC_FLUSH);
+        } else {
+            // direct and composite payloads are deflated in chunks, Deflater only reads from arrays
+            if (this.chunk == null) {
+                this.chunk = new byte[CHUNK_SIZE];
+            }
+            int offset = payload.readerIndex();
+            final int end = offset + length;
+            do {
+                final int chunkLength = Math.min(CHUNK_SIZE, end - offset);
+                payload.getBytes(offset, this.chunk, 0, chunkLength);
+                offset += chunkLength;
+                this.deflater.setInput(this.chunk, 0, chunkLength);
+                this.deflate(out, offset == end ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+            } while (offset < end);
+        }
+        if (finalFragment) {
+            out.writerIndex(out.writerIndex() - SYNC_FLUSH_TAIL_LENGTH);
+        }
+        this.metrics.onDeflated(length, out.readableBytes(), System.nanoTime() - start);
+        return out;
+    }
+
+    /**
+     * <p>Forgets the messages deflated so far, so the next one does not refer to them</p>
+     */
+    public void reset() {
+        this.deflater.reset();
+    }
+
+    /**
+     * <p>Frees the native memory of the deflater. It cannot be used afterwards</p>
+     */
+    public void end() {
+        this.deflater.end();
+    }
+
+    private void deflate(final ByteBuf out, final int flush) {
+        while (true) {
+            out.ensureWritable(CHUNK_SIZE / 8);
+            final int writable = out.writableBytes();
+            final int written = this.deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), writable, flush);
+            out.writerIndex(out.writerIndex() + written);
+            // a sync flush is complete once it leaves room in the output, otherwise all the input has to be consumed
+            if (flush == Deflater.NO_FLUSH ? this.deflater.needsInput() : written < writable) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+import io.netty.channel.WriteBufferWaterMark;
+
+/**
+ * <p>Controls how echoes are emitted to a client which cannot keep up. The channel stops being writable when its outbound buffer exceeds the high water mark
+ * and becomes writable again when it drops below the low water mark. What happens to the echoes in between is decided by the {@link
+ * com.nikoskatsanos.chatty.echo.engine.SlowConsumerPolicy}</p>
+ *
+ * @author nikkatsa
+ */
+public class BackpressurePolicy {
+
+    public static final int DEFAULT_LOW_WATER_MARK = WriteBufferWaterMark.DEFAULT.low();
+    public static final int DEFAULT_HIGH_WATER_MARK = WriteBufferWaterMark.DEFAULT.high();
+
+    public static final BackpressurePolicy DEFAULT = new BackpressurePolicy(SlowConsumerPolicy.PAUSE, DEFAULT_LOW_WATER_MARK, DEFAULT_HIGH_WATER_MARK);
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final WriteBufferWaterMark writeBufferWaterMark;
+
+    public BackpressurePolicy(final SlowConsumerPolicy slowConsumerPolicy, final int lowWaterMark, final int highWaterMark) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.writeBufferWaterMark = new WriteBufferWaterMark(lowWaterMark, highWaterMark);
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return this.slowConsumerPolicy;
+    }
+
+    public WriteBufferWaterMark getWriteBufferWaterMark() {
+        return this.writeBufferWaterMark;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("slowConsumerPolicy", this.slowConsumerPolicy).add("lowWaterMark", this.writeBufferWaterMark.low()).add
+                ("highWaterMark", this.writeBufferWaterMark.high()).toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.nikoskatsanos.chatty.echo.bus.EchoBus;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.engine.EchoSink} broadcasting the echoes to every subscriber of an {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoTopic}. The topic is looked up by its name on every flush, as it comes and goes with its subscribers. Each echo
+ * frame is encoded once; every subscriber gets a {@link WebSocketFrame#retainedDuplicate()} of it, sharing the same buffer.</p> <p>The frames written between
+ * two flushes are broadcast together, see {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoTopic#broadcast(io.netty.handler.codec.http.websocketx.WebSocketFrame[],
+ * com.nikoskatsanos.chatty.echo.metrics.EchoMetrics)}, and published as a single message on the {@link com.nikoskatsanos.chatty.echo.bus.EchoBus}, if the
+ * node is part of a cluster, for the other nodes to broadcast to their own subscribers. Subscribers which are not writable miss the frames, rather than
+ * holding back the broadcast. The sink is not writable while the topic has too many broadcasts pending on other event loops, see {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoTopic#isWritable()}, in which case the burst is paused and resumed once they are fanned out</p>
+ *
+ * @author nikkatsa
+ */
+public class BroadcastEchoSink implements EchoSink {
+
+    private final Channel channel;
+    private final EchoScheduler echoScheduler;
+    private final String topic;
+    private final List<WebSocketFrame> batch = new ArrayList<>();
+    private boolean awaitingWritability;
+
+    /**
+     * @param channel The channel which asked for the broadcast, whose burst is resumed once the topic is writable again
+     */
+    public BroadcastEchoSink(final Channel channel, final String topic, final EchoScheduler echoScheduler) {
+        this.channel = channel;
+        this.topic = topic;
+        this.echoScheduler = echoScheduler;
+    }
+
+    @Override
+    public boolean isWritable() {
+        final EchoTopic localTopic = this.echoScheduler.getTopics().find(this.topic);
+        if (localTopic == null || localTopic.isWritable()) {
+            return true;
+        }
+        if (!this.awaitingWritability) {
+            this.awaitingWritability = true;
+            localTopic.onWritable(() -> this.channel.eventLoop().execute(() -> {
+                this.awaitingWritability = false;
+                this.echoScheduler.writabilityChanged(this.channel);
+            }));
+        }
+        return false;
+    }
+
+    @Override
+    public void write(final WebSocketFrame frame) {
+        this.batch.add(frame);
+    }
+
+    @Override
+    public void flush() {
+        if (this.batch.isEmpty()) {
+            return;
+        }
+        final WebSocketFrame[] frames = this.batch.toArray(new WebSocketFrame[this.batch.size()]);
+        this.batch.clear();
+        try {
+            final EchoTopic localTopic = this.echoScheduler.getTopics().find(this.topic);
+            if (localTopic != null) {
+                localTopic.broadcast(frames, this.echoScheduler.getMetrics());
+            }
+            final EchoBus bus = this.echoScheduler.getBus();
+            if (bus != null) {
+                bus.publish(this.topic, frames);
+            }
+        } finally {
+            EchoTopic.release(frames);
+        }
+    }
+}
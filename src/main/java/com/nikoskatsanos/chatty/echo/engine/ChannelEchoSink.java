@@ -0,0 +1,33 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>{@link com.nikoskatsanos.chatty.echo.engine.EchoSink} writing the echoes back to the channel which asked for them</p>
+ *
+ * @author nikkatsa
+ */
+class ChannelEchoSink implements EchoSink {
+
+    private final Channel channel;
+
+    ChannelEchoSink(final Channel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return this.channel.isWritable();
+    }
+
+    @Override
+    public void write(final WebSocketFrame frame) {
+        this.channel.write(frame, this.channel.voidPromise());
+    }
+
+    @Override
+    public void flush() {
+        this.channel.flush();
+    }
+}
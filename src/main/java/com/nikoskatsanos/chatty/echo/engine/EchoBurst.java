@@ -0,0 +1,341 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>A stateful cursor over the echoes of a single request. Only its next emission is ever scheduled, on the channel's event loop, hence the memory it needs
+ * is constant regardless of the number of times the message is echoed back.</p> <p>A burst is started and cancelled through the {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoScheduler} and it is not thread safe; it is only ever accessed from the channel's event loop</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoBurst implements Runnable {
+
+    private final Channel channel;
+    private final EchoSink sink;
+    private final EchoFrameSource frameSource;
+    private final LongConsumer onEmission;
+    private final int times;
+    private final EchoPacing pacing;
+
+    private EchoScheduler echoScheduler;
+    private EchoConnectionStats stats;
+    private EchoLogSampler logSampler;
+    private TokenBucket byteRate;
+    private long nextDeadline;
+    private int cursor;
+    private int emitted;
+    private ScheduledFuture<?> nextEmission;
+    private boolean paused;
+    private long pausedAtNanos;
+    private boolean done;
+
+    /**
+     * @param frameSource The source of the echo frames. The burst takes ownership of it and releases it when done
+     * @param onEmission  Callback invoked after an echo is written, whenever the connection's {@link com.nikoskatsanos.chatty.echo.engine.EchoLogSampler}
+     *                    samples it, and once the burst is done if echoes were not sampled since, with the number of echoes since the previous invocation
+     */
+    public EchoBurst(final Channel channel, final EchoFrameSource frameSource, final LongConsumer onEmission, final int times, final long delay, final TimeUnit
+            timeUnit) {
+        this(channel, frameSource, onEmission, times, EchoPacing.constant(delay, timeUnit));
+    }
+
+    public EchoBurst(final Channel channel, final EchoFrameSource frameSource, final LongConsumer onEmission, final int times, final EchoPacing pacing) {
+        this(channel, new ChannelEchoSink(channel), frameSource, onEmission, times, pacing);
+    }
+
+    /**
+     * @param channel The channel which asked for the echoes. The burst runs on its event loop and is replaced by its next request
+     * @param sink    Where the echoes are written to
+     */
+    public EchoBurst(final Channel channel, final EchoSink sink, final EchoFrameSource frameSource, final LongConsumer onEmission, final int times,
+                     final EchoPacing pacing) {
+        this.channel = channel;
+        this.sink = sink;
+        this.frameSource = frameSource;
+        this.onEmission = onEmission;
+        this.times = times;
+        this.pacing = pacing;
+    }
+
+    void start(final EchoScheduler echoScheduler, final EchoConnectionStats stats, final EchoLogSampler logSampler, final TokenBucket byteRate) {
+        this.echoScheduler = echoScheduler;
+        this.stats = stats;
+        this.logSampler = logSampler;
+        this.byteRate = byteRate;
+        this.nextDeadline = deadlineAfter(System.nanoTime(), this.pacing.nextIntervalNanos(0L));
+        echoScheduler.getMetrics().onScheduled(this.times);
+        this.scheduleNext();
+    }
+
+    /**
+     * <p>Emits the echoes that are due. Each echo's deadline derives from the previous echo's deadline, as paced by the {@link
+     * com.nikoskatsanos.chatty.echo.engine.EchoPacing}, never from when that was actually emitted, hence a late emission does not push back the ones that
+     * follow and intervals shorter than the event loop's timer resolution are held on average by catch-up batches.</p> <p>All the fragments of an echo are
+     * written together, without flushing, and the sink is flushed once per run, or earlier if the {@link com.nikoskatsanos.chatty.echo.engine.FlushPolicy}
+     * limits are reached. Emission pauses while the sink is not writable and is deferred while the connection's or the server's {@link
+     * com.nikoskatsanos.chatty.echo.engine.TokenBucket} cannot cover the next frame.</p> <p>How late each echo is emitted is recorded in the {@link
+     * com.nikoskatsanos.chatty.echo.engine.EmissionLagMonitor}, and echoes are reported to the emission callback only as sampled by the connection's {@link
+     * com.nikoskatsanos.chatty.echo.engine.EchoLogSampler}</p>
+     */
+    @Override
+    public void run() {
+        if (this.done || this.paused) {
+            return;
+        }
+        this.nextEmission = null;
+
+        final FlushPolicy flushPolicy = this.echoScheduler.getFlushPolicy();
+        final int frameSize = this.frameSource.frameSize();
+        final int fragments = this.frameSource.fragments();
+        final EmissionLagMonitor emissionLagMonitor = this.echoScheduler.getEmissionLagMonitor();
+        final long now = System.nanoTime();
+        int batchFrames = 0;
+        long batchBytes = 0L;
+        long throttleNanos = 0L;
+        final boolean paced = this.pacing.getIntervalNanos() > 0L;
+        while (this.cursor < this.times && (batchFrames == 0 || this.isDue(now))) {
+            if (!this.sink.isWritable()) {
+                break;
+            }
+            throttleNanos = this.acquireBytes(frameSize, now);
+            if (throttleNanos > 0L) {
+                break;
+            }
+            if (paced) {
+                emissionLagMonitor.record(now - this.nextDeadline);
+            }
+            this.sink.write(this.frameSource.frame(this.cursor));
+            for (int fragment = 1; fragment < fragments; fragment++) {
+                this.sink.write(this.frameSource.continuation(this.cursor, fragment));
+            }
+            this.advance();
+            this.emitted++;
+            final long echoes = this.logSampler.sample(now);
+            if (echoes > 0L) {
+                this.onEmission.accept(echoes);
+            }
+
+            batchFrames++;
+            batchBytes += frameSize;
+            if (batchFrames >= flushPolicy.getMaxFramesPerFlush() || batchBytes >= flushPolicy.getMaxBytesPerFlush()) {
+                break;
+            }
+        }
+        if (batchFrames > 0) {
+            this.stats.onEmitted(batchFrames);
+            this.echoScheduler.getMetrics().onSent(batchFrames, batchBytes);
+            this.sink.flush();
+        }
+
+        if (this.cursor >= this.times) {
+            this.complete();
+        } else if (!this.sink.isWritable()) {
+            this.pause(now);
+        } else if (throttleNanos > 0L) {
+            this.echoScheduler.getMetrics().onThrottled();
+            this.nextEmission = this.channel.eventLoop().schedule(this, throttleNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.scheduleNext();
+        }
+    }
+
+    /**
+     * <p>Resumes a burst that was paused because its sink was not writable. Called when the channel, or the sink, becomes writable again. The echoes that
+     * became due in the meantime are handled according to the {@link com.nikoskatsanos.chatty.echo.engine.SlowConsumerPolicy}</p>
+     */
+    void resume() {
+        if (this.done || !this.paused || !this.sink.isWritable()) {
+            return;
+        }
+        this.paused = false;
+        final long now = System.nanoTime();
+        this.stats.onResumed(now - this.pausedAtNanos);
+
+        switch (this.echoScheduler.getBackpressurePolicy().getSlowConsumerPolicy()) {
+            case DROP:
+                final int dropped = this.skipDue(now, false);
+                if (dropped > 0) {
+                    this.stats.onDropped(dropped);
+                    this.echoScheduler.getMetrics().onDropped(dropped);
+                }
+                break;
+            case COALESCE:
+                final int coalesced = this.skipDue(now, true);
+                if (coalesced > 0) {
+                    this.stats.onCoalesced(coalesced);
+                    this.echoScheduler.getMetrics().onCoalesced(coalesced);
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (this.cursor >= this.times) {
+            this.complete();
+        } else {
+            this.scheduleNext();
+        }
+    }
+
+    /**
+     * <p>Stops the burst. Any echo that has not been emitted yet is dropped</p>
+     */
+    public void cancel() {
+        if (this.done) {
+            return;
+        }
+        this.done = true;
+        this.frameSource.release();
+        if (this.echoScheduler != null) {
+            this.echoScheduler.getMetrics().onCancelled(this.times - this.cursor);
+            this.reportPending();
+        }
+        if (this.nextEmission != null) {
+            this.nextEmission.cancel(false);
+            this.nextEmission = null;
+        }
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    public boolean isPaused() {
+        return this.paused;
+    }
+
+    public int getTimes() {
+        return this.times;
+    }
+
+    public int getEmitted() {
+        return this.emitted;
+    }
+
+    public int getRemaining() {
+        return this.times - this.cursor;
+    }
+
+    public EchoPacing getPacing() {
+        return this.pacing;
+    }
+
+    /**
+     * @return {@code 0} if the connection's and the server's byte rates allow the bytes to be sent now, otherwise the nanoseconds to wait
+     */
+    private long acquireBytes(final int bytes, final long now) {
+        if (this.byteRate != null) {
+            final long wait = this.byteRate.tryAcquire(bytes, now);
+            if (wait > 0L) {
+                return wait;
+            }
+        }
+        final TokenBucket serverByteRate = this.echoScheduler.getServerByteRate();
+        if (serverByteRate != null) {
+            final long wait = serverByteRate.tryAcquire(bytes, now);
+            if (wait > 0L) {
+                if (this.byteRate != null) {
+                    this.byteRate.release(bytes);
+                }
+                return wait;
+            }
+        }
+        return 0L;
+    }
+
+    private void pause(final long now) {
+        this.stats.onStalled();
+        this.echoScheduler.getMetrics().onStalled();
+        // a broadcast also pauses while its topic has too many pending fan-outs, which is not the connection's fault
+        if (this.echoScheduler.getBackpressurePolicy().getSlowConsumerPolicy() == SlowConsumerPolicy.DISCONNECT && !this.channel.isWritable()) {
+            this.echoScheduler.disconnectSlowConsumer(this.channel);
+            return;
+        }
+        this.paused = true;
+        this.pausedAtNanos = now;
+    }
+
+    private void complete() {
+        this.done = true;
+        this.frameSource.release();
+        this.reportPending();
+        this.echoScheduler.completed(this.channel, this);
+    }
+
+    /**
+     * <p>Reports to the emission callback the echoes which were not sampled since the last reported one, as no later echo of this burst will</p>
+     */
+    private void reportPending() {
+        final long echoes = this.logSampler.takePending();
+        if (echoes > 0L) {
+            this.onEmission.accept(echoes);
+        }
+    }
+
+    private boolean isDue(final long now) {
+        return now - this.nextDeadline >= 0L;
+    }
+
+    /**
+     * <p>Moves the cursor to the next echo and works out its deadline</p>
+     */
+    private void advance() {
+        this.cursor++;
+        if (this.cursor < this.times) {
+            this.nextDeadline = deadlineAfter(this.nextDeadline, this.pacing.nextIntervalNanos(this.cursor));
+        }
+    }
+
+    /**
+     * <p>Skips the echoes which are already due, except the last of them if {@code keepLast}</p>
+     *
+     * @return The number of echoes skipped
+     */
+    private int skipDue(final long now, final boolean keepLast) {
+        final long intervalNanos = this.pacing.getIntervalNanos();
+        if (intervalNanos == 0L || (this.pacing.getDistribution() == PacingDistribution.CONSTANT && !this.pacing.isRamp())) {
+            // evenly spaced deadlines, hence the due echoes can be counted rather than walked through
+            final int remaining = this.times - this.cursor;
+            final long due = intervalNanos == 0L ? remaining : this.isDue(now) ? Math.min(remaining, (now - this.nextDeadline) / intervalNanos + 1L) : 0L;
+            final int skipped = (int) (keepLast ? Math.max(0L, due - 1L) : due);
+            this.cursor += skipped;
+            // the due echoes were due by now, hence their intervals add up to no more than the time elapsed since the deadline
+            this.nextDeadline = deadlineAfter(this.nextDeadline, intervalNanos * skipped);
+            return skipped;
+        }
+        int skipped = 0;
+        while (this.cursor < this.times && this.isDue(now)) {
+            final boolean last = this.cursor + 1 >= this.times;
+            final long following = last ? this.nextDeadline : deadlineAfter(this.nextDeadline, this.pacing.nextIntervalNanos(this.cursor + 1));
+            if (keepLast && (last || now - following < 0L)) {
+                break;
+            }
+            this.cursor++;
+            this.nextDeadline = following;
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * <p>Adds a non negative interval to a deadline, saturating rather than wrapping around, hence a deadline never ends up before the one it follows</p>
+     */
+    static long deadlineAfter(final long deadline, final long intervalNanos) {
+        final long next = deadline + intervalNanos;
+        return next < deadline ? Long.MAX_VALUE : next;
+    }
+
+    private void scheduleNext() {
+        final long wait = this.nextDeadline - System.nanoTime();
+        if (wait <= 0L) {
+            this.channel.eventLoop().execute(this);
+            return;
+        }
+        this.nextEmission = this.channel.eventLoop().schedule(this, wait, TimeUnit.NANOSECONDS);
+    }
+}
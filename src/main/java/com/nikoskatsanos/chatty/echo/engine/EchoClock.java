@@ -0,0 +1,25 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Wall clock with nanosecond resolution, derived from {@link System#nanoTime()} and anchored to the epoch once, when the class is loaded. Reading it does
+ * not allocate, unlike {@link java.time.Instant}, and it is monotonic, unlike {@link System#currentTimeMillis()}</p>
+ *
+ * @author nikkatsa
+ */
+public final class EchoClock {
+
+    private static final long EPOCH_NANOS_ANCHOR = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private static final long NANO_TIME_ANCHOR = System.nanoTime();
+
+    private EchoClock() {
+    }
+
+    /**
+     * @return Nanoseconds since the epoch
+     */
+    public static long epochNanos() {
+        return EPOCH_NANOS_ANCHOR + (System.nanoTime() - NANO_TIME_ANCHOR);
+    }
+}
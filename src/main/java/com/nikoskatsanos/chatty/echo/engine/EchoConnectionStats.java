@@ -0,0 +1,79 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.function.Supplier;
+
+/**
+ * <p>Per connection echo statistics. Updated only from the channel's event loop, but the fields are volatile so they can be read from any thread</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoConnectionStats {
+
+    private final Supplier<SlowConsumerPolicy> slowConsumerPolicy;
+
+    private volatile long emitted;
+    private volatile long dropped;
+    private volatile long coalesced;
+    private volatile long stalls;
+    private volatile long stalledNanos;
+
+    /**
+     * @param slowConsumerPolicy The policy currently in force, which can be reloaded while the connection is open
+     */
+    public EchoConnectionStats(final Supplier<SlowConsumerPolicy> slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    void onEmitted(final int count) {
+        this.emitted += count;
+    }
+
+    void onDropped(final int count) {
+        this.dropped += count;
+    }
+
+    void onCoalesced(final int count) {
+        this.coalesced += count;
+    }
+
+    void onStalled() {
+        this.stalls++;
+    }
+
+    void onResumed(final long stalledNanos) {
+        this.stalledNanos += stalledNanos;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return this.slowConsumerPolicy.get();
+    }
+
+    public long getEmitted() {
+        return this.emitted;
+    }
+
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    public long getCoalesced() {
+        return this.coalesced;
+    }
+
+    public long getStalls() {
+        return this.stalls;
+    }
+
+    public long getStalledNanos() {
+        return this.stalledNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("slowConsumerPolicy", this.getSlowConsumerPolicy()).add("emitted", this.emitted)
+                .add("dropped", this.dropped).add("coalesced", this.coalesced).add("stalls", this.stalls)
+                .add("stalledMillis", this.stalledNanos / 1_000_000L).toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>Source of the {@link io.netty.handler.codec.http.websocketx.WebSocketFrame}s an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} emits. A source
+ * holds the already encoded payload of the echo and creates a frame per echo that shares it, rather than copying it. The source is owned by the burst, which
+ * releases it when it is done.</p> <p>A large echo can be fragmented: its first frame is followed by {@link #fragments()} {@code - 1} {@link
+ * io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame}s, which the burst writes right after it</p>
+ *
+ * @author nikkatsa
+ */
+public interface EchoFrameSource {
+
+    /**
+     * @param sequence The zero based index of the echo within its burst
+     * @return A new frame for the echo. The caller owns the frame
+     */
+    WebSocketFrame frame(final long sequence);
+
+    /**
+     * @return The size in bytes of the frames' payload, of all the fragments of an echo
+     */
+    int frameSize();
+
+    /**
+     * @return The number of frames each echo is made of
+     */
+    default int fragments() {
+        return 1;
+    }
+
+    /**
+     * @param sequence The zero based index of the echo within its burst
+     * @param fragment The index of the fragment, from {@code 1} to {@link #fragments()} {@code - 1}
+     * @return A new continuation frame of the echo. The caller owns the frame
+     */
+    default WebSocketFrame continuation(final long sequence, final int fragment) {
+        throw new UnsupportedOperationException(String.format("%s does not fragment its echoes", this.getClass().getSimpleName()));
+    }
+
+    /**
+     * <p>Releases the encoded payload. No frames can be created afterwards</p>
+     */
+    void release();
+}
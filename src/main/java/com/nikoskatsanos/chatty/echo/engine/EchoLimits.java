@@ -0,0 +1,91 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>Caps on the amplification a single request can cause. A request is admitted only if its {@code times} and {@code delay} are within limits and the
+ * echoes it adds do not exceed the outstanding echoes allowed per connection and across the server. Admitted echoes are further paced so that no connection,
+ * and the server as a whole, emits more than a configured number of bytes per second; pacing is done with {@link
+ * com.nikoskatsanos.chatty.echo.engine.TokenBucket}s checked per frame.</p> <p>A limit of {@code 0} means unlimited, which is the default for all of them</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoLimits {
+
+    public static final EchoLimits UNLIMITED = new EchoLimits(0, 0L, 0L, 0L, 0L, 0L);
+
+    private final int maxTimes;
+    private final long minDelay;
+    private final long maxOutstandingPerConnection;
+    private final long maxOutstanding;
+    private final long maxBytesPerSecondPerConnection;
+    private final long maxBytesPerSecond;
+
+    /**
+     * @param maxTimes                       Maximum {@code times} of a request
+     * @param minDelay                       Minimum {@code delay} of a request, or mean interval of its pacing, in milliseconds. Applies only to requests
+     *                                       with more than one echo
+     * @param maxOutstandingPerConnection    Maximum echoes of a connection not sent yet
+     * @param maxOutstanding                 Maximum echoes across the server not sent yet
+     * @param maxBytesPerSecondPerConnection Maximum echo bytes per second emitted to a connection
+     * @param maxBytesPerSecond              Maximum echo bytes per second emitted by the server
+     */
+    public EchoLimits(final int maxTimes, final long minDelay, final long maxOutstandingPerConnection, final long maxOutstanding, final long
+            maxBytesPerSecondPerConnection, final long maxBytesPerSecond) {
+        if (maxTimes < 0 || minDelay < 0L || maxOutstandingPerConnection < 0L || maxOutstanding < 0L || maxBytesPerSecondPerConnection < 0L ||
+                maxBytesPerSecond < 0L) {
+            throw new IllegalArgumentException("Echo limits cannot be negative");
+        }
+        this.maxTimes = maxTimes;
+        this.minDelay = minDelay;
+        this.maxOutstandingPerConnection = maxOutstandingPerConnection;
+        this.maxOutstanding = maxOutstanding;
+        this.maxBytesPerSecondPerConnection = maxBytesPerSecondPerConnection;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public int getMaxTimes() {
+        return this.maxTimes;
+    }
+
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    public long getMaxOutstandingPerConnection() {
+        return this.maxOutstandingPerConnection;
+    }
+
+    public long getMaxOutstanding() {
+        return this.maxOutstanding;
+    }
+
+    public long getMaxBytesPerSecondPerConnection() {
+        return this.maxBytesPerSecondPerConnection;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return this.maxBytesPerSecond;
+    }
+
+    /**
+     * @return A byte rate bucket for a new connection, or {@code null} if the per connection byte rate is unlimited
+     */
+    public TokenBucket newConnectionByteRate() {
+        return this.maxBytesPerSecondPerConnection > 0L ? new TokenBucket(this.maxBytesPerSecondPerConnection) : null;
+    }
+
+    /**
+     * @return The server wide byte rate bucket, or {@code null} if the server byte rate is unlimited
+     */
+    public TokenBucket newServerByteRate() {
+        return this.maxBytesPerSecond > 0L ? new TokenBucket(this.maxBytesPerSecond) : null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("maxTimes", this.maxTimes).add("minDelay", this.minDelay).add("maxOutstandingPerConnection", this
+                .maxOutstandingPerConnection).add("maxOutstanding", this.maxOutstanding).add("maxBytesPerSecondPerConnection", this
+                .maxBytesPerSecondPerConnection).add("maxBytesPerSecond", this.maxBytesPerSecond).toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Controls how echoes are logged. Logging every echo on the send path does not scale with the number of echoes, hence by default at most one line per
+ * connection is logged every {@code interval}, carrying the number of echoes since the previous line. An interval of {@code 0} disables the echo lines
+ * altogether; the per connection counters are still logged when the connection closes.</p> <p>With {@code trace} every single echo is logged</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoLogPolicy {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1_000L;
+
+    public static final EchoLogPolicy DEFAULT = new EchoLogPolicy(false, DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+    private final boolean trace;
+    private final long intervalNanos;
+
+    public EchoLogPolicy(final boolean trace, final long interval, final TimeUnit timeUnit) {
+        if (interval < 0L) {
+            throw new IllegalArgumentException(String.format("Echo log interval cannot be negative, was %d", interval));
+        }
+        this.trace = trace;
+        this.intervalNanos = timeUnit.toNanos(interval);
+    }
+
+    public boolean isTrace() {
+        return this.trace;
+    }
+
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    /**
+     * @return A new {@link com.nikoskatsanos.chatty.echo.engine.EchoLogSampler} for a single connection
+     */
+    public EchoLogSampler newSampler() {
+        return new EchoLogSampler(this.trace, this.intervalNanos);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("trace", this.trace).add("intervalMillis", TimeUnit.NANOSECONDS.toMillis(this.intervalNanos)).toString();
+    }
+}
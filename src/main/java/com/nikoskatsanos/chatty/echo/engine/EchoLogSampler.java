@@ -0,0 +1,56 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+/**
+ * <p>Per connection sampler of the echo log lines, according to an {@link com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy}. It is not thread safe; it is
+ * only ever accessed from the connection's event loop</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoLogSampler {
+
+    private final boolean trace;
+    private final long intervalNanos;
+
+    private boolean logged;
+    private long lastLoggedNanos;
+    private long pending;
+
+    EchoLogSampler(final boolean trace, final long intervalNanos) {
+        this.trace = trace;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * <p>Records an echo</p>
+     *
+     * @return The number of echoes, including this one, since the previous line if a line should be logged for this echo, otherwise {@code 0}
+     */
+    public long sample(final long nowNanos) {
+        if (this.trace) {
+            return 1L;
+        }
+        if (this.intervalNanos == 0L) {
+            return 0L;
+        }
+        this.pending++;
+        if (this.logged && nowNanos - this.lastLoggedNanos < this.intervalNanos) {
+            return 0L;
+        }
+        this.logged = true;
+        this.lastLoggedNanos = nowNanos;
+        final long echoes = this.pending;
+        this.pending = 0L;
+        return echoes;
+    }
+
+    /**
+     * <p>Takes the echoes recorded since the previous line, so that a burst which ends in between two lines can report them</p>
+     *
+     * @return The number of echoes since the previous line, which are then considered logged
+     */
+    public long takePending() {
+        final long echoes = this.pending;
+        this.pending = 0L;
+        return echoes;
+    }
+}
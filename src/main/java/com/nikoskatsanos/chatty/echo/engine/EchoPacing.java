@@ -0,0 +1,128 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The pace of the echoes of an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst}: the mean interval between them, with nanosecond resolution, and
+ * the {@link com.nikoskatsanos.chatty.echo.engine.PacingDistribution} they follow around it. An interval of {@code 0} emits all the echoes at once</p>
+ * <p>The pace can ramp: the rate then changes linearly, echo by echo, from the rate of the interval to the rate of the ramp's target interval, which is
+ * reached by the last echo of the ramp</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoPacing {
+
+    public static final int DEFAULT_BURST_SIZE = 10;
+
+    /**
+     * <p>The longest interval between echoes, a day. The deadlines of a burst are at most that far apart, hence they never overflow</p>
+     */
+    public static final long MAX_INTERVAL_NANOS = TimeUnit.DAYS.toNanos(1L);
+
+    public static final EchoPacing NONE = new EchoPacing(PacingDistribution.CONSTANT, 0L, DEFAULT_BURST_SIZE);
+
+    private final PacingDistribution distribution;
+    private final long intervalNanos;
+    private final int burstSize;
+    private final long rampToIntervalNanos;
+    private final int rampEchoes;
+    private final double rampFromRate;
+    private final double rampToRate;
+
+    /**
+     * @param intervalNanos The mean interval between echoes
+     * @param burstSize     Echoes per group of the {@link com.nikoskatsanos.chatty.echo.engine.PacingDistribution#BURSTY} distribution
+     */
+    public EchoPacing(final PacingDistribution distribution, final long intervalNanos, final int burstSize) {
+        this(distribution, intervalNanos, burstSize, 0L, 0);
+    }
+
+    /**
+     * @param intervalNanos       The mean interval between the first echoes of the ramp
+     * @param rampToIntervalNanos The mean interval the pace ramps to, {@code 0} for a steady pace
+     * @param rampEchoes          The number of echoes the ramp lasts
+     */
+    public EchoPacing(final PacingDistribution distribution, final long intervalNanos, final int burstSize, final long rampToIntervalNanos, final int
+            rampEchoes) {
+        if (intervalNanos < 0L || intervalNanos > MAX_INTERVAL_NANOS || burstSize < 1 || rampToIntervalNanos < 0L || rampToIntervalNanos > MAX_INTERVAL_NANOS ||
+                (rampToIntervalNanos > 0L && intervalNanos == 0L)) {
+            throw new IllegalArgumentException(String.format("Invalid pacing, interval %dns, burst size %d and ramp to %dns", intervalNanos, burstSize,
+                    rampToIntervalNanos));
+        }
+        this.distribution = distribution;
+        this.intervalNanos = intervalNanos;
+        this.burstSize = burstSize;
+        this.rampToIntervalNanos = rampToIntervalNanos == intervalNanos ? 0L : rampToIntervalNanos;
+        this.rampEchoes = rampEchoes;
+        this.rampFromRate = intervalNanos == 0L ? 0.0D : (double) TimeUnit.SECONDS.toNanos(1L) / intervalNanos;
+        this.rampToRate = this.rampToIntervalNanos == 0L ? this.rampFromRate : (double) TimeUnit.SECONDS.toNanos(1L) / this.rampToIntervalNanos;
+    }
+
+    public static EchoPacing constant(final long delay, final TimeUnit timeUnit) {
+        return new EchoPacing(PacingDistribution.CONSTANT, timeUnit.toNanos(Math.max(0L, delay)), DEFAULT_BURST_SIZE);
+    }
+
+    /**
+     * @param rate Echoes per second
+     */
+    public static long rateToIntervalNanos(final double rate) {
+        return Math.round(TimeUnit.SECONDS.toNanos(1L) / rate);
+    }
+
+    public PacingDistribution getDistribution() {
+        return this.distribution;
+    }
+
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    public int getBurstSize() {
+        return this.burstSize;
+    }
+
+    /**
+     * @return The mean interval the pace ramps to, {@code 0} if it is steady
+     */
+    public long getRampToIntervalNanos() {
+        return this.rampToIntervalNanos;
+    }
+
+    public boolean isRamp() {
+        return this.rampToIntervalNanos > 0L;
+    }
+
+    /**
+     * @return The shortest mean interval between echoes, at either end of a ramp
+     */
+    public long getMinIntervalNanos() {
+        return this.isRamp() ? Math.min(this.intervalNanos, this.rampToIntervalNanos) : this.intervalNanos;
+    }
+
+    /**
+     * @return The nanoseconds between the deadline of echo {@code sequence - 1}, or the start of the burst, and the deadline of echo {@code sequence}
+     */
+    long nextIntervalNanos(final long sequence) {
+        if (this.intervalNanos == 0L) {
+            return 0L;
+        }
+        return this.distribution.nextIntervalNanos(this.isRamp() ? this.rampIntervalNanos(sequence) : this.intervalNanos, this.burstSize, sequence);
+    }
+
+    /**
+     * <p>The mean interval at echo {@code sequence} of the ramp, interpolated in echoes per second so that the rate rather than the interval grows
+     * linearly</p>
+     */
+    private long rampIntervalNanos(final long sequence) {
+        final double progress = this.rampEchoes > 1 ? Math.min(1.0D, (double) sequence / (this.rampEchoes - 1)) : 1.0D;
+        return Math.round(TimeUnit.SECONDS.toNanos(1L) / (this.rampFromRate + (this.rampToRate - this.rampFromRate) * progress));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("distribution", this.distribution).add("intervalNanos", this.intervalNanos).add("burstSize", this
+                .burstSize).add("rampToIntervalNanos", this.rampToIntervalNanos).add("rampEchoes", this.rampEchoes).toString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+/**
+ * <p>Thrown when an echo request is not admitted because of the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits}. It carries no stack trace, since it
+ * is an expected outcome which a misbehaving client can trigger at will</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoRejectedException extends Exception {
+
+    private final EchoRejection rejection;
+
+    public EchoRejectedException(final EchoRejection rejection, final long requested, final long limit) {
+        super(rejection.describe(requested, limit), null, false, false);
+        this.rejection = rejection;
+    }
+
+    public EchoRejection getRejection() {
+        return this.rejection;
+    }
+}
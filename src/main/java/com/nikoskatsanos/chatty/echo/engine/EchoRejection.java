@@ -0,0 +1,31 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+/**
+ * <p>Reasons for which an echo request is not admitted by the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits}, or because the payload it asks for is
+ * larger than the {@link com.nikoskatsanos.chatty.echo.payload.PayloadCache} allows, or because its delay is above {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoPacing#MAX_INTERVAL_NANOS}, or because of the bounds of the {@link com.nikoskatsanos.chatty.echo.engine.EchoTopics},
+ * or because the server is draining before it shuts down</p>
+ *
+ * @author nikkatsa
+ */
+public enum EchoRejection {
+    TIMES_LIMIT("times %d is above the limit of %d"),
+    DELAY_LIMIT("delay %dus is below the limit of %dus"),
+    MAX_DELAY_LIMIT("delay %dus is above the limit of %dus"),
+    CONNECTION_OUTSTANDING_LIMIT("%d outstanding echoes would exceed the connection limit of %d"),
+    SERVER_OUTSTANDING_LIMIT("%d outstanding echoes would exceed the server limit of %d"),
+    PAYLOAD_LIMIT("payload of %d bytes is above the limit of %d"),
+    TOPICS_LIMIT("%d topics would exceed the limit of %d"),
+    TOPIC_NAME_LIMIT("topic name of %d characters is above the limit of %d"),
+    SHUTTING_DOWN("request of %d echoes not admitted, the server is shutting down");
+
+    private final String description;
+
+    EchoRejection(final String description) {
+        this.description = description;
+    }
+
+    public String describe(final long requested, final long limit) {
+        return String.format(this.description, requested, limit);
+    }
+}
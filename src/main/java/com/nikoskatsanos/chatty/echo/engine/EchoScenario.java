@@ -0,0 +1,189 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A program of echoes a connection asks for with a single request: a sequence of steps, each either a burst of echoes or a pause, repeated a number of
+ * times or until stopped. Like an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst}, a scenario is an incremental state machine on the channel's event
+ * loop; only its current step exists at any time, either as the channel's active burst or as a scheduled pause, hence a scenario needs constant memory
+ * however long it runs.</p> <p>The burst of each step is created when the step starts, by the {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoScenario.BurstFactory}, which is where it is checked against the {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoLimits}; a step which cannot start stops the scenario.</p> <p>A scenario is started and cancelled through the
+ * {@link com.nikoskatsanos.chatty.echo.engine.EchoScheduler}. It is replaced by the connection's next request and stops when the connection closes or the
+ * server shuts down. It is not thread safe; it is only ever accessed from the channel's event loop</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoScenario<S extends EchoScenario.Step> implements Runnable {
+
+    private static final Logger log = LogManager.getFormatterLogger(EchoScenario.class);
+
+    /**
+     * <p>A step of a scenario</p>
+     */
+    public interface Step {
+
+        /**
+         * @return The nanoseconds the step pauses for, {@code 0} if the step is a burst of echoes
+         */
+        long getPauseNanos();
+    }
+
+    /**
+     * <p>Creates the burst of a step when the step starts</p>
+     */
+    @FunctionalInterface
+    public interface BurstFactory<S> {
+
+        /**
+         * @return The burst of the step, not started yet
+         * @throws Exception If the step cannot start, which stops the scenario
+         */
+        EchoBurst newBurst(final S step) throws Exception;
+    }
+
+    private final Channel channel;
+    private final List<S> steps;
+    private final int repeat;
+    private final BurstFactory<S> burstFactory;
+
+    private EchoScheduler echoScheduler;
+    private int step = -1;
+    private int iteration;
+    private EchoBurst burst;
+    private ScheduledFuture<?> pause;
+    private boolean done;
+
+    /**
+     * @param repeat The number of times the steps are run, {@code 0} to run them until the scenario is stopped
+     */
+    public EchoScenario(final Channel channel, final List<S> steps, final int repeat, final BurstFactory<S> burstFactory) {
+        if (steps.isEmpty() || repeat < 0) {
+            throw new IllegalArgumentException(String.format("Invalid scenario, %d steps repeated %d times", steps.size(), repeat));
+        }
+        this.channel = channel;
+        this.steps = steps;
+        this.repeat = repeat;
+        this.burstFactory = burstFactory;
+    }
+
+    void start(final EchoScheduler echoScheduler) {
+        this.echoScheduler = echoScheduler;
+        this.next();
+    }
+
+    /**
+     * <p>Ends the pause of the current step</p>
+     */
+    @Override
+    public void run() {
+        if (this.done) {
+            return;
+        }
+        this.pause = null;
+        this.next();
+    }
+
+    /**
+     * <p>Moves on to the next step, once the burst of the current one completed. Bursts which are cancelled never complete, hence they never move the scenario
+     * on</p>
+     */
+    void completed(final EchoBurst echoBurst) {
+        if (this.done || echoBurst != this.burst) {
+            return;
+        }
+        this.burst = null;
+        this.next();
+    }
+
+    /**
+     * <p>Stops the scenario. The burst of the current step, if any, is the channel's active burst and is cancelled along with it by the {@link
+     * com.nikoskatsanos.chatty.echo.engine.EchoScheduler}</p>
+     */
+    void cancel() {
+        if (this.done) {
+            return;
+        }
+        this.done = true;
+        this.burst = null;
+        if (this.pause != null) {
+            this.pause.cancel(false);
+            this.pause = null;
+        }
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * @return The zero based index of the current step
+     */
+    public int getStep() {
+        return this.step;
+    }
+
+    /**
+     * @return The number of times all the steps have run
+     */
+    public int getIteration() {
+        return this.iteration;
+    }
+
+    public int getRepeat() {
+        return this.repeat;
+    }
+
+    public int getSteps() {
+        return this.steps.size();
+    }
+
+    private void next() {
+        if (this.echoScheduler.isDraining()) {
+            this.complete();
+            return;
+        }
+        if (++this.step >= this.steps.size()) {
+            this.step = 0;
+            this.iteration++;
+            if (this.repeat > 0 && this.iteration >= this.repeat) {
+                this.complete();
+                return;
+            }
+        }
+
+        final S current = this.steps.get(this.step);
+        this.echoScheduler.getMetrics().onScenarioStep();
+        if (current.getPauseNanos() > 0L) {
+            this.pause = this.channel.eventLoop().schedule(this, current.getPauseNanos(), TimeUnit.NANOSECONDS);
+            return;
+        }
+        try {
+            this.burst = this.burstFactory.newBurst(current);
+        } catch (final Exception e) {
+            log.warn("Scenario of [%s] stopped at step %d of iteration %d. %s", this.channel.remoteAddress(), this.step, this.iteration, e.getMessage());
+            this.complete();
+            return;
+        }
+        this.echoScheduler.startStep(this.channel, this.burst);
+    }
+
+    private void complete() {
+        this.done = true;
+        this.burst = null;
+        this.echoScheduler.completed(this.channel, this);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("steps", this.steps.size()).add("repeat", this.repeat).add("step", this.step).add("iteration", this
+                .iteration).add("done", this.done).toString();
+    }
+}
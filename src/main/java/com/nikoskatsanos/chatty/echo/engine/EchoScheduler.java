@@ -0,0 +1,498 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.nikoskatsanos.chatty.echo.bus.EchoBus;
+import com.nikoskatsanos.chatty.echo.bus.EchoBusListener;
+import com.nikoskatsanos.chatty.echo.compression.CompressionPolicy;
+import com.nikoskatsanos.chatty.echo.metrics.ClusterMetrics;
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import com.nikoskatsanos.chatty.echo.payload.PayloadCache;
+import com.nikoskatsanos.chatty.echo.payload.PayloadSpec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameEncoder;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Server wide echo scheduling engine. Echoes are emitted on the {@link io.netty.channel.EventLoop} of the {@link io.netty.channel.Channel} they belong to,
+ * hence no threads are created per connection, and each channel has at most one active {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} and {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoScenario}.</p> <p>All the methods are expected to be called from within the channel's event loop, unless
+ * documented otherwise</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoScheduler {
+
+    private static final Logger log = LogManager.getFormatterLogger(EchoScheduler.class);
+
+    private static final int GOING_AWAY = 1001;
+    private static final long DRAIN_POLL_MILLIS = 10L;
+
+    private static final AttributeKey<EchoBurst> ACTIVE_BURST = AttributeKey.valueOf(EchoScheduler.class, "activeBurst");
+    private static final AttributeKey<EchoScenario<?>> ACTIVE_SCENARIO = AttributeKey.valueOf(EchoScheduler.class, "activeScenario");
+    private static final AttributeKey<EchoConnectionStats> CONNECTION_STATS = AttributeKey.valueOf(EchoScheduler.class, "connectionStats");
+    private static final AttributeKey<EchoLogSampler> LOG_SAMPLER = AttributeKey.valueOf(EchoScheduler.class, "logSampler");
+    private static final AttributeKey<TokenBucket> BYTE_RATE = AttributeKey.valueOf(EchoScheduler.class, "byteRate");
+
+    private final EmissionLagMonitor emissionLagMonitor = new EmissionLagMonitor();
+    private final EchoMetrics metrics = new EchoMetrics();
+    private final EchoTopics topics = new EchoTopics();
+    private final ChannelGroup connections = new DefaultChannelGroup("chatty-echo-connections", GlobalEventExecutor.INSTANCE);
+    private final AtomicLong burstIds = new AtomicLong();
+    private final ClusterMetrics clusterMetrics = new ClusterMetrics(TimeUnit.MINUTES.toMillis(1L));
+    private volatile EchoBus bus;
+    private volatile PayloadCache payloadCache = new PayloadCache();
+    private volatile CompressionPolicy compressionPolicy = CompressionPolicy.DEFAULT;
+    private volatile FlushPolicy flushPolicy;
+    private volatile BackpressurePolicy backpressurePolicy;
+    private volatile EchoLogPolicy echoLogPolicy;
+    private volatile EchoLimits echoLimits;
+    private volatile TokenBucket serverByteRate;
+    private volatile boolean draining;
+
+    public EchoScheduler() {
+        this(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT);
+    }
+
+    public EchoScheduler(final FlushPolicy flushPolicy, final BackpressurePolicy backpressurePolicy) {
+        this(flushPolicy, backpressurePolicy, EchoLogPolicy.DEFAULT);
+    }
+
+    public EchoScheduler(final FlushPolicy flushPolicy, final BackpressurePolicy backpressurePolicy, final EchoLogPolicy echoLogPolicy) {
+        this(flushPolicy, backpressurePolicy, echoLogPolicy, EchoLimits.UNLIMITED);
+    }
+
+    public EchoScheduler(final FlushPolicy flushPolicy, final BackpressurePolicy backpressurePolicy, final EchoLogPolicy echoLogPolicy, final EchoLimits
+            echoLimits) {
+        this.flushPolicy = flushPolicy;
+        this.backpressurePolicy = backpressurePolicy;
+        this.echoLogPolicy = echoLogPolicy;
+        this.echoLimits = echoLimits;
+        this.serverByteRate = echoLimits.newServerByteRate();
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return this.flushPolicy;
+    }
+
+    /**
+     * <p>Applies to the echoes flushed from now on</p>
+     */
+    public void setFlushPolicy(final FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return this.backpressurePolicy;
+    }
+
+    /**
+     * <p>The write buffer water marks of the open connections are changed and take effect from their next write. The slow consumer policy applies to the
+     * echoes emitted from now on</p>
+     */
+    public void setBackpressurePolicy(final BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+        for (final Channel channel : this.connections) {
+            channel.config().setWriteBufferWaterMark(backpressurePolicy.getWriteBufferWaterMark());
+        }
+    }
+
+    public EchoLogPolicy getEchoLogPolicy() {
+        return this.echoLogPolicy;
+    }
+
+    /**
+     * <p>The open connections get a new {@link com.nikoskatsanos.chatty.echo.engine.EchoLogSampler} on their event loop, which their bursts use from the
+     * next one on</p>
+     */
+    public void setEchoLogPolicy(final EchoLogPolicy echoLogPolicy) {
+        this.echoLogPolicy = echoLogPolicy;
+        for (final Channel channel : this.connections) {
+            channel.eventLoop().execute(() -> channel.attr(LOG_SAMPLER).set(echoLogPolicy.newSampler()));
+        }
+    }
+
+    public EchoLimits getEchoLimits() {
+        return this.echoLimits;
+    }
+
+    /**
+     * <p>Applies to the requests admitted from now on. The byte rates start anew; a connection's new byte rate applies from its next burst</p>
+     */
+    public void setEchoLimits(final EchoLimits echoLimits) {
+        this.echoLimits = echoLimits;
+        this.serverByteRate = echoLimits.newServerByteRate();
+        for (final Channel channel : this.connections) {
+            channel.attr(BYTE_RATE).set(echoLimits.newConnectionByteRate());
+        }
+    }
+
+    /**
+     * @return The server wide byte rate bucket, {@code null} if unlimited
+     */
+    TokenBucket getServerByteRate() {
+        return this.serverByteRate;
+    }
+
+    public EmissionLagMonitor getEmissionLagMonitor() {
+        return this.emissionLagMonitor;
+    }
+
+    public EchoMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public EchoTopics getTopics() {
+        return this.topics;
+    }
+
+    /**
+     * @return The channels currently registered with the scheduler. Channels are removed from the group as soon as they close
+     */
+    public ChannelGroup getConnections() {
+        return this.connections;
+    }
+
+    /**
+     * @return The bus to the other nodes of the cluster, {@code null} if the node is standalone
+     */
+    public EchoBus getBus() {
+        return this.bus;
+    }
+
+    public void setBus(final EchoBus bus) {
+        this.bus = bus;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return this.payloadCache;
+    }
+
+    public void setPayloadCache(final PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+        return this.compressionPolicy;
+    }
+
+    /**
+     * <p>Applies to the connections accepted afterwards</p>
+     */
+    public void setCompressionPolicy(final CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    /**
+     * <p>Acquires the payload described by the spec from the {@link com.nikoskatsanos.chatty.echo.payload.PayloadCache}</p>
+     *
+     * @return A retained duplicate of the cached payload, which the caller owns
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the payload is too large
+     */
+    public ByteBuf payload(final PayloadSpec spec) throws EchoRejectedException, IOException {
+        try {
+            return this.payloadCache.acquire(spec);
+        } catch (final EchoRejectedException e) {
+            this.metrics.onRejected();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Acquires the payload described by the spec from the {@link com.nikoskatsanos.chatty.echo.payload.PayloadCache}, if it is cached. Unlike {@link
+     * #payload(PayloadSpec)} it never generates the payload, hence it can be called from an event loop</p>
+     *
+     * @return A retained duplicate of the cached payload, which the caller owns, {@code null} if it is not cached
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the payload is too large
+     */
+    public ByteBuf cachedPayload(final PayloadSpec spec) throws EchoRejectedException {
+        try {
+            return this.payloadCache.acquireCached(spec);
+        } catch (final EchoRejectedException e) {
+            this.metrics.onRejected();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Generates the payload described by the spec off the event loops, see {@link
+     * com.nikoskatsanos.chatty.echo.payload.PayloadCache#acquireAsync(PayloadSpec)}</p>
+     */
+    public CompletableFuture<ByteBuf> generatePayload(final PayloadSpec spec) {
+        return this.payloadCache.acquireAsync(spec).whenComplete((payload, error) -> {
+            if (error != null && error.getCause() instanceof EchoRejectedException) {
+                this.metrics.onRejected();
+            }
+        });
+    }
+
+    /**
+     * @return The latest metrics of the other nodes of the cluster
+     */
+    public ClusterMetrics getClusterMetrics() {
+        return this.clusterMetrics;
+    }
+
+    /**
+     * <p>Publishes the metrics of this node on the {@link com.nikoskatsanos.chatty.echo.bus.EchoBus}, if any</p>
+     */
+    public void publishMetrics() {
+        final EchoBus bus = this.bus;
+        if (bus != null) {
+            bus.publishMetrics(EchoMetricsSnapshot.of(bus.getNodeId(), this.metrics));
+        }
+    }
+
+    /**
+     * <p>Listener of the {@link com.nikoskatsanos.chatty.echo.bus.EchoBus}. Broadcasts of other nodes are written to the topic's local subscribers only; they
+     * are never published back on the bus. Topics without local subscribers are not created</p>
+     */
+    public EchoBusListener newBusListener() {
+        return new EchoBusListener() {
+            @Override
+            public void onBroadcast(final String topic, final WebSocketFrame[] frames) {
+                final EchoTopic echoTopic = EchoScheduler.this.topics.find(topic);
+                if (echoTopic != null) {
+                    echoTopic.broadcast(frames, EchoScheduler.this.metrics);
+                }
+            }
+
+            @Override
+            public void onMetrics(final EchoMetricsSnapshot snapshot) {
+                EchoScheduler.this.clusterMetrics.update(snapshot);
+            }
+        };
+    }
+
+    /**
+     * @return A server wide unique id for a new burst
+     */
+    public long nextBurstId() {
+        return this.burstIds.incrementAndGet();
+    }
+
+    /**
+     * <p>Registers the given {@link io.netty.channel.Channel} with the scheduler, once its WebSocket handshake completes. When the channel closes its active
+     * burst, if any, is cancelled</p>
+     */
+    public void register(final Channel channel) {
+        final EchoConnectionStats stats = new EchoConnectionStats(() -> this.backpressurePolicy.getSlowConsumerPolicy());
+        channel.attr(CONNECTION_STATS).set(stats);
+        channel.attr(LOG_SAMPLER).set(this.echoLogPolicy.newSampler());
+        // the bootstrap's water marks are the ones of startup, the policy may have been reloaded since
+        channel.config().setWriteBufferWaterMark(this.backpressurePolicy.getWriteBufferWaterMark());
+        channel.attr(BYTE_RATE).set(this.echoLimits.newConnectionByteRate());
+        this.connections.add(channel);
+        this.metrics.onConnectionOpened();
+        channel.closeFuture().addListener(f -> {
+            this.cancel(channel);
+            this.metrics.onConnectionClosed();
+            log.info("Connection [%s] closed. %s", channel.remoteAddress(), stats);
+        });
+    }
+
+    /**
+     * <p>Checks a request of the given channel against the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits}. The echoes of the channel's active
+     * burst, which the request would replace, are not counted as outstanding. The minimum delay applies to the mean interval of the request's pacing, at
+     * the faster end if it ramps</p>
+     *
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the request is not admitted
+     */
+    public void admit(final Channel channel, final int times, final EchoPacing pacing) throws EchoRejectedException {
+        final EchoLimits limits = this.echoLimits;
+        try {
+            if (this.draining) {
+                throw new EchoRejectedException(EchoRejection.SHUTTING_DOWN, times, 0L);
+            }
+            if (limits.getMaxTimes() > 0 && times > limits.getMaxTimes()) {
+                throw new EchoRejectedException(EchoRejection.TIMES_LIMIT, times, limits.getMaxTimes());
+            }
+            if (times > 1 && pacing.getMinIntervalNanos() < TimeUnit.MILLISECONDS.toNanos(limits.getMinDelay())) {
+                throw new EchoRejectedException(EchoRejection.DELAY_LIMIT, TimeUnit.NANOSECONDS.toMicros(pacing.getMinIntervalNanos()), TimeUnit
+                        .MILLISECONDS.toMicros(limits.getMinDelay()));
+            }
+            if (limits.getMaxOutstandingPerConnection() > 0L && times > limits.getMaxOutstandingPerConnection()) {
+                throw new EchoRejectedException(EchoRejection.CONNECTION_OUTSTANDING_LIMIT, times, limits.getMaxOutstandingPerConnection());
+            }
+            if (limits.getMaxOutstanding() > 0L) {
+                final EchoBurst active = channel.attr(ACTIVE_BURST).get();
+                final long replaced = active == null || active.isDone() ? 0L : active.getRemaining();
+                final long outstanding = this.metrics.getPendingEchoes() - replaced + times;
+                if (outstanding > limits.getMaxOutstanding()) {
+                    throw new EchoRejectedException(EchoRejection.SERVER_OUTSTANDING_LIMIT, outstanding, limits.getMaxOutstanding());
+                }
+            }
+        } catch (final EchoRejectedException e) {
+            this.metrics.onRejected();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Starts the given {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst}, replacing the channel's active burst and scenario. The burst is cancelled
+     * if the channel closes</p>
+     */
+    public void start(final Channel channel, final EchoBurst echoBurst) {
+        this.metrics.onRequest();
+        this.cancelScenario(channel);
+        this.startStep(channel, echoBurst);
+    }
+
+    /**
+     * <p>Starts the given {@link com.nikoskatsanos.chatty.echo.engine.EchoScenario}, replacing the channel's active burst and scenario</p>
+     */
+    public void start(final Channel channel, final EchoScenario<?> echoScenario) {
+        this.metrics.onRequest();
+        this.cancel(channel);
+        if (!channel.isActive()) {
+            echoScenario.cancel();
+            return;
+        }
+        this.metrics.onScenarioStarted();
+        channel.attr(ACTIVE_SCENARIO).set(echoScenario);
+        echoScenario.start(this);
+    }
+
+    /**
+     * <p>Starts the burst of a step of the channel's active scenario, or of a single request, replacing the channel's active burst</p>
+     */
+    void startStep(final Channel channel, final EchoBurst echoBurst) {
+        final EchoBurst previous = channel.attr(ACTIVE_BURST).getAndSet(echoBurst);
+        if (previous != null) {
+            previous.cancel();
+        }
+        final EchoConnectionStats stats = channel.attr(CONNECTION_STATS).get();
+        final EchoLogSampler logSampler = channel.attr(LOG_SAMPLER).get();
+        if (!channel.isActive() || stats == null || logSampler == null) {
+            channel.attr(ACTIVE_BURST).compareAndSet(echoBurst, null);
+            echoBurst.cancel();
+            return;
+        }
+        echoBurst.start(this, stats, logSampler, channel.attr(BYTE_RATE).get());
+    }
+
+    /**
+     * <p>Cancels the channel's active {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} and {@link com.nikoskatsanos.chatty.echo.engine.EchoScenario}, if
+     * any</p>
+     *
+     * @return {@code true} if there was an active burst or scenario which got cancelled
+     */
+    public boolean cancel(final Channel channel) {
+        final boolean scenario = this.cancelScenario(channel);
+        final EchoBurst active = channel.attr(ACTIVE_BURST).getAndSet(null);
+        if (active == null) {
+            return scenario;
+        }
+        active.cancel();
+        return true;
+    }
+
+    private boolean cancelScenario(final Channel channel) {
+        final EchoScenario<?> active = channel.attr(ACTIVE_SCENARIO).getAndSet(null);
+        if (active == null) {
+            return false;
+        }
+        active.cancel();
+        this.metrics.onScenarioEnded();
+        return true;
+    }
+
+    /**
+     * <p>Resumes the channel's active {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} if that was paused. Should be called whenever the channel's
+     * writability changes</p>
+     */
+    public void writabilityChanged(final Channel channel) {
+        final EchoBurst active = channel.attr(ACTIVE_BURST).get();
+        if (active != null && channel.isWritable()) {
+            active.resume();
+        }
+    }
+
+    /**
+     * <p>Stops admitting requests and waits for the pending echoes to be sent, for up to the given timeout. Running scenarios are drained too: each one
+     * finishes its current step, burst or pause, and then stops rather than starting another. Unlike the rest of the methods, it is called from outside the
+     * event loops and blocks the calling thread</p>
+     *
+     * @return The echoes still pending when it returned
+     */
+    public long drain(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+        this.draining = true;
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        long pending;
+        while (((pending = this.metrics.getPendingEchoes()) > 0L || this.metrics.getActiveScenarios() > 0L) && System.nanoTime() - deadline < 0L) {
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+        return pending;
+    }
+
+    public boolean isDraining() {
+        return this.draining;
+    }
+
+    /**
+     * <p>Cancels the active bursts and closes all the connections, WebSocket ones with a {@code 1001 Going Away} close frame so clients know to reconnect
+     * elsewhere</p>
+     *
+     * @return Completes when all the connections are closed
+     */
+    public ChannelGroupFuture closeConnections() {
+        for (final Channel channel : this.connections) {
+            channel.eventLoop().execute(() -> {
+                this.cancel(channel);
+                if (channel.pipeline().get(WebSocketFrameEncoder.class) != null) {
+                    channel.writeAndFlush(new CloseWebSocketFrame(GOING_AWAY, "Server shutting down")).addListener(ChannelFutureListener.CLOSE);
+                } else {
+                    channel.close();
+                }
+            });
+        }
+        return this.connections.newCloseFuture();
+    }
+
+    public EchoBurst activeBurst(final Channel channel) {
+        return channel.attr(ACTIVE_BURST).get();
+    }
+
+    public EchoScenario<?> activeScenario(final Channel channel) {
+        return channel.attr(ACTIVE_SCENARIO).get();
+    }
+
+    public EchoConnectionStats connectionStats(final Channel channel) {
+        return channel.attr(CONNECTION_STATS).get();
+    }
+
+    void completed(final Channel channel, final EchoBurst echoBurst) {
+        channel.attr(ACTIVE_BURST).compareAndSet(echoBurst, null);
+        final EchoScenario<?> scenario = channel.attr(ACTIVE_SCENARIO).get();
+        if (scenario != null) {
+            scenario.completed(echoBurst);
+        }
+    }
+
+    void completed(final Channel channel, final EchoScenario<?> echoScenario) {
+        if (channel.attr(ACTIVE_SCENARIO).compareAndSet(echoScenario, null)) {
+            this.metrics.onScenarioEnded();
+            log.info("Scenario of [%s] completed after %d iterations", channel.remoteAddress(), echoScenario.getIteration());
+        }
+    }
+
+    void disconnectSlowConsumer(final Channel channel) {
+        log.warn("Connection [%s] cannot keep up with its echoes. Disconnecting", channel.remoteAddress());
+        this.metrics.onSlowConsumerDisconnected();
+        channel.close();
+    }
+}
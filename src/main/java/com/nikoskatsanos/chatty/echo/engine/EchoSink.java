@@ -0,0 +1,25 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * <p>Where the echoes of an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} are written to. That is either the channel which asked for them or, for
+ * broadcasts, every subscriber of a topic. A sink is only ever used from the event loop of the burst's channel</p>
+ *
+ * @author nikkatsa
+ */
+public interface EchoSink {
+
+    /**
+     * @return {@code false} if echoes should be paused until the sink becomes writable again, at which point the sink has the burst resumed through {@link
+     * com.nikoskatsanos.chatty.echo.engine.EchoScheduler#writabilityChanged(io.netty.channel.Channel)}
+     */
+    boolean isWritable();
+
+    /**
+     * <p>Writes the frame without flushing. The sink takes ownership of it</p>
+     */
+    void write(WebSocketFrame frame);
+
+    void flush();
+}
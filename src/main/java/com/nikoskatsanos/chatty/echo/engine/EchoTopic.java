@@ -0,0 +1,176 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The subscribers of a named topic. Subscribers are partitioned by their {@link io.netty.channel.EventLoop}, each partition being a {@link
+ * io.netty.channel.group.ChannelGroup}, so that a broadcast can hand every event loop only the channels it owns. Channels leave the topic as soon as they
+ * close.</p> <p>The broadcasts handed to other event loops and not fanned out yet are bounded by {@link #MAX_PENDING_FAN_OUTS}, above which the topic is not
+ * writable. Thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoTopic {
+
+    public static final int MAX_PENDING_FAN_OUTS = 1_024;
+
+    private final String name;
+    private final ConcurrentMap<EventLoop, ChannelGroup> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingFanOuts = new AtomicInteger();
+    private final Queue<Runnable> writabilityListeners = new ConcurrentLinkedQueue<>();
+
+    EchoTopic(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean subscribe(final Channel channel) {
+        return this.partitions.computeIfAbsent(channel.eventLoop(), eventLoop -> new DefaultChannelGroup(this.name, eventLoop)).add(channel);
+    }
+
+    public boolean unsubscribe(final Channel channel) {
+        final ChannelGroup partition = this.partitions.get(channel.eventLoop());
+        return partition != null && partition.remove(channel);
+    }
+
+    public int size() {
+        int size = 0;
+        for (final ChannelGroup partition : this.partitions.values()) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return {@code false} if the broadcasts pending on other event loops reached {@link #MAX_PENDING_FAN_OUTS}, in which case publishers should pause
+     */
+    public boolean isWritable() {
+        return this.pendingFanOuts.get() < MAX_PENDING_FAN_OUTS;
+    }
+
+    public int getPendingFanOuts() {
+        return this.pendingFanOuts.get();
+    }
+
+    /**
+     * <p>Registers a listener which is run once, as soon as the topic is writable. The listener is run by whichever thread makes the topic writable, hence it
+     * should hand over to the publisher's event loop</p>
+     */
+    public void onWritable(final Runnable listener) {
+        this.writabilityListeners.add(listener);
+        // the pending fan-outs may have completed before the listener got registered
+        if (this.isWritable()) {
+            this.notifyWritable();
+        }
+    }
+
+    /**
+     * <p>Writes the frames to every subscriber of this node. Each event loop of the topic is handed the frames as a single task, which writes {@link
+     * WebSocketFrame#retainedDuplicate()}s of them to the subscribers that event loop owns and then flushes them. A subscriber which is not writable misses the
+     * frames. The frames are not released; the caller still owns them</p>
+     */
+    public void broadcast(final WebSocketFrame[] frames, final EchoMetrics metrics) {
+        for (final Map.Entry<EventLoop, ChannelGroup> partitionEntry : this.partitions.entrySet()) {
+            final ChannelGroup partition = partitionEntry.getValue();
+            if (partition.isEmpty()) {
+                continue;
+            }
+            final WebSocketFrame[] duplicates = retainedDuplicates(frames);
+            final EventLoop eventLoop = partitionEntry.getKey();
+            if (eventLoop.inEventLoop()) {
+                fanOut(partition, duplicates, metrics);
+                continue;
+            }
+            this.pendingFanOuts.incrementAndGet();
+            try {
+                eventLoop.execute(() -> {
+                    try {
+                        fanOut(partition, duplicates, metrics);
+                    } finally {
+                        this.fannedOut();
+                    }
+                });
+            } catch (final RuntimeException e) {
+                // the event loop is shutting down
+                release(duplicates);
+                this.fannedOut();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EchoTopic{name=%s, subscribers=%d}", this.name, this.size());
+    }
+
+    private void fannedOut() {
+        if (this.pendingFanOuts.decrementAndGet() < MAX_PENDING_FAN_OUTS && !this.writabilityListeners.isEmpty()) {
+            this.notifyWritable();
+        }
+    }
+
+    private void notifyWritable() {
+        Runnable listener;
+        while ((listener = this.writabilityListeners.poll()) != null) {
+            listener.run();
+        }
+    }
+
+    private static void fanOut(final ChannelGroup partition, final WebSocketFrame[] frames, final EchoMetrics metrics) {
+        int sent = 0;
+        int dropped = 0;
+        long bytes = 0L;
+        try {
+            for (final Channel subscriber : partition) {
+                if (!subscriber.isActive()) {
+                    continue;
+                }
+                if (!subscriber.isWritable()) {
+                    dropped += frames.length;
+                    continue;
+                }
+                for (final WebSocketFrame frame : frames) {
+                    subscriber.write(frame.retainedDuplicate(), subscriber.voidPromise());
+                    bytes += frame.content().readableBytes();
+                }
+                sent += frames.length;
+            }
+            if (sent > 0) {
+                partition.flush();
+            }
+        } finally {
+            release(frames);
+            metrics.onFannedOut(sent, bytes, dropped);
+        }
+    }
+
+    private static WebSocketFrame[] retainedDuplicates(final WebSocketFrame[] frames) {
+        final WebSocketFrame[] duplicates = new WebSocketFrame[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            duplicates[i] = frames[i].retainedDuplicate();
+        }
+        return duplicates;
+    }
+
+    static void release(final WebSocketFrame[] frames) {
+        for (final WebSocketFrame frame : frames) {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Registry of the server's {@link com.nikoskatsanos.chatty.echo.engine.EchoTopic}s. Every WebSocket connection is subscribed to the {@link #ALL} topic,
+ * hence broadcasting to it reaches all the connected clients.</p> <p>A topic exists as long as it has subscribers: it is created by its first subscriber and
+ * removed once its last one unsubscribes or closes, hence broadcasting to a topic never creates it. Clients name the topics, hence both the number of
+ * topics and the length of their names are bounded, by {@link #MAX_TOPICS} and {@link #MAX_TOPIC_NAME_LENGTH}. Thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoTopics {
+
+    public static final String ALL = "*";
+    public static final int MAX_TOPICS = 10_000;
+    public static final int MAX_TOPIC_NAME_LENGTH = 256;
+
+    private final ConcurrentMap<String, EchoTopic> topics = new ConcurrentHashMap<>();
+
+    /**
+     * @return The topic of the given name, {@code null} if it does not exist
+     */
+    public EchoTopic find(final String name) {
+        return this.topics.get(name);
+    }
+
+    public int size() {
+        return this.topics.size();
+    }
+
+    /**
+     * <p>Subscribes the channel to the topic, creating the topic if it does not exist. Concurrent subscribers of new topics can exceed {@link #MAX_TOPICS}
+     * by as many as they are</p>
+     *
+     * @return {@code true} if the channel was not already subscribed
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the topic's name is too long, or the topic does not exist and there are too
+     *                                                                     many topics already
+     */
+    public boolean subscribe(final String name, final Channel channel) throws EchoRejectedException {
+        checkName(name);
+        if (!ALL.equals(name) && !this.topics.containsKey(name) && this.topics.size() >= MAX_TOPICS) {
+            throw new EchoRejectedException(EchoRejection.TOPICS_LIMIT, this.topics.size() + 1L, MAX_TOPICS);
+        }
+        final boolean[] subscribed = new boolean[1];
+        // subscribed within the map's lock of the topic, hence a topic being removed because its last subscriber left is never subscribed to
+        this.topics.compute(name, (topicName, topic) -> {
+            final EchoTopic subscribedTopic = topic == null ? new EchoTopic(topicName) : topic;
+            subscribed[0] = subscribedTopic.subscribe(channel);
+            return subscribedTopic;
+        });
+        if (subscribed[0]) {
+            // notified after the topic's own listener, which removes the channel from the topic
+            channel.closeFuture().addListener(f -> this.removeIfEmpty(name));
+        }
+        return subscribed[0];
+    }
+
+    public boolean unsubscribe(final String name, final Channel channel) {
+        final EchoTopic topic = this.topics.get(name);
+        if (topic == null || !topic.unsubscribe(channel)) {
+            return false;
+        }
+        this.removeIfEmpty(name);
+        return true;
+    }
+
+    /**
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the topic's name is longer than {@link #MAX_TOPIC_NAME_LENGTH}
+     */
+    public static void checkName(final String name) throws EchoRejectedException {
+        if (name.length() > MAX_TOPIC_NAME_LENGTH) {
+            throw new EchoRejectedException(EchoRejection.TOPIC_NAME_LIMIT, name.length(), MAX_TOPIC_NAME_LENGTH);
+        }
+    }
+
+    private void removeIfEmpty(final String name) {
+        this.topics.computeIfPresent(name, (topicName, topic) -> topic.size() == 0 ? null : topic);
+    }
+}
@@ -0,0 +1,58 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Records, across all connections, how late each echo is emitted compared to when it was scheduled for, in microseconds. Recording is thread safe, wait
+ * free and does not allocate, hence it can be used on the emission path of every event loop.</p> <p>Only echoes with a delay are recorded, since echoes with
+ * no delay are all due as soon as their burst starts.</p> <p>The lag is both reported periodically, for the interval since the previous report, and kept in
+ * total since startup for the metrics endpoint</p>
+ *
+ * @author nikkatsa
+ */
+public class EmissionLagMonitor {
+
+    private static final Logger log = LogManager.getFormatterLogger(EmissionLagMonitor.class);
+
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram totalHistogram = new Histogram(3);
+    private final Histogram reportHistogram = new Histogram(3);
+    private Histogram intervalHistogram;
+
+    public void record(final long lagNanos) {
+        this.recorder.recordValue(Math.max(0L, TimeUnit.NANOSECONDS.toMicros(lagNanos)));
+    }
+
+    /**
+     * @return A copy of the lag recorded since startup
+     */
+    public synchronized Histogram totalHistogram() {
+        this.sample();
+        return this.totalHistogram.copy();
+    }
+
+    /**
+     * <p>Logs the percentiles of the lag recorded since the previous report</p>
+     */
+    public synchronized void report() {
+        this.sample();
+        final Histogram histogram = this.reportHistogram;
+        if (histogram.getTotalCount() == 0L) {
+            return;
+        }
+        log.info("Emission lag (us): count=%d, p50=%d, p90=%d, p99=%d, p99.9=%d, max=%d", histogram.getTotalCount(), histogram.getValueAtPercentile(50.0D),
+                histogram.getValueAtPercentile(90.0D), histogram.getValueAtPercentile(99.0D), histogram.getValueAtPercentile(99.9D), histogram.getMaxValue());
+        histogram.reset();
+    }
+
+    private void sample() {
+        this.intervalHistogram = this.recorder.getIntervalHistogram(this.intervalHistogram);
+        this.totalHistogram.add(this.intervalHistogram);
+        this.reportHistogram.add(this.intervalHistogram);
+    }
+}
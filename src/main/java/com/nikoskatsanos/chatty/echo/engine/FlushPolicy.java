@@ -0,0 +1,66 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>Controls how echoes are flushed to the socket. Echoes that are due at the same event loop tick are written without flushing and flushed together, but
+ * never more than {@code maxFramesPerFlush} frames or {@code maxBytesPerFlush} bytes at a time. A value of {@code 1} for {@code maxFramesPerFlush} flushes
+ * every echo.</p> <p>Optionally, a {@link io.netty.handler.flush.FlushConsolidationHandler} can be installed in the pipeline, which consolidates the explicit
+ * flushes of a connection, flushing after {@code explicitFlushAfterFlushes} of them</p>
+ *
+ * @author nikkatsa
+ */
+public class FlushPolicy {
+
+    public static final int DEFAULT_MAX_FRAMES_PER_FLUSH = 64;
+    public static final int DEFAULT_MAX_BYTES_PER_FLUSH = 64 * 1024;
+
+    public static final FlushPolicy DEFAULT = new FlushPolicy(DEFAULT_MAX_FRAMES_PER_FLUSH, DEFAULT_MAX_BYTES_PER_FLUSH, 0);
+
+    private final int maxFramesPerFlush;
+    private final int maxBytesPerFlush;
+    private final int explicitFlushAfterFlushes;
+
+    /**
+     * @param maxFramesPerFlush         Maximum number of frames written before the channel is flushed
+     * @param maxBytesPerFlush          Maximum number of payload bytes written before the channel is flushed
+     * @param explicitFlushAfterFlushes If positive, a {@link io.netty.handler.flush.FlushConsolidationHandler} is added to the pipeline, flushing after that
+     *                                  many flushes. {@code 0} disables flush consolidation
+     */
+    public FlushPolicy(final int maxFramesPerFlush, final int maxBytesPerFlush, final int explicitFlushAfterFlushes) {
+        if (maxFramesPerFlush <= 0) {
+            throw new IllegalArgumentException(String.format("Max frames per flush must be positive, was %d", maxFramesPerFlush));
+        }
+        if (maxBytesPerFlush <= 0) {
+            throw new IllegalArgumentException(String.format("Max bytes per flush must be positive, was %d", maxBytesPerFlush));
+        }
+        if (explicitFlushAfterFlushes < 0) {
+            throw new IllegalArgumentException(String.format("Explicit flush after flushes cannot be negative, was %d", explicitFlushAfterFlushes));
+        }
+        this.maxFramesPerFlush = maxFramesPerFlush;
+        this.maxBytesPerFlush = maxBytesPerFlush;
+        this.explicitFlushAfterFlushes = explicitFlushAfterFlushes;
+    }
+
+    public int getMaxFramesPerFlush() {
+        return this.maxFramesPerFlush;
+    }
+
+    public int getMaxBytesPerFlush() {
+        return this.maxBytesPerFlush;
+    }
+
+    public int getExplicitFlushAfterFlushes() {
+        return this.explicitFlushAfterFlushes;
+    }
+
+    public boolean isFlushConsolidation() {
+        return this.explicitFlushAfterFlushes > 0;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("maxFramesPerFlush", this.maxFramesPerFlush).add("maxBytesPerFlush", this.maxBytesPerFlush).add
+                ("explicitFlushAfterFlushes", this.explicitFlushAfterFlushes).toString();
+    }
+}
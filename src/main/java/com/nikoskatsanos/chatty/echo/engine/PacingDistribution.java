@@ -0,0 +1,48 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>How the echoes of an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} are spread in time. Whatever the distribution, the echoes average the
+ * requested interval, hence the requested rate, over the burst. Each echo is due a number of nanoseconds after the previous one's deadline, not after the
+ * previous one was actually emitted, hence a late emission never pushes back the schedule</p>
+ *
+ * @author nikkatsa
+ */
+public enum PacingDistribution {
+    /**
+     * <p>Echoes are evenly spaced, exactly {@code interval} apart</p>
+     */
+    CONSTANT {
+        @Override
+        public long nextIntervalNanos(final long meanIntervalNanos, final int burstSize, final long sequence) {
+            return meanIntervalNanos;
+        }
+    },
+    /**
+     * <p>Echoes arrive as a Poisson process; the intervals between them are exponentially distributed around {@code interval}</p>
+     */
+    POISSON {
+        @Override
+        public long nextIntervalNanos(final long meanIntervalNanos, final int burstSize, final long sequence) {
+            return (long) (-Math.log(1.0D - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos);
+        }
+    },
+    /**
+     * <p>Echoes are grouped in bursts of {@code burstSize} echoes, all due at the same time, and the bursts are {@code burstSize * interval} apart</p>
+     */
+    BURSTY {
+        @Override
+        public long nextIntervalNanos(final long meanIntervalNanos, final int burstSize, final long sequence) {
+            return sequence % burstSize == 0L ? meanIntervalNanos * burstSize : 0L;
+        }
+    };
+
+    /**
+     * @param meanIntervalNanos The requested interval between echoes
+     * @param burstSize         The number of echoes in a group, for the distributions that group echoes
+     * @param sequence          The zero based index of the echo within its burst
+     * @return The nanoseconds between the deadline of the previous echo, or the start of the burst for the first one, and the deadline of this one
+     */
+    public abstract long nextIntervalNanos(final long meanIntervalNanos, final int burstSize, final long sequence);
+}
@@ -0,0 +1,27 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+/**
+ * <p>What an {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} does when its channel stops being writable, i.e. the client does not read the echoes as
+ * fast as they are sent. In all cases the emission is paused while the channel is not writable, so the outbound buffer does not grow past the high water
+ * mark</p>
+ *
+ * @author nikkatsa
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * <p>Emission resumes when the channel becomes writable again, catching up with all the echoes that became due in the meantime</p>
+     */
+    PAUSE,
+    /**
+     * <p>Echoes that became due while the channel was not writable are dropped</p>
+     */
+    DROP,
+    /**
+     * <p>Echoes that became due while the channel was not writable are coalesced into a single echo, sent when the channel becomes writable again</p>
+     */
+    COALESCE,
+    /**
+     * <p>The connection is closed as soon as the channel stops being writable</p>
+     */
+    DISCONNECT
+}
@@ -0,0 +1,65 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Token bucket of {@code rate} tokens per second holding at most a second's worth of tokens. It is implemented as the equivalent generic cell rate
+ * algorithm, keeping only the theoretical time at which the bucket would be full again, hence acquiring tokens is a single compare and set without any
+ * refill bookkeeping. It is thread safe, so a single bucket can be shared by all the event loops</p>
+ *
+ * @author nikkatsa
+ */
+public class TokenBucket {
+
+    private static final long CAPACITY_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    private final long rate;
+    private final AtomicLong fullAtNanos = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param rate Tokens per second
+     */
+    public TokenBucket(final long rate) {
+        if (rate <= 0L) {
+            throw new IllegalArgumentException(String.format("Token bucket rate must be positive, was %d", rate));
+        }
+        this.rate = rate;
+    }
+
+    public long getRate() {
+        return this.rate;
+    }
+
+    /**
+     * <p>Tries to take the given number of tokens out of the bucket</p>
+     *
+     * @return {@code 0} if the tokens were taken, otherwise the nanoseconds until enough tokens are available
+     */
+    public long tryAcquire(final long tokens, final long nowNanos) {
+        final long costNanos = this.costNanos(tokens);
+        while (true) {
+            final long fullAt = this.fullAtNanos.get();
+            final long from = fullAt == Long.MIN_VALUE || fullAt - nowNanos < 0L ? nowNanos : fullAt;
+            final long next = from + costNanos;
+            final long overdraftNanos = next - nowNanos - CAPACITY_NANOS;
+            if (overdraftNanos > 0L && from != nowNanos) {
+                return overdraftNanos;
+            }
+            if (this.fullAtNanos.compareAndSet(fullAt, next)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * <p>Gives back tokens which were acquired but not used</p>
+     */
+    public void release(final long tokens) {
+        this.fullAtNanos.addAndGet(-this.costNanos(tokens));
+    }
+
+    private long costNanos(final long tokens) {
+        return tokens * CAPACITY_NANOS / this.rate;
+    }
+}
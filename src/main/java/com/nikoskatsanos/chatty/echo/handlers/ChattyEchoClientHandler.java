@@ -1,20 +1,45 @@
 package com.nikoskatsanos.chatty.echo.handlers;
 
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogSampler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
+ * <p>Logs the echoes received by the client, as sampled by the {@link com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy}</p>
+ *
  * @author nikkatsa
  */
-public class ChattyEchoClientHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class ChattyEchoClientHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
 
     private static final Logger log = LogManager.getFormatterLogger(ChattyEchoClientHandler.class);
 
+    private final EchoLogSampler logSampler;
+
+    public ChattyEchoClientHandler() {
+        this(EchoLogPolicy.DEFAULT);
+    }
+
+    public ChattyEchoClientHandler(final EchoLogPolicy echoLogPolicy) {
+        this.logSampler = echoLogPolicy.newSampler();
+    }
+
     @Override
-    protected void channelRead0(final ChannelHandlerContext ctx, final TextWebSocketFrame msg) throws Exception {
-        log.info("<< %s", msg.text());
+    protected void channelRead0(final ChannelHandlerContext ctx, final WebSocketFrame msg) throws Exception {
+        final long echoes = this.logSampler.sample(System.nanoTime());
+        if (echoes == 0L) {
+            return;
+        }
+        final String suffix = echoes == 1L ? "" : String.format(", %d echoes since last logged", echoes);
+        if (msg instanceof TextWebSocketFrame) {
+            log.info("<< %s%s", ((TextWebSocketFrame) msg).text(), suffix);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            log.info("<< [%d bytes]%s", msg.content().readableBytes(), suffix);
+        }
     }
 }
@@ -1,64 +1,402 @@
 package com.nikoskatsanos.chatty.echo.handlers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage;
+import com.nikoskatsanos.chatty.echo.codec.BinaryEchoFrameSource;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoBinaryCodec;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoRequestDecoder;
+import com.nikoskatsanos.chatty.echo.codec.JsonEchoFrameSource;
+import com.nikoskatsanos.chatty.echo.compression.CompressedEchoFrameSource;
+import com.nikoskatsanos.chatty.echo.compression.EchoDeflateEncoder;
+import com.nikoskatsanos.chatty.echo.engine.BroadcastEchoSink;
+import com.nikoskatsanos.chatty.echo.engine.EchoBurst;
+import com.nikoskatsanos.chatty.echo.engine.EchoFrameSource;
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoScenario;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.engine.EchoTopics;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage;
 import com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage;
-import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import com.nikoskatsanos.chatty.echo.payload.PayloadSpec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongConsumer;
 
 /**
  * <p>{@link io.netty.channel.SimpleChannelInboundHandler} which reads an incoming {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage} and
- * based on its properties it sends out the appropriate {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage}</p>
+ * based on its properties it sends out the appropriate {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage}. The echoes are scheduled through
+ * the server wide {@link com.nikoskatsanos.chatty.echo.engine.EchoScheduler}, as a single {@link com.nikoskatsanos.chatty.echo.engine.EchoBurst} or {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoScenario} per connection which its next request replaces</p>
  *
  * @author nikkatsa
  */
-public class ChattyEchoHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class ChattyEchoHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
 
     private static final Logger log = LogManager.getFormatterLogger(ChattyEchoHandler.class);
 
     private static final ObjectMapper JSON_MAPPER;
+    private static final ChattyEchoRequestDecoder REQUEST_DECODER = new ChattyEchoRequestDecoder();
+    private static final String PAYLOAD_UNAVAILABLE = "PAYLOAD_UNAVAILABLE";
 
-    private final ScheduledExecutorService echoBackExecutors;
+    private final EchoScheduler echoScheduler;
+    private final ChattyEchoRequest request = new ChattyEchoRequest();
+    private ChattyEchoProtocol protocol = ChattyEchoProtocol.JSON;
+    // counts the requests handled, hence a request waiting for its payload can tell whether it has been superseded
+    private long requests;
 
     static {
         JSON_MAPPER = new ObjectMapper();
     }
 
-    public ChattyEchoHandler() {
-        this.echoBackExecutors = Executors.newScheduledThreadPool(16, new NamedThreadFactory("EchoBack-Executor"));
+    public ChattyEchoHandler(final EchoScheduler echoScheduler) {
+        this.echoScheduler = echoScheduler;
     }
 
-    protected void channelRead0(final ChannelHandlerContext channelHandlerContext, final TextWebSocketFrame textWebSocketFrame) throws Exception {
-        final String payload = textWebSocketFrame.text();
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        this.echoScheduler.writabilityChanged(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            this.protocol = ChattyEchoProtocol.fromSubprotocol(((WebSocketServerProtocolHandler.HandshakeComplete) evt).selectedSubprotocol());
+            // only WebSocket connections are counted and broadcast to, not metrics scrapes nor failed handshakes
+            this.echoScheduler.register(ctx.channel());
+            this.echoScheduler.getTopics().subscribe(EchoTopics.ALL, ctx.channel());
+            log.info("Handshake completed with [%s] using %s protocol", ctx.channel().remoteAddress(), this.protocol);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    /**
+     * <p>Requests are decoded straight from the frame's buffer, by the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoRequestDecoder} or, if the client
+     * negotiated the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol#BINARY} subprotocol, the {@link
+     * com.nikoskatsanos.chatty.echo.codec.ChattyEchoBinaryCodec}, into a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest} which is reused for all
+     * the requests of the connection. A request is either a subscription, a {@code stop} which cancels the connection's scenario and burst, a scenario or an
+     * echo request. Requests over the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits} are answered with a {@link
+     * com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage} instead</p>
+     */
+    protected void channelRead0(final ChannelHandlerContext channelHandlerContext, final WebSocketFrame webSocketFrame) throws Exception {
+        if (!(webSocketFrame instanceof TextWebSocketFrame) && !(webSocketFrame instanceof BinaryWebSocketFrame)) {
+            return;
+        }
 
         try {
-            final ChattyEchoInboundMessage chattyEchoInboundMessage = JSON_MAPPER.readValue(payload, ChattyEchoInboundMessage.class);
-
-            final int times = chattyEchoInboundMessage.getTimes() > 0 ? chattyEchoInboundMessage.getTimes() : 1;
-            final long delay = chattyEchoInboundMessage.getDelay() >= 0 ? chattyEchoInboundMessage.getDelay() : 0;
-
-            final ChattyEchoOutboundMessage chattyEchoOutboundMessage = new ChattyEchoOutboundMessage(chattyEchoInboundMessage.getMsg());
-            for (int i = 0; i < times; i++) {
-                this.echoBackExecutors.schedule(() -> {
-                    log.info(">> [%s (%s)]", chattyEchoOutboundMessage.getMsg(), channelHandlerContext.channel().remoteAddress().toString());
-                    try {
-                        channelHandlerContext.channel().writeAndFlush(new TextWebSocketFrame(JSON_MAPPER.writeValueAsString(chattyEchoOutboundMessage)));
-                    } catch (final JsonProcessingException e) {
-                        log.error(e.getMessage(), e);
-                    }
-                }, delay * (i + 1), TimeUnit.MILLISECONDS);
+            this.requests++;
+            final Channel channel = channelHandlerContext.channel();
+            final ChattyEchoRequest chattyEchoRequest;
+            if (webSocketFrame instanceof TextWebSocketFrame) {
+                chattyEchoRequest = REQUEST_DECODER.decode(webSocketFrame.content(), this.request);
+            } else if (this.protocol == ChattyEchoProtocol.BINARY) {
+                chattyEchoRequest = ChattyEchoBinaryCodec.decodeRequest(webSocketFrame.content(), this.request);
+            } else {
+                log.warn("Binary frame received from [%s] which did not negotiate the %s subprotocol. Ignoring", channel.remoteAddress(), ChattyEchoProtocol
+                        .BINARY.getSubprotocol());
+                return;
+            }
+            if (chattyEchoRequest.isSubscription()) {
+                this.changeSubscriptions(channel, chattyEchoRequest);
+                return;
+            }
+            if (chattyEchoRequest.isStop()) {
+                if (this.echoScheduler.cancel(channel)) {
+                    log.info("[%s] stopped its echoes", channel.remoteAddress());
+                }
+                return;
             }
+            if (chattyEchoRequest.isScenario()) {
+                this.startScenario(channelHandlerContext, chattyEchoRequest.getSteps(), chattyEchoRequest.getRepeat());
+                return;
+            }
+
+            if (chattyEchoRequest.getTopic() != null) {
+                EchoTopics.checkName(chattyEchoRequest.getTopic());
+            }
+            this.echo(channelHandlerContext, chattyEchoRequest);
+        } catch (final EchoRejectedException e) {
+            // a request paced slower than the decoders allow, or beyond the bounds of the topics
+            this.echoScheduler.getMetrics().onRejected();
+            this.reject(channelHandlerContext, e);
         } catch (final Exception ex) {
+            this.echoScheduler.getMetrics().onRequestError();
             log.error(ex.getMessage(), ex);
         }
     }
+
+    /**
+     * <p>Admits the request and starts the burst of its echoes. The payload of the request, if any, is owned by the burst or released if there is none.</p>
+     * <p>A payload described by a {@link com.nikoskatsanos.chatty.echo.payload.PayloadSpec} which is not cached yet is generated off the event loop; the
+     * request is admitted anew and started once it is, unless the connection sent another request in the meantime</p>
+     */
+    private void echo(final ChannelHandlerContext ctx, final ChattyEchoRequest chattyEchoRequest) throws IOException {
+        final Channel channel = ctx.channel();
+        final int times = times(chattyEchoRequest);
+        final EchoPacing pacing = chattyEchoRequest.toPacing();
+        ByteBuf payload = chattyEchoRequest.getPayload();
+        try {
+            this.echoScheduler.admit(channel, times, pacing);
+            if (chattyEchoRequest.getPayloadSpec() != null) {
+                payload = this.echoScheduler.cachedPayload(chattyEchoRequest.getPayloadSpec());
+                if (payload == null) {
+                    this.awaitPayloads(ctx, Collections.singletonList(chattyEchoRequest.getPayloadSpec()), request -> this.echo(ctx, request),
+                            chattyEchoRequest.copy());
+                    return;
+                }
+            }
+        } catch (final EchoRejectedException e) {
+            if (payload != null) {
+                payload.release();
+            }
+            this.reject(ctx, e);
+            return;
+        }
+
+        final EchoBurst echoBurst = this.newBurst(ctx, chattyEchoRequest, payload, times, pacing);
+        try {
+            this.echoScheduler.start(channel, echoBurst);
+        } catch (final RuntimeException e) {
+            echoBurst.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Starts a scenario of the given steps, once all of them are admitted by the {@link com.nikoskatsanos.chatty.echo.engine.EchoLimits} and the payloads
+     * of its steps are cached. Each step is admitted again when it starts, as the server's outstanding echoes change in the meantime</p>
+     */
+    private void startScenario(final ChannelHandlerContext ctx, final List<ChattyEchoRequest> steps, final int repeat) throws IOException {
+        final Channel channel = ctx.channel();
+        final List<PayloadSpec> uncached = new ArrayList<>();
+        try {
+            for (final ChattyEchoRequest step : steps) {
+                if (step.getPauseNanos() == 0L) {
+                    this.echoScheduler.admit(channel, times(step), step.toPacing());
+                }
+                if (step.getPayloadSpec() != null && !uncached.contains(step.getPayloadSpec())) {
+                    final ByteBuf payload = this.echoScheduler.cachedPayload(step.getPayloadSpec());
+                    if (payload == null) {
+                        uncached.add(step.getPayloadSpec());
+                    } else {
+                        payload.release();
+                    }
+                }
+            }
+        } catch (final EchoRejectedException e) {
+            this.reject(ctx, e);
+            return;
+        }
+        if (!uncached.isEmpty()) {
+            this.awaitPayloads(ctx, uncached, ignored -> this.startScenario(ctx, steps, repeat), null);
+            return;
+        }
+        log.info("[%s] started a scenario of %d steps, run %s", channel.remoteAddress(), steps.size(), repeat == 0 ? "until stopped" : repeat + " times");
+        this.echoScheduler.start(channel, new EchoScenario<>(channel, steps, repeat, step -> this.newStepBurst(ctx, step)));
+    }
+
+    /**
+     * <p>Generates the given payloads off the event loop and then resumes handling the request on it, unless the connection sent another request or closed in
+     * the meantime. Payloads which cannot be generated are answered with a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage}</p>
+     *
+     * @param request A copy of the request, as the connection's request is reused by its next one
+     */
+    private void awaitPayloads(final ChannelHandlerContext ctx, final List<PayloadSpec> specs, final RequestHandler resume, final ChattyEchoRequest request) {
+        final long awaiting = this.requests;
+        final CompletableFuture<?>[] generated = new CompletableFuture<?>[specs.size()];
+        for (int i = 0; i < generated.length; i++) {
+            // the payloads are cached once generated, the request acquires them again when it resumes
+            generated[i] = this.echoScheduler.generatePayload(specs.get(i)).thenAccept(ByteBuf::release);
+        }
+        CompletableFuture.allOf(generated).whenCompleteAsync((ignored, error) -> {
+            if (awaiting != this.requests || !ctx.channel().isActive()) {
+                return;
+            }
+            try {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause == null) {
+                    resume.handle(request);
+                } else if (cause instanceof EchoRejectedException) {
+                    this.reject(ctx, (EchoRejectedException) cause);
+                } else if (cause instanceof IOException) {
+                    this.payloadUnavailable(ctx, (IOException) cause);
+                } else {
+                    throw cause;
+                }
+            } catch (final Throwable e) {
+                this.echoScheduler.getMetrics().onRequestError();
+                log.error(e.getMessage(), e);
+            }
+        }, ctx.executor());
+    }
+
+    /**
+     * <p>Handles a request once its payloads are cached</p>
+     */
+    @FunctionalInterface
+    private interface RequestHandler {
+
+        void handle(final ChattyEchoRequest request) throws IOException;
+    }
+
+    /**
+     * <p>Creates the burst of a scenario step when the step starts. A step which is rejected, or whose payload is no longer cached, is answered with a {@link
+     * com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage} and stops the scenario, as payloads are never generated on the event loop</p>
+     */
+    private EchoBurst newStepBurst(final ChannelHandlerContext ctx, final ChattyEchoRequest step) throws Exception {
+        final int times = times(step);
+        final EchoPacing pacing = step.toPacing();
+        ByteBuf payload = null;
+        try {
+            this.echoScheduler.admit(ctx.channel(), times, pacing);
+            if (step.getPayloadSpec() != null) {
+                payload = this.echoScheduler.cachedPayload(step.getPayloadSpec());
+                if (payload == null) {
+                    // evicted since the scenario started; it is cached again off the event loop, for the connection's next request
+                    this.echoScheduler.generatePayload(step.getPayloadSpec()).thenAccept(ByteBuf::release);
+                    throw new IOException(String.format("Payload %s was evicted from the cache", step.getPayloadSpec()));
+                }
+            }
+        } catch (final EchoRejectedException e) {
+            this.reject(ctx, e);
+            throw e;
+        } catch (final IOException e) {
+            this.payloadUnavailable(ctx, e);
+            throw e;
+        }
+        return this.newBurst(ctx, step, payload, times, pacing);
+    }
+
+    /**
+     * <p>Creates the burst of the request's echoes, encoding the message or taking ownership of the payload, which is released if the burst cannot be
+     * created. Payloads are echoed with binary frames, fragmented if larger than the {@link com.nikoskatsanos.chatty.echo.payload.PayloadCache}'s maximum
+     * frame size, and the echoes are logged as sampled by the {@link com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy}.</p> <p>A request with a {@code
+     * topic} is broadcast to the topic's subscribers, on this node and on the others of the cluster, through a {@link
+     * com.nikoskatsanos.chatty.echo.engine.BroadcastEchoSink}; the burst still belongs to the requesting connection. With {@link
+     * com.nikoskatsanos.chatty.echo.compression.CompressionMode#CACHED} compression, the identical echoes of an unsequenced request to the sender are deflated
+     * once by a {@link com.nikoskatsanos.chatty.echo.compression.CompressedEchoFrameSource}</p>
+     */
+    private EchoBurst newBurst(final ChannelHandlerContext ctx, final ChattyEchoRequest chattyEchoRequest, final ByteBuf payload, final int times, final
+            EchoPacing pacing) throws IOException {
+        final Channel channel = ctx.channel();
+        final long burstId = this.echoScheduler.nextBurstId();
+        final EchoFrameSource encodedSource;
+        final LongConsumer onEmission;
+        final String topic = chattyEchoRequest.getTopic();
+        final String remoteAddress = topic == null ? String.valueOf(channel.remoteAddress()) : String.format("%s -> %s", channel.remoteAddress(), topic);
+        if (payload == null) {
+            final ChattyEchoOutboundMessage chattyEchoOutboundMessage = new ChattyEchoOutboundMessage(chattyEchoRequest.getMsg());
+            encodedSource = new JsonEchoFrameSource(ctx.alloc(), encode(ctx.alloc(), chattyEchoOutboundMessage), burstId, chattyEchoRequest.isSequenced());
+            onEmission = echoes -> logEmission(chattyEchoOutboundMessage.getMsg(), remoteAddress, echoes);
+        } else {
+            final String payloadSize = payload.readableBytes() + " bytes";
+            encodedSource = new BinaryEchoFrameSource(ctx.alloc(), payload, burstId, chattyEchoRequest.isSequenced(), this.echoScheduler.getPayloadCache()
+                    .getMaxFrameBytes());
+            onEmission = echoes -> logEmission(payloadSize, remoteAddress, echoes);
+        }
+        EchoFrameSource frameSource = encodedSource;
+        try {
+            // broadcasts are shared by subscribers which may not have negotiated compression, hence only echoes to the sender are deflated ahead of time
+            final EchoDeflateEncoder deflateEncoder = EchoDeflateEncoder.of(channel);
+            if (topic == null && !chattyEchoRequest.isSequenced() && deflateEncoder != null && deflateEncoder.isCacheable(encodedSource.frameSize())) {
+                // the compressed source releases the encoded one, even if it fails
+                frameSource = null;
+                frameSource = new CompressedEchoFrameSource(ctx.alloc(), encodedSource, deflateEncoder, this.echoScheduler.getMetrics());
+            }
+
+            return topic == null ? new EchoBurst(channel, frameSource, onEmission, times, pacing) : new EchoBurst(channel, new BroadcastEchoSink(channel, topic,
+                    this.echoScheduler), frameSource, onEmission, times, pacing);
+        } catch (final RuntimeException e) {
+            if (frameSource != null) {
+                frameSource.release();
+            }
+            throw e;
+        }
+    }
+
+    private static int times(final ChattyEchoRequest chattyEchoRequest) {
+        return chattyEchoRequest.getTimes() > 0 ? chattyEchoRequest.getTimes() : 1;
+    }
+
+    private void changeSubscriptions(final Channel channel, final ChattyEchoRequest subscription) throws EchoRejectedException {
+        final EchoTopics topics = this.echoScheduler.getTopics();
+        if (EchoTopics.ALL.equals(subscription.getSubscribe()) || EchoTopics.ALL.equals(subscription.getUnsubscribe())) {
+            log.warn("[%s] tried to change its subscription to %s, which all connections are subscribed to. Ignoring", channel.remoteAddress(), EchoTopics
+                    .ALL);
+            return;
+        }
+        if (subscription.getUnsubscribe() != null && topics.unsubscribe(subscription.getUnsubscribe(), channel)) {
+            log.info("[%s] unsubscribed from [%s]", channel.remoteAddress(), subscription.getUnsubscribe());
+        }
+        if (subscription.getSubscribe() != null && topics.subscribe(subscription.getSubscribe(), channel)) {
+            log.info("[%s] subscribed to [%s]", channel.remoteAddress(), subscription.getSubscribe());
+        }
+    }
+
+    /**
+     * <p>Replies to a rejected request with a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage}. The connection's active burst, if any, is
+     * left running</p>
+     */
+    private void reject(final ChannelHandlerContext ctx, final EchoRejectedException rejection) throws IOException {
+        log.warn("Request from [%s] rejected: %s", ctx.channel().remoteAddress(), rejection.getMessage());
+        error(ctx, new ChattyEchoErrorMessage(rejection.getRejection().name(), rejection.getMessage()));
+    }
+
+    /**
+     * <p>Replies to a request whose payload cannot be read, e.g. a missing payload file, with a {@link
+     * com.nikoskatsanos.chatty.echo.model.ChattyEchoErrorMessage}</p>
+     */
+    private void payloadUnavailable(final ChannelHandlerContext ctx, final IOException e) throws IOException {
+        log.warn("Payload of request from [%s] unavailable: %s", ctx.channel().remoteAddress(), e.getMessage());
+        this.echoScheduler.getMetrics().onRequestError();
+        error(ctx, new ChattyEchoErrorMessage(PAYLOAD_UNAVAILABLE, e.getMessage()));
+    }
+
+    private static void error(final ChannelHandlerContext ctx, final ChattyEchoErrorMessage error) throws IOException {
+        ctx.writeAndFlush(new TextWebSocketFrame(Unpooled.wrappedBuffer(JSON_MAPPER.writeValueAsBytes(error))), ctx.voidPromise());
+    }
+
+    private static void logEmission(final String echo, final String remoteAddress, final long echoes) {
+        if (echoes == 1L) {
+            log.info(">> [%s (%s)]", echo, remoteAddress);
+        } else {
+            log.info(">> [%s (%s)], %d echoes since last logged", echo, remoteAddress, echoes);
+        }
+    }
+
+    /**
+     * <p>Encodes the {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage} into a pooled {@link io.netty.buffer.ByteBuf}. The caller owns the
+     * returned buffer</p>
+     */
+    public static ByteBuf encode(final ByteBufAllocator allocator, final ChattyEchoOutboundMessage chattyEchoOutboundMessage) throws IOException {
+        final ByteBuf encoded = allocator.buffer();
+        try {
+            JSON_MAPPER.writeValue((OutputStream) new ByteBufOutputStream(encoded), chattyEchoOutboundMessage);
+            return encoded;
+        } catch (final IOException e) {
+            encoded.release();
+            throw e;
+        }
+    }
 }
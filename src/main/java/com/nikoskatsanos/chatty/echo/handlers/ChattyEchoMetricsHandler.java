@@ -0,0 +1,74 @@
+package com.nikoskatsanos.chatty.echo.handlers;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.metrics.PrometheusExposition;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * <p>Serves the server's metrics in the Prometheus text format on {@code GET /metrics}, on the same port and HTTP pipeline as the WebSocket endpoint. {@code
+ * GET /metrics?connections} adds per connection series. Any other message is passed on down the pipeline</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoMetricsHandler extends ChannelInboundHandlerAdapter {
+
+    public static final String METRICS_PATH = "/metrics";
+
+    private final EchoScheduler echoScheduler;
+
+    public ChattyEchoMetricsHandler(final EchoScheduler echoScheduler) {
+        this.echoScheduler = echoScheduler;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        final FullHttpRequest request = (FullHttpRequest) msg;
+        final QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        if (!METRICS_PATH.equals(uri.path())) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        try {
+            final FullHttpResponse response;
+            if (request.method() != HttpMethod.GET) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.METHOD_NOT_ALLOWED, ctx.alloc().buffer(0));
+            } else {
+                final ByteBuf content = ByteBufUtil.writeUtf8(ctx.alloc(), PrometheusExposition.write(this.echoScheduler, uri.parameters().containsKey
+                        ("connections")));
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, PrometheusExposition.CONTENT_TYPE);
+            }
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+
+            final boolean keepAlive = HttpUtil.isKeepAlive(request);
+            if (keepAlive) {
+                response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+                ctx.writeAndFlush(response, ctx.voidPromise());
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        } finally {
+            ReferenceCountUtil.release(request);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.nikoskatsanos.chatty.echo.handlers;
+
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.compression.CompressionPolicy;
+import com.nikoskatsanos.chatty.echo.compression.EchoCompressionHandshaker;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.engine.FlushPolicy;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * <p>{@link io.netty.channel.ChannelInitializer} which sets up the pipeline of a <em>Chatty Echo Server</em> connection. Plain HTTP requests to {@link
+ * com.nikoskatsanos.chatty.echo.handlers.ChattyEchoMetricsHandler#METRICS_PATH} are served the server's metrics. WebSocket connections negotiate {@code
+ * permessage-deflate} unless the {@link com.nikoskatsanos.chatty.echo.compression.CompressionPolicy} turns it off</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoServerInitializer extends ChannelInitializer<Channel> {
+
+    public static final String WEBSOCKET_PATH = "/echo";
+
+    private final EchoScheduler echoScheduler;
+
+    public ChattyEchoServerInitializer(final EchoScheduler echoScheduler) {
+        this.echoScheduler = echoScheduler;
+    }
+
+    @Override
+    protected void initChannel(final Channel channel) throws Exception {
+        final ChannelPipeline pipeline = channel.pipeline();
+        final FlushPolicy flushPolicy = this.echoScheduler.getFlushPolicy();
+        if (flushPolicy.isFlushConsolidation()) {
+            pipeline.addLast(new FlushConsolidationHandler(flushPolicy.getExplicitFlushAfterFlushes(), true));
+        }
+        pipeline.addLast(new HttpServerCodec());
+        pipeline.addLast(new HttpObjectAggregator(65_536));
+        pipeline.addLast(new ChattyEchoMetricsHandler(this.echoScheduler));
+        final CompressionPolicy compressionPolicy = this.echoScheduler.getCompressionPolicy();
+        if (compressionPolicy.isEnabled()) {
+            pipeline.addLast(new WebSocketServerExtensionHandler(new EchoCompressionHandshaker(compressionPolicy, this.echoScheduler.getMetrics())));
+        }
+        pipeline.addLast(new WebSocketServerProtocolHandler(WEBSOCKET_PATH, ChattyEchoProtocol.SUBPROTOCOLS, true));
+        pipeline.addLast(new WebSocketFrameAggregator(65_536));
+        pipeline.addLast(new ChattyEchoHandler(this.echoScheduler));
+    }
+}
@@ -0,0 +1,156 @@
+package com.nikoskatsanos.chatty.echo.handlers;
+
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoBinaryCodec;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.engine.EchoLimits;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.engine.EchoTopics;
+import com.nikoskatsanos.chatty.echo.payload.PayloadSpec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Warms up a server before it starts accepting connections, so that the first clients after a (rolling) restart do not pay for class loading, the
+ * interpreter and empty buffer pools. Requests of every kind, JSON, binary, sequenced, payloads and broadcasts, are fed through the full pipeline of {@link
+ * com.nikoskatsanos.chatty.echo.handlers.ChattyEchoServerInitializer} on {@link io.netty.channel.embedded.EmbeddedChannel}s, with their own {@link
+ * com.nikoskatsanos.chatty.echo.engine.EchoScheduler}, hence the server's metrics are not affected. Then every event loop allocates and releases pooled
+ * buffers, which creates its thread local cache</p>
+ *
+ * @author nikkatsa
+ */
+public final class ChattyEchoWarmUp {
+
+    private static final Logger log = LogManager.getFormatterLogger(ChattyEchoWarmUp.class);
+
+    private static final String HANDSHAKE = "GET " + ChattyEchoServerInitializer.WEBSOCKET_PATH + " HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+            "Sec-WebSocket-Version: 13\r\n" +
+            "Sec-WebSocket-Protocol: %s\r\n" +
+            "Sec-WebSocket-Extensions: permessage-deflate; server_no_context_takeover\r\n" +
+            "\r\n";
+    private static final int TIMES = 10;
+    private static final int[] BUFFER_SIZES = {64, 1024, 8 * 1024, 64 * 1024};
+
+    private ChattyEchoWarmUp() {
+    }
+
+    /**
+     * @param echoScheduler The server's scheduler, whose policies the warm up uses
+     * @param requests      Requests per protocol
+     */
+    public static void warmUp(final EchoScheduler echoScheduler, final EventLoopGroup eventLoops, final int requests) throws InterruptedException {
+        final long start = System.nanoTime();
+        final EchoScheduler warmUpScheduler = new EchoScheduler(echoScheduler.getFlushPolicy(), echoScheduler.getBackpressurePolicy(), new EchoLogPolicy
+                (false, 0L, TimeUnit.MILLISECONDS), EchoLimits.UNLIMITED);
+        warmUpScheduler.setCompressionPolicy(echoScheduler.getCompressionPolicy());
+        try {
+            final String msg = "Chatty Echo Server warm up";
+            final List<WebSocketFrame> jsonRequests = new ArrayList<>();
+            jsonRequests.add(new TextWebSocketFrame(String.format("{\"msg\":\"%s\",\"times\":%d,\"delay\":0}", msg, TIMES)));
+            jsonRequests.add(new TextWebSocketFrame(String.format("{\"msg\":\"%s\",\"times\":%d,\"delay\":0,\"sequenced\":true}", msg, TIMES)));
+            jsonRequests.add(new TextWebSocketFrame(String.format("{\"msg\":\"%s\",\"times\":%d,\"delay\":0,\"topic\":\"%s\"}", msg, TIMES, EchoTopics.ALL)));
+            final PayloadSpec payloadSpec = PayloadSpec.pattern(16 * 1024, PayloadSpec.DEFAULT_PATTERN);
+            jsonRequests.add(new TextWebSocketFrame(String.format("{\"times\":%d,\"delay\":0,\"payload\":{\"size\":%d}}", TIMES, payloadSpec.getSize())));
+            // generated up front, as the embedded channels run their tasks on this thread rather than being handed them by the payload cache's thread
+            warmUpScheduler.payload(payloadSpec).release();
+            final List<WebSocketFrame> binaryRequests = new ArrayList<>();
+            final byte[] payload = msg.getBytes(CharsetUtil.UTF_8);
+            binaryRequests.add(new BinaryWebSocketFrame(ChattyEchoBinaryCodec.encodeRequest(ByteBufAllocator.DEFAULT, TIMES, 0L, 0, payload)));
+            binaryRequests.add(new BinaryWebSocketFrame(ChattyEchoBinaryCodec.encodeRequest(ByteBufAllocator.DEFAULT, TIMES, 0L, ChattyEchoBinaryCodec
+                    .FLAG_SEQUENCED, payload)));
+
+            run(warmUpScheduler, ChattyEchoProtocol.JSON, jsonRequests, requests);
+            run(warmUpScheduler, ChattyEchoProtocol.BINARY, binaryRequests, requests);
+        } catch (final EchoRejectedException | IOException e) {
+            throw new IllegalStateException(String.format("Cannot generate the payload of the warm up. %s", e.getMessage()), e);
+        } finally {
+            warmUpScheduler.getPayloadCache().clear();
+        }
+
+        for (final EventExecutor eventLoop : eventLoops) {
+            eventLoop.submit(() -> {
+                for (final int size : BUFFER_SIZES) {
+                    ByteBufAllocator.DEFAULT.directBuffer(size).release();
+                    ByteBufAllocator.DEFAULT.heapBuffer(size).release();
+                }
+            }).sync();
+        }
+        log.info("Warmed up with %d requests per protocol in %dms", requests, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void run(final EchoScheduler echoScheduler, final ChattyEchoProtocol protocol, final List<WebSocketFrame> requests, final int count) {
+        final List<ByteBuf> encodedRequests = encode(requests);
+        final EmbeddedChannel channel = new EmbeddedChannel(new ChattyEchoServerInitializer(echoScheduler));
+        try {
+            channel.writeInbound(Unpooled.copiedBuffer(String.format(HANDSHAKE, protocol.getSubprotocol()), CharsetUtil.US_ASCII));
+            if (drain(channel) == 0) {
+                throw new IllegalStateException("WebSocket handshake of the warm up did not complete");
+            }
+            for (int i = 0; i < count; i++) {
+                channel.writeInbound(encodedRequests.get(i % encodedRequests.size()).retainedDuplicate());
+                channel.runPendingTasks();
+                drain(channel);
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+            for (final ByteBuf encodedRequest : encodedRequests) {
+                encodedRequest.release();
+            }
+        }
+    }
+
+    /**
+     * <p>Encodes the requests as a client would send them, masked</p>
+     */
+    private static List<ByteBuf> encode(final List<WebSocketFrame> requests) {
+        final List<ByteBuf> encodedRequests = new ArrayList<>(requests.size());
+        final EmbeddedChannel client = new EmbeddedChannel(new WebSocket08FrameEncoder(true));
+        try {
+            for (final WebSocketFrame request : requests) {
+                client.writeOutbound(request);
+                final ByteBuf encodedRequest = Unpooled.directBuffer();
+                ByteBuf encoded;
+                while ((encoded = client.readOutbound()) != null) {
+                    encodedRequest.writeBytes(encoded);
+                    encoded.release();
+                }
+                encodedRequests.add(encodedRequest);
+            }
+        } finally {
+            client.finishAndReleaseAll();
+        }
+        return encodedRequests;
+    }
+
+    private static int drain(final EmbeddedChannel channel) {
+        int drained = 0;
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(outbound);
+            drained++;
+        }
+        return drained;
+    }
+}
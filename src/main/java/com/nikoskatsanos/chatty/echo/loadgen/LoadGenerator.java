@@ -0,0 +1,191 @@
+package com.nikoskatsanos.chatty.echo.loadgen;
+
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.compression.ClientCompressionHandler;
+import com.nikoskatsanos.chatty.echo.handlers.ChattyEchoClientHandshaker;
+import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Headless load generator mode of {@link com.nikoskatsanos.chatty.echo.ChattyEchoClient}. It opens a number of connections to a <em>Chatty Echo Server</em>
+ * spread across a number of event loops, drives requests on each of them according to a {@link com.nikoskatsanos.chatty.echo.loadgen.LoadPattern} and
+ * reports throughput and round trip/inter-arrival latency percentiles periodically and at the end of the run. The interval reports can also be written to a
+ * CSV file and the interval round trip histograms to an HDR log file</p>
+ *
+ * @author nikkatsa
+ */
+public class LoadGenerator {
+
+    private static final Logger log = LogManager.getFormatterLogger(LoadGenerator.class);
+
+    private static final String CSV_HEADER = "timestamp_ms,elapsed_s,sent,received,sent_per_s,received_per_s,rtt_p50_us,rtt_p90_us,rtt_p99_us,rtt_p999_us," +
+            "rtt_max_us,interarrival_p50_us,interarrival_p99_us,interarrival_max_us";
+
+    private final LoadGeneratorConfig config;
+    private final LoadGeneratorStats stats = new LoadGeneratorStats();
+
+    public LoadGenerator(final LoadGeneratorConfig config) {
+        this.config = config;
+    }
+
+    public void run() throws InterruptedException, FileNotFoundException {
+        log.info("Starting load generator %s", this.config);
+
+        final EventLoopGroup eventLoops = this.config.getTransport().newEventLoopGroup(this.config.getEventLoops(), new NamedThreadFactory(this.config
+                .getTransport() + "-LoadGen"));
+        final PrintStream csv = this.config.getCsvFile() == null ? null : new PrintStream(new File(this.config.getCsvFile()));
+        final HistogramLogWriter hdrLog = this.config.getHdrLogFile() == null ? null : new HistogramLogWriter(new File(this.config.getHdrLogFile()));
+        try {
+            final List<Channel> channels = new ArrayList<>(this.config.getConnections());
+            final List<LoadGeneratorHandler> handlers = new ArrayList<>(this.config.getConnections());
+            this.connect(eventLoops, channels, handlers);
+
+            if (csv != null) {
+                csv.println(CSV_HEADER);
+            }
+            if (hdrLog != null) {
+                hdrLog.outputLogFormatVersion();
+                hdrLog.outputStartTime(System.currentTimeMillis());
+                hdrLog.outputLegend();
+            }
+
+            final long runStartNanos = System.nanoTime();
+            handlers.forEach(h -> h.start(runStartNanos));
+
+            long previousReportNanos = runStartNanos;
+            long previousSent = 0L;
+            long previousReceived = 0L;
+            final long runEndNanos = runStartNanos + this.config.getDurationNanos();
+            while (true) {
+                final long now = System.nanoTime();
+                final long nextReportNanos = Math.min(previousReportNanos + this.config.getReportIntervalNanos(), runEndNanos);
+                if (nextReportNanos > now) {
+                    TimeUnit.NANOSECONDS.sleep(nextReportNanos - now);
+                }
+
+                final long reportNanos = System.nanoTime();
+                final long sent = this.stats.getSent();
+                final long received = this.stats.getReceived();
+                this.stats.sampleInterval();
+                this.report(csv, hdrLog, reportNanos - runStartNanos, reportNanos - previousReportNanos, sent, sent - previousSent, received, received -
+                        previousReceived);
+                previousReportNanos = reportNanos;
+                previousSent = sent;
+                previousReceived = received;
+
+                if (reportNanos >= runEndNanos) {
+                    break;
+                }
+            }
+
+            handlers.forEach(LoadGeneratorHandler::stop);
+            // give the echoes in flight the chance to arrive
+            TimeUnit.MILLISECONDS.sleep(1_000L + TimeUnit.MICROSECONDS.toMillis(this.config.getTimes() * this.config.getDelayMicros()));
+            this.stats.sampleInterval();
+            this.summary(System.nanoTime() - runStartNanos);
+
+            for (final Channel channel : channels) {
+                channel.close().sync();
+            }
+        } finally {
+            if (csv != null) {
+                csv.close();
+            }
+            if (hdrLog != null) {
+                hdrLog.close();
+            }
+            eventLoops.shutdownGracefully();
+        }
+    }
+
+    private void connect(final EventLoopGroup eventLoops, final List<Channel> channels, final List<LoadGeneratorHandler> handlers) throws
+            InterruptedException {
+        final URI chattyEchoServer = URI.create(String.format("ws://%s:%d/echo", this.config.getHost(), this.config.getPort()));
+        final boolean compression = this.config.isCompression();
+        for (int i = 0; i < this.config.getConnections(); i++) {
+            final ChattyEchoClientHandshaker handshaker = new ChattyEchoClientHandshaker(WebSocketClientHandshakerFactory.newHandshaker(chattyEchoServer,
+                    WebSocketVersion.V13, ChattyEchoProtocol.JSON.getSubprotocol(), true, new DefaultHttpHeaders()));
+            final LoadGeneratorHandler handler = new LoadGeneratorHandler(this.config, this.stats);
+
+            final Bootstrap bootstrap = new Bootstrap().group(eventLoops).channel(this.config.getTransport().socketChannelClass()).option(ChannelOption
+                    .TCP_NODELAY, true).handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(final SocketChannel ch) throws Exception {
+                    final ChannelPipeline pipeline = ch.pipeline();
+                    pipeline.addLast(new HttpClientCodec(512, 512, 512));
+                    pipeline.addLast(new HttpObjectAggregator(16_384));
+                    if (compression) {
+                        pipeline.addLast(ClientCompressionHandler.INSTANCE);
+                    }
+                    pipeline.addLast(handshaker);
+                    pipeline.addLast(new WebSocketFrameAggregator(65_536));
+                    pipeline.addLast(handler);
+                }
+            });
+
+            channels.add(bootstrap.connect(chattyEchoServer.getHost(), chattyEchoServer.getPort()).sync().channel());
+            handshaker.awaitHandshakeComplete();
+            handlers.add(handler);
+        }
+        log.info("%d connections established", channels.size());
+    }
+
+    private void report(final PrintStream csv, final HistogramLogWriter hdrLog, final long elapsedNanos, final long intervalNanos, final long sent, final long
+            intervalSent, final long received, final long intervalReceived) {
+        final double intervalSeconds = Math.max(1L, intervalNanos) / 1e9D;
+        final Histogram rtt = this.stats.getIntervalRoundTrip();
+        final Histogram interArrival = this.stats.getIntervalInterArrival();
+        log.info("[%6.1fs] sent=%d (%.0f/s), received=%d (%.0f/s), rtt us p50=%d p90=%d p99=%d p99.9=%d max=%d", elapsedNanos / 1e9D, sent, intervalSent /
+                intervalSeconds, received, intervalReceived / intervalSeconds, rtt.getValueAtPercentile(50.0D), rtt.getValueAtPercentile(90.0D), rtt
+                .getValueAtPercentile(99.0D), rtt.getValueAtPercentile(99.9D), rtt.getMaxValue());
+
+        if (csv != null) {
+            csv.printf("%d,%.3f,%d,%d,%.1f,%.1f,%d,%d,%d,%d,%d,%d,%d,%d%n", System.currentTimeMillis(), elapsedNanos / 1e9D, sent, received, intervalSent /
+                    intervalSeconds, intervalReceived / intervalSeconds, rtt.getValueAtPercentile(50.0D), rtt.getValueAtPercentile(90.0D), rtt
+                    .getValueAtPercentile(99.0D), rtt.getValueAtPercentile(99.9D), rtt.getMaxValue(), interArrival.getValueAtPercentile(50.0D), interArrival
+                    .getValueAtPercentile(99.0D), interArrival.getMaxValue());
+        }
+        if (hdrLog != null) {
+            hdrLog.outputIntervalHistogram(rtt);
+        }
+    }
+
+    private void summary(final long elapsedNanos) {
+        final double seconds = elapsedNanos / 1e9D;
+        final Histogram rtt = this.stats.getTotalRoundTrip();
+        final Histogram interArrival = this.stats.getTotalInterArrival();
+        log.info("==============================");
+        log.info("Sent %d requests (%.0f/s), received %d echoes (%.0f/s) in %.1fs", this.stats.getSent(), this.stats.getSent() / seconds, this.stats
+                .getReceived(), this.stats.getReceived() / seconds, seconds);
+        log.info("Round trip (us):    p50=%d p90=%d p99=%d p99.9=%d p99.99=%d max=%d mean=%.1f", rtt.getValueAtPercentile(50.0D), rtt.getValueAtPercentile
+                (90.0D), rtt.getValueAtPercentile(99.0D), rtt.getValueAtPercentile(99.9D), rtt.getValueAtPercentile(99.99D), rtt.getMaxValue(), rtt.getMean());
+        log.info("Inter-arrival (us): p50=%d p90=%d p99=%d p99.9=%d p99.99=%d max=%d mean=%.1f", interArrival.getValueAtPercentile(50.0D), interArrival
+                .getValueAtPercentile(90.0D), interArrival.getValueAtPercentile(99.0D), interArrival.getValueAtPercentile(99.9D), interArrival
+                .getValueAtPercentile(99.99D), interArrival.getMaxValue(), interArrival.getMean());
+        log.info("==============================");
+    }
+}
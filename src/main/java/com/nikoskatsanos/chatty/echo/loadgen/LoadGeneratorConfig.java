@@ -0,0 +1,179 @@
+package com.nikoskatsanos.chatty.echo.loadgen;
+
+import com.google.common.base.MoreObjects;
+import com.nikoskatsanos.chatty.echo.transport.Transport;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Settings of a {@link com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator} run, read from the command line of {@link
+ * com.nikoskatsanos.chatty.echo.ChattyEchoClient}. Rates are per connection</p>
+ *
+ * @author nikkatsa
+ */
+public class LoadGeneratorConfig {
+
+    private final String host;
+    private final int port;
+    private final Transport transport;
+    private final boolean compression;
+    private final int connections;
+    private final int eventLoops;
+    private final LoadPattern pattern;
+    private final double rate;
+    private final double rampRate;
+    private final long durationNanos;
+    private final int times;
+    private final long delayMicros;
+    private final int msgSize;
+    private final long reportIntervalNanos;
+    private final String csvFile;
+    private final String hdrLogFile;
+
+    public LoadGeneratorConfig(final String host, final int port, final Transport transport, final boolean compression, final int connections, final int
+            eventLoops, final LoadPattern pattern, final double rate, final double rampRate, final long durationSeconds, final int times, final long
+            delayMicros, final int msgSize, final long reportIntervalSeconds, final String csvFile, final String hdrLogFile) {
+        if (connections <= 0 || eventLoops <= 0) {
+            throw new IllegalArgumentException(String.format("Connections and event loops must be positive, were %d and %d", connections, eventLoops));
+        }
+        if (pattern != LoadPattern.CLOSED_LOOP && rate <= 0.0D) {
+            throw new IllegalArgumentException(String.format("Rate must be positive for %s, was %f", pattern, rate));
+        }
+        // a new request replaces the connection's burst in flight, whose missing echoes would go unnoticed
+        if (pattern != LoadPattern.CLOSED_LOOP && times > 1) {
+            throw new IllegalArgumentException(String.format("%s sends one echo per request, times was %d; use %s for bursts", pattern, times, LoadPattern
+                    .CLOSED_LOOP));
+        }
+        this.host = host;
+        this.port = port;
+        this.transport = transport;
+        this.compression = compression;
+        this.connections = connections;
+        this.eventLoops = eventLoops;
+        this.pattern = pattern;
+        this.rate = rate;
+        this.rampRate = rampRate;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.times = Math.max(1, times);
+        this.delayMicros = Math.max(0L, delayMicros);
+        this.msgSize = msgSize;
+        this.reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+        this.csvFile = csvFile;
+        this.hdrLogFile = hdrLogFile;
+    }
+
+    /**
+     * <p>Adds the load generator's options to the given command line {@link org.apache.commons.cli.Options}</p>
+     */
+    public static Options addCliOptions(final Options options) {
+        options.addOption(Option.builder().longOpt("bench").hasArg(false).desc("Runs headless as a load generator instead of interactively").build());
+        options.addOption(Option.builder().longOpt("connections").argName("connections").hasArg(true).desc("Load generator connections (default 1)").build());
+        options.addOption(Option.builder().longOpt("loops").argName("loops").hasArg(true).desc("Load generator event loops (default 1)").build());
+        options.addOption(Option.builder().longOpt("pattern").argName("pattern").hasArg(true).desc(String.format("Load pattern, one of %s (default %s)",
+                Arrays.toString(LoadPattern.values()), LoadPattern.FIXED_RATE)).build());
+        options.addOption(Option.builder().longOpt("rate").argName("requests/s").hasArg(true).desc("Requests per second per connection (default 100)").build());
+        options.addOption(Option.builder().longOpt("ramp-rate").argName("requests/s").hasArg(true).desc("Target requests per second per connection of a RAMP " +
+                "(default 10 x rate)").build());
+        options.addOption(Option.builder().longOpt("duration").argName("seconds").hasArg(true).desc("Duration of the run (default 30)").build());
+        options.addOption(Option.builder().longOpt("times").argName("times").hasArg(true).desc("Echoes per request, CLOSED_LOOP only (default 1)").build());
+        options.addOption(Option.builder().longOpt("delay").argName("delay").hasArg(true).desc("Delay in milliseconds between echoes (default 0)").build());
+        options.addOption(Option.builder().longOpt("delay-micros").argName("micros").hasArg(true).desc("Delay in microseconds between echoes, instead of " +
+                "--delay").build());
+        options.addOption(Option.builder().longOpt("msg-size").argName("bytes").hasArg(true).desc("Size of the echoed message (default 32)").build());
+        options.addOption(Option.builder().longOpt("report-interval").argName("seconds").hasArg(true).desc("Interval of the progress report (default 1)")
+                .build());
+        options.addOption(Option.builder().longOpt("csv").argName("file").hasArg(true).desc("Writes the interval reports to a CSV file").build());
+        options.addOption(Option.builder().longOpt("hdr-log").argName("file").hasArg(true).desc("Writes the interval latency histograms to an HDR log file")
+                .build());
+        return options;
+    }
+
+    public static LoadGeneratorConfig fromCli(final CommandLine cli, final String host, final int port, final Transport transport, final boolean
+            compression) {
+        final double rate = Double.parseDouble(cli.getOptionValue("rate", "100"));
+        final long delayMicros = cli.hasOption("delay-micros") ? Long.parseLong(cli.getOptionValue("delay-micros")) : TimeUnit.MILLISECONDS.toMicros(Long
+                .parseLong(cli.getOptionValue("delay", "0")));
+        return new LoadGeneratorConfig(host, port, transport, compression, Integer.parseInt(cli.getOptionValue("connections", "1")), Integer.parseInt(cli
+                .getOptionValue("loops", "1")), LoadPattern.valueOf(cli.getOptionValue("pattern", LoadPattern.FIXED_RATE.name()).toUpperCase()), rate, Double
+                .parseDouble(cli.getOptionValue("ramp-rate", String.valueOf(rate * 10.0D))), Long.parseLong(cli.getOptionValue("duration", "30")), Integer
+                .parseInt(cli.getOptionValue("times", "1")), delayMicros, Integer.parseInt(cli.getOptionValue("msg-size", "32")), Long.parseLong(cli
+                .getOptionValue("report-interval", "1")), cli.getOptionValue("csv"), cli.getOptionValue("hdr-log"));
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public Transport getTransport() {
+        return this.transport;
+    }
+
+    public boolean isCompression() {
+        return this.compression;
+    }
+
+    public int getConnections() {
+        return this.connections;
+    }
+
+    public int getEventLoops() {
+        return this.eventLoops;
+    }
+
+    public LoadPattern getPattern() {
+        return this.pattern;
+    }
+
+    public double getRate() {
+        return this.rate;
+    }
+
+    public double getRampRate() {
+        return this.rampRate;
+    }
+
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    public int getTimes() {
+        return this.times;
+    }
+
+    public long getDelayMicros() {
+        return this.delayMicros;
+    }
+
+    public int getMsgSize() {
+        return this.msgSize;
+    }
+
+    public long getReportIntervalNanos() {
+        return this.reportIntervalNanos;
+    }
+
+    public String getCsvFile() {
+        return this.csvFile;
+    }
+
+    public String getHdrLogFile() {
+        return this.hdrLogFile;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("host", this.host).add("port", this.port).add("transport", this.transport).add
+                ("compression", this.compression).add("connections", this.connections).add("eventLoops", this.eventLoops).add("pattern", this.pattern).add
+                ("rate", this.rate).add("rampRate", this.pattern == LoadPattern.RAMP ? this.rampRate : null).add("durationSeconds", TimeUnit.NANOSECONDS
+                .toSeconds(this.durationNanos)).add("times", this.times).add("delayMicros", this.delayMicros).add("msgSize", this.msgSize).add("csvFile", this
+                .csvFile).add("hdrLogFile", this.hdrLogFile).toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.nikoskatsanos.chatty.echo.loadgen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Drives the requests of a single {@link com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator} connection and measures its echoes. Each request asks for
+ * sequenced echoes and carries its intended send time, relative to the start of the run, at the start of its message, hence the latency of an echo is measured
+ * from when its request was meant to be sent, plus its scheduled offset within the burst, to when it was received. All the state is confined to the channel's
+ * event loop</p>
+ *
+ * @author nikkatsa
+ */
+public class LoadGeneratorHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+
+    private static final Logger log = LogManager.getFormatterLogger(LoadGeneratorHandler.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final LoadGeneratorConfig config;
+    private final LoadGeneratorStats stats;
+    private final String padding;
+    private final long delayNanos;
+    private final Runnable tick = this::tick;
+
+    private ChannelHandlerContext ctx;
+    private long runStartNanos;
+    private long sent;
+    private long lastArrivalNanos = -1L;
+    /** Requests are due but the channel is not writable; sending resumes once it is */
+    private boolean awaitingWritability;
+    private volatile boolean running;
+
+    public LoadGeneratorHandler(final LoadGeneratorConfig config, final LoadGeneratorStats stats) {
+        this.config = config;
+        this.stats = stats;
+        final char[] padding = new char[Math.max(0, config.getMsgSize() - 20)];
+        Arrays.fill(padding, 'x');
+        this.padding = new String(padding);
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(config.getDelayMicros());
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    /**
+     * <p>Starts sending requests. Can be called from any thread</p>
+     *
+     * @param runStartNanos {@link System#nanoTime()} at the start of the run, common to all the connections
+     */
+    public void start(final long runStartNanos) {
+        this.running = true;
+        this.ctx.executor().execute(() -> {
+            this.runStartNanos = runStartNanos;
+            if (this.config.getPattern() == LoadPattern.CLOSED_LOOP) {
+                this.send(System.nanoTime());
+                this.ctx.flush();
+            } else {
+                this.tick();
+            }
+        });
+    }
+
+    /**
+     * <p>Stops sending requests. Echoes still in flight are measured. Can be called from any thread</p>
+     */
+    public void stop() {
+        this.running = false;
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final TextWebSocketFrame frame) throws Exception {
+        final long now = System.nanoTime();
+        long seq = 0L;
+        long intendedOffsetNanos = -1L;
+        try (final JsonParser parser = JSON_FACTORY.createParser((InputStream) new ByteBufInputStream(frame.content()))) {
+            while (parser.nextToken() != null) {
+                if (parser.getCurrentToken() != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("seq".equals(field)) {
+                    seq = parser.getLongValue();
+                } else if ("msg".equals(field)) {
+                    intendedOffsetNanos = parseOffset(parser.getText());
+                }
+            }
+        } catch (final IOException e) {
+            log.warn("Cannot parse echo: %s", e.getMessage());
+            return;
+        }
+        if (intendedOffsetNanos < 0L) {
+            return;
+        }
+
+        // the server emits echo n one delay after echo n - 1, the first one a delay after the request
+        final long expectedNanos = this.runStartNanos + intendedOffsetNanos + (seq + 1L) * this.delayNanos;
+        this.stats.onReceived(now - expectedNanos, this.lastArrivalNanos < 0L ? -1L : now - this.lastArrivalNanos);
+        this.lastArrivalNanos = now;
+
+        if (this.config.getPattern() == LoadPattern.CLOSED_LOOP && seq == this.config.getTimes() - 1 && this.isRunning(now)) {
+            this.send(now);
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        if (this.awaitingWritability && ctx.channel().isWritable()) {
+            this.awaitingWritability = false;
+            this.tick();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    private void tick() {
+        final long now = System.nanoTime();
+        if (!this.isRunning(now)) {
+            return;
+        }
+
+        final long elapsed = now - this.runStartNanos;
+        final long due = this.config.getPattern().countAt(elapsed, this.config.getRate(), this.config.getRampRate(), this.config.getDurationNanos());
+        boolean wrote = false;
+        while (this.sent < due && this.ctx.channel().isWritable()) {
+            this.send(this.runStartNanos + this.intendedNanos(this.sent));
+            wrote = true;
+        }
+        if (wrote) {
+            this.ctx.flush();
+        }
+        if (this.sent < due) {
+            // the requests behind are sent, measured from their intended times, once the channel drains
+            if (this.ctx.channel().isWritable()) {
+                this.ctx.executor().execute(this.tick);
+            } else {
+                this.awaitingWritability = true;
+            }
+            return;
+        }
+
+        final long nextOffset = this.intendedNanos(this.sent);
+        if (nextOffset >= this.config.getDurationNanos()) {
+            return;
+        }
+        this.ctx.executor().schedule(this.tick, Math.max(0L, this.runStartNanos + nextOffset - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private long intendedNanos(final long n) {
+        return this.config.getPattern().intendedNanos(n, this.config.getRate(), this.config.getRampRate(), this.config.getDurationNanos());
+    }
+
+    private boolean isRunning(final long now) {
+        return this.running && now - this.runStartNanos < this.config.getDurationNanos() && this.ctx.channel().isActive();
+    }
+
+    private void send(final long intendedNanos) {
+        final String request = "{\"msg\":\"" + (intendedNanos - this.runStartNanos) + ':' + this.padding + "\",\"times\":" + this.config.getTimes() +
+                ",\"delayMicros\":" + this.config.getDelayMicros() + ",\"sequenced\":true}";
+        final ByteBuf content = this.ctx.alloc().buffer(request.length());
+        content.writeCharSequence(request, CharsetUtil.UTF_8);
+        this.ctx.write(new TextWebSocketFrame(content), this.ctx.voidPromise());
+        this.sent++;
+        this.stats.onSent();
+    }
+
+    /**
+     * @return The offset at the start of the message, or {@code -1} if there is none
+     */
+    private static long parseOffset(final String msg) {
+        long value = 0L;
+        for (int i = 0; i < msg.length(); i++) {
+            final char c = msg.charAt(i);
+            if (c == ':') {
+                return i == 0 ? -1L : value;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10L + (c - '0');
+            } else {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nikoskatsanos.chatty.echo.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Measurements of a {@link com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator} run, shared by all its connections. Latencies are recorded in
+ * microseconds into {@link org.HdrHistogram.Recorder}s, which are written to from the event loops and read from the reporting thread</p>
+ *
+ * @author nikkatsa
+ */
+public class LoadGeneratorStats {
+
+    private final Recorder roundTrip = new Recorder(3);
+    private final Recorder interArrival = new Recorder(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    private final Histogram totalRoundTrip = new Histogram(3);
+    private final Histogram totalInterArrival = new Histogram(3);
+    private Histogram intervalRoundTrip;
+    private Histogram intervalInterArrival;
+
+    void onSent() {
+        this.sent.increment();
+    }
+
+    void onReceived(final long roundTripNanos, final long interArrivalNanos) {
+        this.received.increment();
+        this.roundTrip.recordValue(Math.max(0L, TimeUnit.NANOSECONDS.toMicros(roundTripNanos)));
+        if (interArrivalNanos >= 0L) {
+            this.interArrival.recordValue(TimeUnit.NANOSECONDS.toMicros(interArrivalNanos));
+        }
+    }
+
+    public long getSent() {
+        return this.sent.sum();
+    }
+
+    public long getReceived() {
+        return this.received.sum();
+    }
+
+    /**
+     * <p>Takes the histograms recorded since the previous call and adds them to the totals. Only to be called from the reporting thread</p>
+     */
+    void sampleInterval() {
+        this.intervalRoundTrip = this.roundTrip.getIntervalHistogram(this.intervalRoundTrip);
+        this.intervalInterArrival = this.interArrival.getIntervalHistogram(this.intervalInterArrival);
+        this.totalRoundTrip.add(this.intervalRoundTrip);
+        this.totalInterArrival.add(this.intervalInterArrival);
+    }
+
+    Histogram getIntervalRoundTrip() {
+        return this.intervalRoundTrip;
+    }
+
+    Histogram getIntervalInterArrival() {
+        return this.intervalInterArrival;
+    }
+
+    Histogram getTotalRoundTrip() {
+        return this.totalRoundTrip;
+    }
+
+    Histogram getTotalInterArrival() {
+        return this.totalInterArrival;
+    }
+}
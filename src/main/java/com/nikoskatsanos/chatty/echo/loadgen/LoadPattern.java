@@ -0,0 +1,65 @@
+package com.nikoskatsanos.chatty.echo.loadgen;
+
+/**
+ * <p>The request patterns of the {@link com.nikoskatsanos.chatty.echo.loadgen.LoadGenerator}. Open loop patterns send requests at their intended times,
+ * regardless of the responses, and measure latency from those intended times, hence they are not subject to coordinated omission</p>
+ *
+ * @author nikkatsa
+ */
+public enum LoadPattern {
+    /**
+     * <p>Open loop, each connection sends requests at a constant rate</p>
+     */
+    FIXED_RATE,
+    /**
+     * <p>Open loop, the rate of each connection increases linearly from the initial to the target rate over the duration of the run</p>
+     */
+    RAMP,
+    /**
+     * <p>Closed loop, each connection sends its next request as soon as it has received all the echoes of the previous one</p>
+     */
+    CLOSED_LOOP;
+
+    /**
+     * <p>Number of requests a connection should have sent {@code elapsedNanos} into the run</p>
+     *
+     * @param rate     Initial rate, in requests per second
+     * @param rampRate Target rate of {@link #RAMP}, in requests per second
+     */
+    public long countAt(final long elapsedNanos, final double rate, final double rampRate, final long durationNanos) {
+        final double t = elapsedNanos / 1e9D;
+        switch (this) {
+            case FIXED_RATE:
+                return (long) (rate * t);
+            case RAMP:
+                final double slope = (rampRate - rate) / (durationNanos / 1e9D);
+                return (long) (rate * t + slope * t * t / 2.0D);
+            default:
+                throw new UnsupportedOperationException(String.format("%s is not an open loop pattern", this));
+        }
+    }
+
+    /**
+     * <p>Intended time of the {@code n}th (zero based) request of a connection, in nanoseconds since the start of the run. The inverse of {@link #countAt}</p>
+     */
+    public long intendedNanos(final long n, final double rate, final double rampRate, final long durationNanos) {
+        final double k = n + 1;
+        switch (this) {
+            case FIXED_RATE:
+                return (long) (k / rate * 1e9D);
+            case RAMP:
+                final double slope = (rampRate - rate) / (durationNanos / 1e9D);
+                if (slope == 0.0D) {
+                    return (long) (k / rate * 1e9D);
+                }
+                // solves rate * t + slope * t^2 / 2 = k, a ramp down may never get there
+                final double discriminant = rate * rate + 2.0D * slope * k;
+                if (discriminant < 0.0D) {
+                    return Long.MAX_VALUE;
+                }
+                return (long) ((-rate + Math.sqrt(discriminant)) / slope * 1e9D);
+            default:
+                throw new UnsupportedOperationException(String.format("%s is not an open loop pattern", this));
+        }
+    }
+}
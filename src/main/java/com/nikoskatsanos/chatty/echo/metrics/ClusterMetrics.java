@@ -0,0 +1,35 @@
+package com.nikoskatsanos.chatty.echo.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>The latest {@link com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot} received from each of the other nodes of the cluster. Snapshots of nodes
+ * that have not reported for a while are dropped when read. Thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class ClusterMetrics {
+
+    private final long expiryMillis;
+    private final ConcurrentMap<String, EchoMetricsSnapshot> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * @param expiryMillis Snapshots older than this are considered stale
+     */
+    public ClusterMetrics(final long expiryMillis) {
+        this.expiryMillis = expiryMillis;
+    }
+
+    public void update(final EchoMetricsSnapshot snapshot) {
+        this.nodes.merge(snapshot.getNodeId(), snapshot, (current, latest) -> latest.getTimestampMillis() >= current.getTimestampMillis() ? latest :
+                current);
+    }
+
+    public Collection<EchoMetricsSnapshot> nodes() {
+        final long expiredBefore = System.currentTimeMillis() - this.expiryMillis;
+        this.nodes.values().removeIf(snapshot -> snapshot.getTimestampMillis() < expiredBefore);
+        return this.nodes.values();
+    }
+}
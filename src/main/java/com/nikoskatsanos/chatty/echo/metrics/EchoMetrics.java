@@ -0,0 +1,290 @@
+package com.nikoskatsanos.chatty.echo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Server wide counters of the echo path. They are updated from every event loop, hence they are striped {@link java.util.concurrent.atomic.LongAdder}s
+ * which do not contend on updates; summing them up is only done when the metrics are read</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoMetrics {
+
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestErrors = new LongAdder();
+    private final LongAdder requestsRejected = new LongAdder();
+    private final LongAdder scenarios = new LongAdder();
+    private final LongAdder scenarioSteps = new LongAdder();
+    private final LongAdder activeScenarios = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder framesFannedOut = new LongAdder();
+    private final LongAdder bytesFannedOut = new LongAdder();
+    private final LongAdder fanOutDropped = new LongAdder();
+    private final LongAdder busDropped = new LongAdder();
+    private final LongAdder pendingEchoes = new LongAdder();
+    private final LongAdder droppedEchoes = new LongAdder();
+    private final LongAdder coalescedEchoes = new LongAdder();
+    private final LongAdder cancelledEchoes = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+    private final LongAdder deflatedFrames = new LongAdder();
+    private final LongAdder deflateInputBytes = new LongAdder();
+    private final LongAdder deflateOutputBytes = new LongAdder();
+    private final LongAdder deflateNanos = new LongAdder();
+    private final LongAdder deflateBypassed = new LongAdder();
+    private final LongAdder deflateCacheHits = new LongAdder();
+    private final LongAdder deflateSavedBytes = new LongAdder();
+
+    public void onConnectionOpened() {
+        this.connectionsOpened.increment();
+    }
+
+    public void onConnectionClosed() {
+        this.connectionsClosed.increment();
+    }
+
+    public void onRequest() {
+        this.requests.increment();
+    }
+
+    public void onRequestError() {
+        this.requestErrors.increment();
+    }
+
+    public void onRejected() {
+        this.requestsRejected.increment();
+    }
+
+    public void onScenarioStarted() {
+        this.scenarios.increment();
+        this.activeScenarios.increment();
+    }
+
+    /**
+     * <p>Scenario that completed, or got cancelled by a new request, a stop request or its connection closing</p>
+     */
+    public void onScenarioEnded() {
+        this.activeScenarios.decrement();
+    }
+
+    /**
+     * <p>Step of a scenario, either a burst or a pause, that started</p>
+     */
+    public void onScenarioStep() {
+        this.scenarioSteps.increment();
+    }
+
+    /**
+     * <p>Emission deferred because of a byte rate limit</p>
+     */
+    public void onThrottled() {
+        this.throttles.increment();
+    }
+
+    /**
+     * <p>Echoes of a burst that got scheduled</p>
+     */
+    public void onScheduled(final int echoes) {
+        this.pendingEchoes.add(echoes);
+    }
+
+    public void onSent(final int frames, final long bytes) {
+        this.framesSent.add(frames);
+        this.bytesSent.add(bytes);
+        this.pendingEchoes.add(-frames);
+    }
+
+    /**
+     * <p>Broadcast frames written to subscribers, and frames missed by subscribers which were not writable</p>
+     */
+    public void onFannedOut(final int frames, final long bytes, final int dropped) {
+        this.framesFannedOut.add(frames);
+        this.bytesFannedOut.add(bytes);
+        this.fanOutDropped.add(dropped);
+    }
+
+    /**
+     * <p>Bus messages dropped because the bus could not keep up, counting a message once for every peer which missed it</p>
+     */
+    public void onBusDropped(final int messages) {
+        this.busDropped.add(messages);
+    }
+
+    public void onDropped(final int echoes) {
+        this.droppedEchoes.add(echoes);
+        this.pendingEchoes.add(-echoes);
+    }
+
+    public void onCoalesced(final int echoes) {
+        this.coalescedEchoes.add(echoes);
+        this.pendingEchoes.add(-echoes);
+    }
+
+    /**
+     * <p>Echoes of a burst which got cancelled, either replaced by a new request or because its connection closed, before they were sent</p>
+     */
+    public void onCancelled(final int echoes) {
+        this.cancelledEchoes.add(echoes);
+        this.pendingEchoes.add(-echoes);
+    }
+
+    public void onStalled() {
+        this.stalls.increment();
+    }
+
+    public void onSlowConsumerDisconnected() {
+        this.slowConsumerDisconnects.increment();
+    }
+
+    /**
+     * <p>Frame payload deflated, and the time it took</p>
+     */
+    public void onDeflated(final int inputBytes, final int outputBytes, final long nanos) {
+        this.deflatedFrames.increment();
+        this.deflateInputBytes.add(inputBytes);
+        this.deflateOutputBytes.add(outputBytes);
+        this.deflateNanos.add(nanos);
+    }
+
+    /**
+     * <p>Message sent uncompressed on a connection with compression, because it was below the compression threshold</p>
+     */
+    public void onDeflateBypassed() {
+        this.deflateBypassed.increment();
+    }
+
+    /**
+     * <p>Echo sent as the frames of a message deflated ahead of time, rather than deflated again</p>
+     */
+    public void onDeflateCacheHit(final int savedBytes) {
+        this.deflateCacheHits.increment();
+        this.deflateSavedBytes.add(savedBytes);
+    }
+
+    /**
+     * <p>Bytes a deflated frame saved, compared to its uncompressed payload</p>
+     */
+    public void onDeflateSaved(final int savedBytes) {
+        this.deflateSavedBytes.add(savedBytes);
+    }
+
+    public long getConnectionsOpened() {
+        return this.connectionsOpened.sum();
+    }
+
+    public long getConnectionsClosed() {
+        return this.connectionsClosed.sum();
+    }
+
+    public long getActiveConnections() {
+        return this.getConnectionsOpened() - this.getConnectionsClosed();
+    }
+
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    public long getRequestErrors() {
+        return this.requestErrors.sum();
+    }
+
+    public long getRequestsRejected() {
+        return this.requestsRejected.sum();
+    }
+
+    public long getScenarios() {
+        return this.scenarios.sum();
+    }
+
+    public long getScenarioSteps() {
+        return this.scenarioSteps.sum();
+    }
+
+    public long getActiveScenarios() {
+        return this.activeScenarios.sum();
+    }
+
+    public long getThrottles() {
+        return this.throttles.sum();
+    }
+
+    public long getFramesSent() {
+        return this.framesSent.sum();
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent.sum();
+    }
+
+    public long getFramesFannedOut() {
+        return this.framesFannedOut.sum();
+    }
+
+    public long getBytesFannedOut() {
+        return this.bytesFannedOut.sum();
+    }
+
+    public long getFanOutDropped() {
+        return this.fanOutDropped.sum();
+    }
+
+    public long getBusDropped() {
+        return this.busDropped.sum();
+    }
+
+    public long getPendingEchoes() {
+        return this.pendingEchoes.sum();
+    }
+
+    public long getDroppedEchoes() {
+        return this.droppedEchoes.sum();
+    }
+
+    public long getCoalescedEchoes() {
+        return this.coalescedEchoes.sum();
+    }
+
+    public long getCancelledEchoes() {
+        return this.cancelledEchoes.sum();
+    }
+
+    public long getStalls() {
+        return this.stalls.sum();
+    }
+
+    public long getSlowConsumerDisconnects() {
+        return this.slowConsumerDisconnects.sum();
+    }
+
+    public long getDeflatedFrames() {
+        return this.deflatedFrames.sum();
+    }
+
+    public long getDeflateInputBytes() {
+        return this.deflateInputBytes.sum();
+    }
+
+    public long getDeflateOutputBytes() {
+        return this.deflateOutputBytes.sum();
+    }
+
+    public long getDeflateNanos() {
+        return this.deflateNanos.sum();
+    }
+
+    public long getDeflateBypassed() {
+        return this.deflateBypassed.sum();
+    }
+
+    public long getDeflateCacheHits() {
+        return this.deflateCacheHits.sum();
+    }
+
+    public long getDeflateSavedBytes() {
+        return this.deflateSavedBytes.sum();
+    }
+}
@@ -0,0 +1,72 @@
+package com.nikoskatsanos.chatty.echo.metrics;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>Point in time copy of a node's {@link com.nikoskatsanos.chatty.echo.metrics.EchoMetrics}, exchanged between the nodes of a cluster over the {@link
+ * com.nikoskatsanos.chatty.echo.bus.EchoBus}. The values are carried as an array of longs, in the order of the index constants, so that the wire
+ * format of the bus does not need to know them</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoMetricsSnapshot {
+
+    public static final int CONNECTIONS = 0;
+    public static final int REQUESTS = 1;
+    public static final int REQUESTS_REJECTED = 2;
+    public static final int FRAMES_SENT = 3;
+    public static final int BYTES_SENT = 4;
+    public static final int BROADCAST_FRAMES_SENT = 5;
+    public static final int PENDING_ECHOES = 6;
+    public static final int DROPPED_ECHOES = 7;
+    public static final int VALUES = 8;
+
+    private final String nodeId;
+    private final long timestampMillis;
+    private final long[] values;
+
+    public EchoMetricsSnapshot(final String nodeId, final long timestampMillis, final long[] values) {
+        this.nodeId = nodeId;
+        this.timestampMillis = timestampMillis;
+        this.values = values;
+    }
+
+    public static EchoMetricsSnapshot of(final String nodeId, final EchoMetrics metrics) {
+        final long[] values = new long[VALUES];
+        values[CONNECTIONS] = metrics.getActiveConnections();
+        values[REQUESTS] = metrics.getRequests();
+        values[REQUESTS_REJECTED] = metrics.getRequestsRejected();
+        values[FRAMES_SENT] = metrics.getFramesSent();
+        values[BYTES_SENT] = metrics.getBytesSent();
+        values[BROADCAST_FRAMES_SENT] = metrics.getFramesFannedOut();
+        values[PENDING_ECHOES] = metrics.getPendingEchoes();
+        values[DROPPED_ECHOES] = metrics.getDroppedEchoes() + metrics.getCoalescedEchoes() + metrics.getFanOutDropped();
+        return new EchoMetricsSnapshot(nodeId, System.currentTimeMillis(), values);
+    }
+
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    public long getTimestampMillis() {
+        return this.timestampMillis;
+    }
+
+    /**
+     * @return The value at the given index, {@code 0} if the snapshot came from a node which does not know it
+     */
+    public long get(final int index) {
+        return index < this.values.length ? this.values[index] : 0L;
+    }
+
+    public long[] values() {
+        return this.values;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("nodeId", this.nodeId).add("timestampMillis", this.timestampMillis).add("connections", this.get
+                (CONNECTIONS)).add("requests", this.get(REQUESTS)).add("framesSent", this.get(FRAMES_SENT)).add("broadcastFramesSent", this.get
+                (BROADCAST_FRAMES_SENT)).toString();
+    }
+}
@@ -0,0 +1,191 @@
+package com.nikoskatsanos.chatty.echo.metrics;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoConnectionStats;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.payload.PayloadCache;
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Writes the metrics of an {@link com.nikoskatsanos.chatty.echo.engine.EchoScheduler} in the Prometheus text exposition format (version 0.0.4).</p>
+ * <p>Per connection series, labelled by the remote address, are only written if asked for, since their number grows with the number of connections</p>
+ *
+ * @author nikkatsa
+ */
+public final class PrometheusExposition {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5D, 0.9D, 0.99D, 0.999D, 1.0D};
+
+    private PrometheusExposition() {
+    }
+
+    public static String write(final EchoScheduler echoScheduler, final boolean perConnection) {
+        final StringBuilder sb = new StringBuilder(4_096);
+        final EchoMetrics metrics = echoScheduler.getMetrics();
+
+        gauge(sb, "chatty_echo_connections", "Open WebSocket connections", metrics.getActiveConnections());
+        counter(sb, "chatty_echo_connections_opened_total", "Connections opened since startup", metrics.getConnectionsOpened());
+        counter(sb, "chatty_echo_requests_total", "Echo requests received", metrics.getRequests());
+        counter(sb, "chatty_echo_request_errors_total", "Echo requests which could not be handled", metrics.getRequestErrors());
+        counter(sb, "chatty_echo_requests_rejected_total", "Echo requests rejected because of the echo limits", metrics.getRequestsRejected());
+        counter(sb, "chatty_echo_scenarios_total", "Scenario requests started", metrics.getScenarios());
+        gauge(sb, "chatty_echo_active_scenarios", "Scenarios running", metrics.getActiveScenarios());
+        counter(sb, "chatty_echo_scenario_steps_total", "Scenario steps, bursts and pauses, started", metrics.getScenarioSteps());
+        counter(sb, "chatty_echo_throttles_total", "Times echo emission was deferred because of a byte rate limit", metrics.getThrottles());
+        counter(sb, "chatty_echo_frames_sent_total", "Echo frames written", metrics.getFramesSent());
+        counter(sb, "chatty_echo_bytes_sent_total", "Echo payload bytes written", metrics.getBytesSent());
+        gauge(sb, "chatty_echo_topics", "Topics with subscribers", echoScheduler.getTopics().size());
+        counter(sb, "chatty_echo_broadcast_frames_sent_total", "Broadcast frames written to topic subscribers", metrics.getFramesFannedOut());
+        counter(sb, "chatty_echo_broadcast_bytes_sent_total", "Broadcast payload bytes written to topic subscribers", metrics.getBytesFannedOut());
+        counter(sb, "chatty_echo_broadcast_frames_dropped_total", "Broadcast frames missed by subscribers which were not writable", metrics
+                .getFanOutDropped());
+        counter(sb, "chatty_echo_bus_messages_dropped_total", "Bus messages dropped because the bus or a peer could not keep up", metrics.getBusDropped());
+        gauge(sb, "chatty_echo_pending_echoes", "Echoes scheduled but not sent yet", metrics.getPendingEchoes());
+        counter(sb, "chatty_echo_dropped_echoes_total", "Echoes dropped because the connection could not keep up", metrics.getDroppedEchoes());
+        counter(sb, "chatty_echo_coalesced_echoes_total", "Echoes coalesced because the connection could not keep up", metrics.getCoalescedEchoes());
+        counter(sb, "chatty_echo_cancelled_echoes_total", "Echoes cancelled by a new request or by the connection closing", metrics.getCancelledEchoes());
+        counter(sb, "chatty_echo_stalls_total", "Times echo emission paused because a connection was not writable", metrics.getStalls());
+        counter(sb, "chatty_echo_slow_consumer_disconnects_total", "Connections closed because they could not keep up", metrics
+                .getSlowConsumerDisconnects());
+        counter(sb, "chatty_echo_deflate_frames_total", "Frames deflated by permessage-deflate", metrics.getDeflatedFrames());
+        counter(sb, "chatty_echo_deflate_input_bytes_total", "Payload bytes deflated", metrics.getDeflateInputBytes());
+        counter(sb, "chatty_echo_deflate_output_bytes_total", "Payload bytes deflating produced", metrics.getDeflateOutputBytes());
+        counter(sb, "chatty_echo_deflate_microseconds_total", "Time the event loops spent deflating", metrics.getDeflateNanos() / 1_000L);
+        counter(sb, "chatty_echo_deflate_bypassed_total", "Messages sent uncompressed because they were below the compression threshold", metrics
+                .getDeflateBypassed());
+        counter(sb, "chatty_echo_deflate_cache_hits_total", "Echoes sent as frames deflated once per burst rather than deflated again", metrics
+                .getDeflateCacheHits());
+        counter(sb, "chatty_echo_deflate_saved_bytes_total", "Bytes compression saved on the frames sent", metrics.getDeflateSavedBytes());
+
+        long queuedBytes = 0L;
+        for (final Channel channel : echoScheduler.getConnections()) {
+            queuedBytes += queuedBytes(channel);
+        }
+        gauge(sb, "chatty_echo_queued_bytes", "Bytes written but not flushed to the sockets yet", queuedBytes);
+
+        final Histogram lag = echoScheduler.getEmissionLagMonitor().totalHistogram();
+        header(sb, "chatty_echo_emission_lag_microseconds", "How late echoes were emitted compared to their schedule", "summary");
+        for (final double quantile : QUANTILES) {
+            sb.append("chatty_echo_emission_lag_microseconds{quantile=\"").append(quantile).append("\"} ").append(lag.getTotalCount() == 0L ? 0L : lag
+                    .getValueAtPercentile(quantile * 100.0D)).append('\n');
+        }
+        sb.append("chatty_echo_emission_lag_microseconds_sum ").append((long) (lag.getMean() * lag.getTotalCount())).append('\n');
+        sb.append("chatty_echo_emission_lag_microseconds_count ").append(lag.getTotalCount()).append('\n');
+
+        final PayloadCache payloadCache = echoScheduler.getPayloadCache();
+        gauge(sb, "chatty_echo_payload_cache_bytes", "Off-heap bytes of the cached payloads", payloadCache.getCachedBytes());
+        gauge(sb, "chatty_echo_payload_cache_entries", "Cached payloads", payloadCache.size());
+
+        if (echoScheduler.getBus() != null) {
+            writeCluster(sb, echoScheduler);
+        }
+        if (perConnection) {
+            writeConnections(sb, echoScheduler);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * <p>Writes the metrics of every node of the cluster, this one included, labelled by the node id</p>
+     */
+    private static void writeCluster(final StringBuilder sb, final EchoScheduler echoScheduler) {
+        final List<EchoMetricsSnapshot> nodes = new ArrayList<>(echoScheduler.getClusterMetrics().nodes());
+        nodes.add(EchoMetricsSnapshot.of(echoScheduler.getBus().getNodeId(), echoScheduler.getMetrics()));
+        gauge(sb, "chatty_echo_cluster_nodes", "Nodes of the cluster which reported their metrics recently, this one included", nodes.size());
+        clusterSeries(sb, nodes, "chatty_echo_cluster_connections", "Open connections per node", "gauge", EchoMetricsSnapshot.CONNECTIONS);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_requests_total", "Echo requests received per node", "counter", EchoMetricsSnapshot.REQUESTS);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_requests_rejected_total", "Echo requests rejected per node", "counter", EchoMetricsSnapshot
+                .REQUESTS_REJECTED);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_frames_sent_total", "Echo frames written per node", "counter", EchoMetricsSnapshot.FRAMES_SENT);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_bytes_sent_total", "Echo payload bytes written per node", "counter", EchoMetricsSnapshot.BYTES_SENT);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_broadcast_frames_sent_total", "Broadcast frames written to topic subscribers per node", "counter",
+                EchoMetricsSnapshot.BROADCAST_FRAMES_SENT);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_pending_echoes", "Echoes scheduled but not sent yet per node", "gauge", EchoMetricsSnapshot
+                .PENDING_ECHOES);
+        clusterSeries(sb, nodes, "chatty_echo_cluster_dropped_echoes_total", "Echoes dropped, coalesced or missed by subscribers per node", "counter",
+                EchoMetricsSnapshot.DROPPED_ECHOES);
+    }
+
+    private static void clusterSeries(final StringBuilder sb, final List<EchoMetricsSnapshot> nodes, final String name, final String help, final String
+            type, final int index) {
+        header(sb, name, help, type);
+        for (final EchoMetricsSnapshot node : nodes) {
+            sb.append(name).append("{node=\"").append(escape(node.getNodeId())).append("\"} ").append(node.get(index)).append('\n');
+        }
+    }
+
+    private static void writeConnections(final StringBuilder sb, final EchoScheduler echoScheduler) {
+        header(sb, "chatty_echo_connection_frames_sent_total", "Echo frames written per connection", "counter");
+        for (final Channel channel : echoScheduler.getConnections()) {
+            final EchoConnectionStats stats = echoScheduler.connectionStats(channel);
+            if (stats != null) {
+                connectionSample(sb, "chatty_echo_connection_frames_sent_total", channel, stats.getEmitted());
+            }
+        }
+        header(sb, "chatty_echo_connection_dropped_echoes_total", "Echoes dropped per connection", "counter");
+        for (final Channel channel : echoScheduler.getConnections()) {
+            final EchoConnectionStats stats = echoScheduler.connectionStats(channel);
+            if (stats != null) {
+                connectionSample(sb, "chatty_echo_connection_dropped_echoes_total", channel, stats.getDropped() + stats.getCoalesced());
+            }
+        }
+        header(sb, "chatty_echo_connection_stalls_total", "Times echo emission paused per connection", "counter");
+        for (final Channel channel : echoScheduler.getConnections()) {
+            final EchoConnectionStats stats = echoScheduler.connectionStats(channel);
+            if (stats != null) {
+                connectionSample(sb, "chatty_echo_connection_stalls_total", channel, stats.getStalls());
+            }
+        }
+        header(sb, "chatty_echo_connection_queued_bytes", "Bytes written but not flushed to the socket yet per connection", "gauge");
+        for (final Channel channel : echoScheduler.getConnections()) {
+            connectionSample(sb, "chatty_echo_connection_queued_bytes", channel, queuedBytes(channel));
+        }
+    }
+
+    /**
+     * <p>Derives the bytes queued in the channel's outbound buffer from how far they are from its write buffer water marks, as the outbound buffer itself
+     * is only safe to access from the channel's event loop</p>
+     */
+    private static long queuedBytes(final Channel channel) {
+        if (!channel.isOpen()) {
+            return 0L;
+        }
+        final WriteBufferWaterMark waterMark = channel.config().getWriteBufferWaterMark();
+        if (channel.isWritable()) {
+            final long bytesBeforeUnwritable = channel.bytesBeforeUnwritable();
+            // not writable any more by the time the bytes were read
+            return bytesBeforeUnwritable == 0L ? waterMark.high() : Math.max(0L, waterMark.high() - bytesBeforeUnwritable);
+        }
+        final long bytesBeforeWritable = channel.bytesBeforeWritable();
+        return bytesBeforeWritable == 0L ? waterMark.low() : waterMark.low() + bytesBeforeWritable;
+    }
+
+    private static void counter(final StringBuilder sb, final String name, final String help, final long value) {
+        header(sb, name, help, "counter");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(final StringBuilder sb, final String name, final String help, final long value) {
+        header(sb, name, help, "gauge");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(final StringBuilder sb, final String name, final String help, final String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void connectionSample(final StringBuilder sb, final String name, final Channel channel, final long value) {
+        sb.append(name).append("{remote=\"").append(escape(String.valueOf(channel.remoteAddress()))).append("\"} ").append(value).append('\n');
+    }
+
+    private static String escape(final String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
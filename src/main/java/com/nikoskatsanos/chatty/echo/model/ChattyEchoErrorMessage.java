@@ -0,0 +1,64 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * <p>Sent by the server, always as a text frame, when a request is rejected. A sample message will look like:
+ * <pre>
+ *     {@code
+ *     {
+ *         "error": "TIMES_LIMIT",
+ *         "message": "times 1000000 is above the limit of 10000"
+ *     }
+ *     }
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoErrorMessage implements Serializable {
+
+    private final String error;
+    private final String message;
+
+    @JsonCreator
+    public ChattyEchoErrorMessage(@JsonProperty(value = "error", required = true) final String error, @JsonProperty(value = "message") final String message) {
+        this.error = error;
+        this.message = message;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.error, this.message);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !(obj instanceof ChattyEchoErrorMessage)) {
+            return false;
+        }
+
+        if (this == obj) {
+            return true;
+        }
+        final ChattyEchoErrorMessage other = (ChattyEchoErrorMessage) obj;
+        return Objects.equals(this.error, other.error) && Objects.equals(this.message, other.message);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("error", this.error).add("message", this.message).toString();
+    }
+}
@@ -1,10 +1,12 @@
 package com.nikoskatsanos.chatty.echo.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * <p>This is the API that the <b>Chatty Echo Server</b> understands. A client should send a JSON serialized message of this class with all fields populated.
@@ -14,6 +16,18 @@ import java.io.Serializable;
  *     <li><b>msg:</b> A text message that the client sends and will be echoed back by the server</li>
  *     <li><b>times:</b> The number of times the echo message will be send back to the client</li>
  *     <li><b>delay:</b> The delay in <em>milliseconds</em> between the messages are sent</li>
+ *     <li><b>delayMicros:</b> Optional, the delay in <em>microseconds</em>, taking precedence over {@code delay}</li>
+ *     <li><b>rate:</b> Optional, the echoes per second, taking precedence over both delays</li>
+ *     <li><b>rampTo:</b> Optional, the echoes per second the {@code rate} ramps to, linearly over the echoes</li>
+ *     <li><b>pacing:</b> Optional, how the echoes are spread around their mean interval, one of {@code constant} (default), {@code poisson} or {@code
+ *     bursty}. See {@link com.nikoskatsanos.chatty.echo.engine.PacingDistribution}</li>
+ *     <li><b>burst:</b> Optional, the echoes per group of {@code bursty} pacing</li>
+ *     <li><b>payload:</b> Optional, a payload the server generates and echoes back in binary frames instead of {@code msg}, which can then be omitted. See
+ *     {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoPayload}</li>
+ *     <li><b>sequenced:</b> Optional, if {@code true} every echo carries its burst id, sequence and send timestamp. See {@link
+ *     com.nikoskatsanos.chatty.echo.model.ChattyEchoOutboundMessage}</li>
+ *     <li><b>topic:</b> Optional, broadcasts the echoes to every subscriber of the topic instead of the sender only. Topic {@code *} reaches every connected
+ *     client. See {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoSubscription}</li>
  * </ul>
  * </pre>
  * A sample JSON message would look like:
@@ -35,13 +49,58 @@ public class ChattyEchoInboundMessage implements Serializable {
     private final String msg;
     private final int times;
     private final long delay;
+    private final boolean sequenced;
+    private final String topic;
+    private final Long delayMicros;
+    private final Double rate;
+    private final String pacing;
+    private final Integer burst;
+    private final ChattyEchoPayload payload;
+    private final Double rampTo;
 
+    public ChattyEchoInboundMessage(final String msg, final int times, final long delay) {
+        this(msg, times, delay, false);
+    }
+
+    public ChattyEchoInboundMessage(final String msg, final int times, final long delay, final boolean sequenced) {
+        this(msg, times, delay, sequenced, null);
+    }
+
+    public ChattyEchoInboundMessage(final String msg, final int times, final long delay, final boolean sequenced, final String topic) {
+        this(msg, times, delay, sequenced, topic, null, null, null, null);
+    }
+
+    public ChattyEchoInboundMessage(final String msg, final int times, final long delay, final boolean sequenced, final String topic, final Long
+            delayMicros, final Double rate, final String pacing, final Integer burst) {
+        this(msg, times, delay, sequenced, topic, delayMicros, rate, pacing, burst, null);
+    }
+
+    public ChattyEchoInboundMessage(final String msg, final int times, final long delay, final boolean sequenced, final String topic, final Long
+            delayMicros, final Double rate, final String pacing, final Integer burst, final ChattyEchoPayload payload) {
+        this(msg, times, delay, sequenced, topic, delayMicros, rate, pacing, burst, payload, null);
+    }
+
+    /**
+     * <p>Either {@code delay}, {@code delayMicros} or {@code rate} has to be present in the JSON message, and either {@code msg} or {@code payload}</p>
+     */
     @JsonCreator()
-    public ChattyEchoInboundMessage(@JsonProperty(value = "msg", required = true) final String msg, @JsonProperty(value = "times", required = true) final int
-            times, @JsonProperty(value = "delay", required = true) final long delay) {
+    public ChattyEchoInboundMessage(@JsonProperty(value = "msg") final String msg, @JsonProperty(value = "times", required = true) final int times,
+                                    @JsonProperty(value = "delay") final long delay, @JsonProperty(value = "sequenced") final boolean sequenced, @JsonProperty
+                                            (value = "topic") final String topic, @JsonProperty(value = "delayMicros") final Long delayMicros, @JsonProperty
+                                            (value = "rate") final Double rate, @JsonProperty(value = "pacing") final String pacing, @JsonProperty(value =
+            "burst") final Integer burst, @JsonProperty(value = "payload") final ChattyEchoPayload payload, @JsonProperty(value = "rampTo") final Double
+            rampTo) {
         this.msg = msg;
         this.times = times;
         this.delay = delay;
+        this.sequenced = sequenced;
+        this.topic = topic;
+        this.delayMicros = delayMicros;
+        this.rate = rate;
+        this.pacing = pacing;
+        this.burst = burst;
+        this.payload = payload;
+        this.rampTo = rampTo;
     }
 
     public String getMsg() {
@@ -56,10 +115,49 @@ public class ChattyEchoInboundMessage implements Serializable {
         return delay;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isSequenced() {
+        return sequenced;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getTopic() {
+        return topic;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getDelayMicros() {
+        return delayMicros;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Double getRate() {
+        return rate;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getPacing() {
+        return pacing;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getBurst() {
+        return burst;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public ChattyEchoPayload getPayload() {
+        return payload;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Double getRampTo() {
+        return rampTo;
+    }
+
     @Override
     public int hashCode() {
-        assert this.msg != null;
-        return 31 * this.msg.hashCode() * times * (int) delay;
+        return 31 * Objects.hashCode(this.msg) * times * (int) delay;
     }
 
     @Override
@@ -74,13 +172,22 @@ public class ChattyEchoInboundMessage implements Serializable {
         if ((this.msg == null && other.msg != null) || (other.msg == null && this.msg != null)) {
             return false;
         } else if (this.msg == null && other.msg == null) {
-            return this.times == other.times && this.delay == other.delay;
+            return this.times == other.times && this.delay == other.delay && this.sequenced == other.sequenced && Objects.equals(this.topic, other.topic) &&
+                    this.samePacing(other);
         }
-        return this.msg.equals(other.msg) && this.times == other.times && this.delay == other.delay;
+        return this.msg.equals(other.msg) && this.times == other.times && this.delay == other.delay && this.sequenced == other.sequenced && Objects.equals(this
+                .topic, other.topic) && this.samePacing(other);
+    }
+
+    private boolean samePacing(final ChattyEchoInboundMessage other) {
+        return Objects.equals(this.delayMicros, other.delayMicros) && Objects.equals(this.rate, other.rate) && Objects.equals(this.pacing, other.pacing) &&
+                Objects.equals(this.burst, other.burst) && Objects.equals(this.payload, other.payload) && Objects.equals(this.rampTo, other.rampTo);
     }
 
     @Override
     public String toString() {
-        return MoreObjects.toStringHelper(this).add("msg", this.msg).add("times", this.times).add("delay", this.delay).toString();
+        return MoreObjects.toStringHelper(this).add("msg", this.msg).add("times", this.times).add("delay", this.delay).add("sequenced", this.sequenced)
+                .add("topic", this.topic).add("delayMicros", this.delayMicros).add("rate", this.rate).add("pacing", this.pacing).add("burst", this.burst)
+                .add("payload", this.payload).add("rampTo", this.rampTo).toString();
     }
 }
@@ -1,6 +1,7 @@
 package com.nikoskatsanos.chatty.echo.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
 
@@ -16,6 +17,17 @@ import java.util.Objects;
  *         "msg": "Text...."
  *     }
  *     }
+ * </pre></p> <p>If the request was {@code sequenced}, every echo also carries the id of its burst, its zero based sequence within the burst and the server's
+ * send timestamp in nanoseconds since the epoch:
+ * <pre>
+ *     {@code
+ *     {
+ *         "burstId": 7,
+ *         "seq": 0,
+ *         "sentNanos": 1514764800000000000,
+ *         "msg": "Text...."
+ *     }
+ *     }
  * </pre></p>
  *
  * @author nikkatsa
@@ -23,10 +35,21 @@ import java.util.Objects;
 public class ChattyEchoOutboundMessage implements Serializable {
 
     private final String msg;
+    private final Long burstId;
+    private final Long seq;
+    private final Long sentNanos;
+
+    public ChattyEchoOutboundMessage(final String msg) {
+        this(msg, null, null, null);
+    }
 
     @JsonCreator
-    public ChattyEchoOutboundMessage(@JsonProperty(required = true) final String msg) {
+    public ChattyEchoOutboundMessage(@JsonProperty(value = "msg", required = true) final String msg, @JsonProperty(value = "burstId") final Long burstId,
+                                     @JsonProperty(value = "seq") final Long seq, @JsonProperty(value = "sentNanos") final Long sentNanos) {
         this.msg = msg;
+        this.burstId = burstId;
+        this.seq = seq;
+        this.sentNanos = sentNanos;
     }
 
     @Override
@@ -45,7 +68,8 @@ public class ChattyEchoOutboundMessage implements Serializable {
             return true;
         }
         final ChattyEchoOutboundMessage other = (ChattyEchoOutboundMessage) obj;
-        if (Objects.nonNull(this.msg) && this.msg.equals(((ChattyEchoOutboundMessage) obj).msg)) {
+        if (Objects.nonNull(this.msg) && this.msg.equals(other.msg) && Objects.equals(this.burstId, other.burstId) && Objects.equals(this.seq, other.seq) &&
+                Objects.equals(this.sentNanos, other.sentNanos)) {
             return true;
         }
         return false;
@@ -55,8 +79,24 @@ public class ChattyEchoOutboundMessage implements Serializable {
         return this.msg;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getBurstId() {
+        return this.burstId;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getSeq() {
+        return this.seq;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getSentNanos() {
+        return this.sentNanos;
+    }
+
     @Override
     public String toString() {
-        return MoreObjects.toStringHelper(this).add("msg", this.msg).toString();
+        return MoreObjects.toStringHelper(this).omitNullValues().add("msg", this.msg).add("burstId", this.burstId).add("seq", this.seq).add("sentNanos", this
+                .sentNanos).toString();
     }
 }
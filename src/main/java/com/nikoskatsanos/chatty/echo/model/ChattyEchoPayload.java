@@ -0,0 +1,93 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * <p>Describes a payload the server generates and echoes, instead of the client sending it, as the {@code payload} of a {@link
+ * com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}. Either:
+ * <pre>
+ * <ul>
+ *     <li><b>size</b> and optionally <b>pattern:</b> {@code size} bytes of the repeated pattern</li>
+ *     <li><b>size</b> and <b>seed:</b> {@code size} pseudo random bytes, the same for the same seed</li>
+ *     <li><b>file:</b> The contents of a file of the server's payload directory</li>
+ * </ul>
+ * </pre>
+ * A sample message will look like:
+ * <pre>
+ *     {@code
+ *     {
+ *         "size": 4194304,
+ *         "seed": 42
+ *     }
+ *     }
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoPayload implements Serializable {
+
+    private final Integer size;
+    private final String pattern;
+    private final Long seed;
+    private final String file;
+
+    @JsonCreator
+    public ChattyEchoPayload(@JsonProperty(value = "size") final Integer size, @JsonProperty(value = "pattern") final String pattern, @JsonProperty(value =
+            "seed") final Long seed, @JsonProperty(value = "file") final String file) {
+        this.size = size;
+        this.pattern = pattern;
+        this.seed = seed;
+        this.file = file;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getSize() {
+        return this.size;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getSeed() {
+        return this.seed;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getFile() {
+        return this.file;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.size, this.pattern, this.seed, this.file);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !(obj instanceof ChattyEchoPayload)) {
+            return false;
+        }
+
+        if (this == obj) {
+            return true;
+        }
+        final ChattyEchoPayload other = (ChattyEchoPayload) obj;
+        return Objects.equals(this.size, other.size) && Objects.equals(this.pattern, other.pattern) && Objects.equals(this.seed, other.seed) && Objects
+                .equals(this.file, other.file);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("size", this.size).add("pattern", this.pattern).add("seed", this.seed).add("file", this
+                .file).toString();
+    }
+}
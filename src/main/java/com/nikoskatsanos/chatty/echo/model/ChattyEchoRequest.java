@@ -0,0 +1,293 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.google.common.base.MoreObjects;
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoScenario;
+import com.nikoskatsanos.chatty.echo.engine.PacingDistribution;
+import com.nikoskatsanos.chatty.echo.payload.PayloadSpec;
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+
+/**
+ * <p>Mutable, reusable counterpart of {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}, populated by the {@link
+ * com.nikoskatsanos.chatty.echo.codec.ChattyEchoRequestDecoder}. A connection decodes all its requests into the same instance, hence it must not be held on
+ * to after the request has been handled.</p> <p>Requests of the {@link com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol#BINARY} protocol carry
+ * their raw {@code payload} and {@code flags} instead of a {@code msg}. A request either asks for echoes, optionally broadcast to a {@code topic}, or
+ * changes the connection's subscriptions. Whether the request had a {@code delay}, {@code delayMicros} or {@code rate}, its pace is held as the interval
+ * between echoes in nanoseconds. Instead of carrying a payload, a request can describe one the server generates by a {@link
+ * com.nikoskatsanos.chatty.echo.payload.PayloadSpec}. The payload is not owned by the request; whoever handles the request takes ownership
+ * of it.</p> <p>A request can instead carry the steps of a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoScenario}, or stop the connection's echoes.
+ * The steps are requests of their own, either echoes or a pause, which are newly created for each scenario, hence, unlike the request, they can be held on
+ * to. Not thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoRequest implements EchoScenario.Step {
+
+    /**
+     * <p>Every echo carries its burst id, its sequence within the burst and the server's send timestamp</p>
+     */
+    public static final int FLAG_SEQUENCED = 1;
+
+    private String msg;
+    private int times;
+    private long intervalNanos;
+    private PacingDistribution pacing = PacingDistribution.CONSTANT;
+    private int burstSize = EchoPacing.DEFAULT_BURST_SIZE;
+    private long rampToIntervalNanos;
+    private int flags;
+    private ByteBuf payload;
+    private PayloadSpec payloadSpec;
+    private String topic;
+    private String subscribe;
+    private String unsubscribe;
+    private List<ChattyEchoRequest> steps;
+    private int repeat;
+    private long pauseNanos;
+    private boolean stop;
+
+    public ChattyEchoRequest reset() {
+        this.msg = null;
+        this.times = 0;
+        this.intervalNanos = 0L;
+        this.pacing = PacingDistribution.CONSTANT;
+        this.burstSize = EchoPacing.DEFAULT_BURST_SIZE;
+        this.rampToIntervalNanos = 0L;
+        this.flags = 0;
+        this.payload = null;
+        this.payloadSpec = null;
+        this.topic = null;
+        this.subscribe = null;
+        this.unsubscribe = null;
+        this.steps = null;
+        this.repeat = 0;
+        this.pauseNanos = 0L;
+        this.stop = false;
+        return this;
+    }
+
+    /**
+     * @return A new request with the same fields, which can be held on to after this one is reused. The payload is not copied; it remains owned by whoever
+     * handles this request
+     */
+    public ChattyEchoRequest copy() {
+        final ChattyEchoRequest copy = new ChattyEchoRequest();
+        copy.msg = this.msg;
+        copy.times = this.times;
+        copy.intervalNanos = this.intervalNanos;
+        copy.pacing = this.pacing;
+        copy.burstSize = this.burstSize;
+        copy.rampToIntervalNanos = this.rampToIntervalNanos;
+        copy.flags = this.flags;
+        copy.payloadSpec = this.payloadSpec;
+        copy.topic = this.topic;
+        copy.subscribe = this.subscribe;
+        copy.unsubscribe = this.unsubscribe;
+        copy.steps = this.steps;
+        copy.repeat = this.repeat;
+        copy.pauseNanos = this.pauseNanos;
+        copy.stop = this.stop;
+        return copy;
+    }
+
+    public String getMsg() {
+        return this.msg;
+    }
+
+    public ChattyEchoRequest setMsg(final String msg) {
+        this.msg = msg;
+        return this;
+    }
+
+    public int getTimes() {
+        return this.times;
+    }
+
+    public ChattyEchoRequest setTimes(final int times) {
+        this.times = times;
+        return this;
+    }
+
+    /**
+     * @return The mean interval between echoes, in nanoseconds
+     */
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    public ChattyEchoRequest setIntervalNanos(final long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+        return this;
+    }
+
+    public PacingDistribution getPacing() {
+        return this.pacing;
+    }
+
+    public ChattyEchoRequest setPacing(final PacingDistribution pacing) {
+        this.pacing = pacing;
+        return this;
+    }
+
+    public int getBurstSize() {
+        return this.burstSize;
+    }
+
+    public ChattyEchoRequest setBurstSize(final int burstSize) {
+        this.burstSize = burstSize;
+        return this;
+    }
+
+    /**
+     * @return The mean interval the echoes ramp to, over all of them, {@code 0} for a steady pace
+     */
+    public long getRampToIntervalNanos() {
+        return this.rampToIntervalNanos;
+    }
+
+    public ChattyEchoRequest setRampToIntervalNanos(final long rampToIntervalNanos) {
+        this.rampToIntervalNanos = rampToIntervalNanos;
+        return this;
+    }
+
+    /**
+     * @return The pace of the requested echoes. A negative interval is treated as no interval at all
+     */
+    public EchoPacing toPacing() {
+        return new EchoPacing(this.pacing, Math.max(0L, this.intervalNanos), this.burstSize, this.rampToIntervalNanos, this.times);
+    }
+
+    public int getFlags() {
+        return this.flags;
+    }
+
+    public ChattyEchoRequest setFlags(final int flags) {
+        this.flags = flags;
+        return this;
+    }
+
+    public boolean isSequenced() {
+        return (this.flags & FLAG_SEQUENCED) != 0;
+    }
+
+    public ByteBuf getPayload() {
+        return this.payload;
+    }
+
+    public ChattyEchoRequest setPayload(final ByteBuf payload) {
+        this.payload = payload;
+        return this;
+    }
+
+    /**
+     * @return The spec of the payload the server generates, {@code null} if the request carries its own
+     */
+    public PayloadSpec getPayloadSpec() {
+        return this.payloadSpec;
+    }
+
+    public ChattyEchoRequest setPayloadSpec(final PayloadSpec payloadSpec) {
+        this.payloadSpec = payloadSpec;
+        return this;
+    }
+
+    /**
+     * @return The topic the echoes are broadcast to, {@code null} if they are sent back to the requesting connection only
+     */
+    public String getTopic() {
+        return this.topic;
+    }
+
+    public ChattyEchoRequest setTopic(final String topic) {
+        this.topic = topic;
+        return this;
+    }
+
+    public String getSubscribe() {
+        return this.subscribe;
+    }
+
+    public ChattyEchoRequest setSubscribe(final String subscribe) {
+        this.subscribe = subscribe;
+        return this;
+    }
+
+    public String getUnsubscribe() {
+        return this.unsubscribe;
+    }
+
+    public ChattyEchoRequest setUnsubscribe(final String unsubscribe) {
+        this.unsubscribe = unsubscribe;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if this is a subscription change rather than an echo request
+     */
+    public boolean isSubscription() {
+        return this.subscribe != null || this.unsubscribe != null;
+    }
+
+    /**
+     * @return The steps of the scenario the request starts, {@code null} if it is not a scenario
+     */
+    public List<ChattyEchoRequest> getSteps() {
+        return this.steps;
+    }
+
+    public ChattyEchoRequest setSteps(final List<ChattyEchoRequest> steps) {
+        this.steps = steps;
+        return this;
+    }
+
+    public boolean isScenario() {
+        return this.steps != null;
+    }
+
+    /**
+     * @return The number of times the steps of the scenario are run, {@code 0} until the scenario is stopped
+     */
+    public int getRepeat() {
+        return this.repeat;
+    }
+
+    public ChattyEchoRequest setRepeat(final int repeat) {
+        this.repeat = repeat;
+        return this;
+    }
+
+    /**
+     * @return The nanoseconds a scenario step pauses for, {@code 0} if it is a step of echoes
+     */
+    @Override
+    public long getPauseNanos() {
+        return this.pauseNanos;
+    }
+
+    public ChattyEchoRequest setPauseNanos(final long pauseNanos) {
+        this.pauseNanos = pauseNanos;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if the request stops the connection's active scenario or burst
+     */
+    public boolean isStop() {
+        return this.stop;
+    }
+
+    public ChattyEchoRequest setStop(final boolean stop) {
+        this.stop = stop;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("msg", this.msg).add("times", this.times).add("intervalNanos", this.intervalNanos)
+                .add("pacing", this.pacing).add("burstSize", this.burstSize).add("rampToIntervalNanos", this.rampToIntervalNanos).add("flags", this.flags)
+                .add("payloadBytes", this.payload == null ? null : this.payload.readableBytes()).add("payloadSpec", this.payloadSpec).add("topic", this
+                        .topic).add("subscribe", this.subscribe).add("unsubscribe", this.unsubscribe).add("steps", this.steps).add("repeat", this.repeat)
+                .add("pauseNanos", this.pauseNanos).add("stop", this.stop).toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>A program of echoes the server runs for the connection, sent as a single message instead of a request per load shape. The fields are:
+ * <pre>
+ * <ul>
+ *     <li><b>steps:</b> The {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoScenarioStep}s, run one after the other</li>
+ *     <li><b>repeat:</b> Optional, the number of times the steps are run (default 1), {@code 0} to run them until the scenario is stopped</li>
+ * </ul>
+ * </pre>
+ * A scenario replaces the connection's running scenario or echoes, as does any later request. Sending {@code {"stop": true}} stops it. A sample message
+ * ramping up from 100 to 1000 echoes per second of 1KB, followed by a heartbeat and a pause, repeated until stopped, will look like:
+ * <pre>
+ *     {@code
+ *     {
+ *         "repeat": 0,
+ *         "steps": [
+ *             {"echo": {"payload": {"size": 1024}, "times": 30000, "rate": 100, "rampTo": 1000}},
+ *             {"echo": {"msg": "heartbeat", "times": 1, "delay": 0}},
+ *             {"pause": 5000}
+ *         ]
+ *     }
+ *     }
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoScenario implements Serializable {
+
+    private final List<ChattyEchoScenarioStep> steps;
+    private final int repeat;
+
+    @JsonCreator
+    public ChattyEchoScenario(@JsonProperty(value = "steps", required = true) final List<ChattyEchoScenarioStep> steps, @JsonProperty(value = "repeat")
+            final Integer repeat) {
+        this.steps = steps == null ? Collections.emptyList() : steps;
+        this.repeat = repeat == null ? 1 : repeat;
+    }
+
+    public List<ChattyEchoScenarioStep> getSteps() {
+        return this.steps;
+    }
+
+    public int getRepeat() {
+        return this.repeat;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.steps, this.repeat);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !(obj instanceof ChattyEchoScenario)) {
+            return false;
+        }
+
+        if (this == obj) {
+            return true;
+        }
+        final ChattyEchoScenario other = (ChattyEchoScenario) obj;
+        return Objects.equals(this.steps, other.steps) && this.repeat == other.repeat;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("steps", this.steps).add("repeat", this.repeat).toString();
+    }
+}
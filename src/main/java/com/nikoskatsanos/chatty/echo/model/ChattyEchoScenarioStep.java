@@ -0,0 +1,73 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * <p>A step of a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoScenario}. Either:
+ * <pre>
+ * <ul>
+ *     <li><b>echo:</b> The echoes of a {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}, the step ends after the last of them</li>
+ *     <li><b>pause:</b> A pause in <em>milliseconds</em> before the next step</li>
+ * </ul>
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoScenarioStep implements Serializable {
+
+    private final ChattyEchoInboundMessage echo;
+    private final Long pause;
+
+    @JsonCreator
+    public ChattyEchoScenarioStep(@JsonProperty(value = "echo") final ChattyEchoInboundMessage echo, @JsonProperty(value = "pause") final Long pause) {
+        this.echo = echo;
+        this.pause = pause;
+    }
+
+    public static ChattyEchoScenarioStep echo(final ChattyEchoInboundMessage echo) {
+        return new ChattyEchoScenarioStep(echo, null);
+    }
+
+    public static ChattyEchoScenarioStep pause(final long pauseMillis) {
+        return new ChattyEchoScenarioStep(null, pauseMillis);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public ChattyEchoInboundMessage getEcho() {
+        return this.echo;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getPause() {
+        return this.pause;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.echo, this.pause);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !(obj instanceof ChattyEchoScenarioStep)) {
+            return false;
+        }
+
+        if (this == obj) {
+            return true;
+        }
+        final ChattyEchoScenarioStep other = (ChattyEchoScenarioStep) obj;
+        return Objects.equals(this.echo, other.echo) && Objects.equals(this.pause, other.pause);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("echo", this.echo).add("pause", this.pause).toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.nikoskatsanos.chatty.echo.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * <p>Subscribes the connection to, and/or unsubscribes it from, a topic. The connection then receives the echoes of every request broadcast to that topic,
+ * see {@link com.nikoskatsanos.chatty.echo.model.ChattyEchoInboundMessage}. A sample message will look like:
+ * <pre>
+ *     {@code
+ *     {
+ *         "subscribe": "prices"
+ *     }
+ *     }
+ * </pre></p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoSubscription implements Serializable {
+
+    private final String subscribe;
+    private final String unsubscribe;
+
+    @JsonCreator
+    public ChattyEchoSubscription(@JsonProperty(value = "subscribe") final String subscribe, @JsonProperty(value = "unsubscribe") final String unsubscribe) {
+        this.subscribe = subscribe;
+        this.unsubscribe = unsubscribe;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getSubscribe() {
+        return this.subscribe;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getUnsubscribe() {
+        return this.unsubscribe;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.subscribe, this.unsubscribe);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !(obj instanceof ChattyEchoSubscription)) {
+            return false;
+        }
+
+        if (this == obj) {
+            return true;
+        }
+        final ChattyEchoSubscription other = (ChattyEchoSubscription) obj;
+        return Objects.equals(this.subscribe, other.subscribe) && Objects.equals(this.unsubscribe, other.unsubscribe);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("subscribe", this.subscribe).add("unsubscribe", this.unsubscribe).toString();
+    }
+}
@@ -0,0 +1,257 @@
+package com.nikoskatsanos.chatty.echo.payload;
+
+import com.google.common.base.MoreObjects;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import com.nikoskatsanos.jutils.core.threading.NamedThreadFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.IllegalReferenceCountException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Server wide cache of the payloads described by {@link com.nikoskatsanos.chatty.echo.payload.PayloadSpec}s. A payload is generated once, into an unpooled
+ * off heap {@link io.netty.buffer.ByteBuf}, or memory mapped if it is a file of the payload directory, and every burst echoing it gets a {@link
+ * io.netty.buffer.ByteBuf#retainedDuplicate()} of the cached buffer. Hence echoing a payload of many megabytes, any number of times to any number of
+ * connections, copies none of its bytes.</p> <p>Generating a payload of many megabytes takes long enough to stall the connections of an event loop, hence event
+ * loops {@link #acquireAsync(PayloadSpec)} a payload which is not cached yet; it is generated on the cache's own thread and handed back through a {@link
+ * java.util.concurrent.CompletableFuture}.</p> <p>When the cached payloads exceed the cache's size, payloads are evicted to make room for new ones. An evicted
+ * payload stays alive until the bursts still echoing it are done. Thread safe</p>
+ *
+ * @author nikkatsa
+ */
+public class PayloadCache {
+
+    private static final Logger log = LogManager.getFormatterLogger(PayloadCache.class);
+
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAX_CACHED_BYTES = 256L * 1024L * 1024L;
+    public static final int DEFAULT_MAX_FRAME_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int maxPayloadBytes;
+    private final long maxCachedBytes;
+    private final int maxFrameBytes;
+    private final ConcurrentMap<PayloadSpec, ByteBuf> payloads = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    // its thread is only started by the first payload generated asynchronously
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(new NamedThreadFactory("PayloadCache-Generator", true));
+
+    public PayloadCache() {
+        this(null, DEFAULT_MAX_PAYLOAD_BYTES, DEFAULT_MAX_CACHED_BYTES, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * @param directory       The directory payload files are read from, {@code null} if there is none
+     * @param maxPayloadBytes The largest payload a request can ask for
+     * @param maxCachedBytes  The total size of the cached payloads, at least {@code maxPayloadBytes}
+     * @param maxFrameBytes   Echoes of larger payloads are fragmented into frames of this size
+     */
+    public PayloadCache(final Path directory, final int maxPayloadBytes, final long maxCachedBytes, final int maxFrameBytes) {
+        if (maxPayloadBytes <= 0 || maxCachedBytes < maxPayloadBytes || maxFrameBytes < 1_024) {
+            throw new IllegalArgumentException(String.format("Invalid payload cache, max payload %d bytes, max cached %d bytes and max frame %d bytes",
+                    maxPayloadBytes, maxCachedBytes, maxFrameBytes));
+        }
+        this.directory = directory == null ? null : directory.toAbsolutePath().normalize();
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.maxCachedBytes = maxCachedBytes;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    public int getMaxFrameBytes() {
+        return this.maxFrameBytes;
+    }
+
+    /**
+     * @return The total size of the payloads currently cached
+     */
+    public long getCachedBytes() {
+        return this.cachedBytes.get();
+    }
+
+    public int size() {
+        return this.payloads.size();
+    }
+
+    /**
+     * @return A retained duplicate of the payload, generated if not cached yet. The caller owns it
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the payload is larger than the maximum payload size
+     * @throws java.io.IOException                                        If the payload file cannot be read
+     */
+    public ByteBuf acquire(final PayloadSpec spec) throws EchoRejectedException, IOException {
+        while (true) {
+            final ByteBuf cached = this.acquireCached(spec);
+            if (cached != null) {
+                return cached;
+            }
+            final ByteBuf published = this.publish(spec, this.generate(spec));
+            if (published != null) {
+                return published;
+            }
+        }
+    }
+
+    /**
+     * @return A retained duplicate of the payload, {@code null} if it is not cached. The caller owns it
+     * @throws com.nikoskatsanos.chatty.echo.engine.EchoRejectedException If the payload is larger than the maximum payload size
+     */
+    public ByteBuf acquireCached(final PayloadSpec spec) throws EchoRejectedException {
+        if (spec.getSize() > this.maxPayloadBytes) {
+            throw new EchoRejectedException(EchoRejection.PAYLOAD_LIMIT, spec.getSize(), this.maxPayloadBytes);
+        }
+        while (true) {
+            final ByteBuf cached = this.payloads.get(spec);
+            if (cached == null) {
+                return null;
+            }
+            try {
+                return cached.retainedDuplicate();
+            } catch (final IllegalReferenceCountException e) {
+                // evicted and released in the meantime; cached payloads are unpooled, hence a released one is never recycled into another buffer
+                this.payloads.remove(spec, cached);
+            }
+        }
+    }
+
+    /**
+     * <p>Acquires the payload on the cache's own thread, which generates it if it is not cached. Payloads are generated one at a time, hence concurrent
+     * requests for the same payload generate it once</p>
+     *
+     * @return A future of a retained duplicate of the payload, which the caller owns once it completes. It completes exceptionally with the {@link
+     * com.nikoskatsanos.chatty.echo.engine.EchoRejectedException} or {@link java.io.IOException} {@link #acquire(PayloadSpec)} would throw
+     */
+    public CompletableFuture<ByteBuf> acquireAsync(final PayloadSpec spec) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.acquire(spec);
+            } catch (final EchoRejectedException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, this.generator);
+    }
+
+    /**
+     * <p>Releases all the cached payloads</p>
+     */
+    public void clear() {
+        for (final PayloadSpec spec : this.payloads.keySet()) {
+            this.remove(spec);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("directory", this.directory).add("maxPayloadBytes", this.maxPayloadBytes).add("maxCachedBytes", this
+                .maxCachedBytes).add("maxFrameBytes", this.maxFrameBytes).toString();
+    }
+
+    /**
+     * <p>Caches a newly generated payload, unless another thread cached it first</p>
+     *
+     * @return A retained duplicate of the generated payload, {@code null} if it was cached by another thread, in which case it is released
+     */
+    private ByteBuf publish(final PayloadSpec spec, final ByteBuf generated) {
+        // retained before it is published, as another thread can evict and release it as soon as it is
+        final ByteBuf duplicate = generated.retainedDuplicate();
+        if (this.payloads.putIfAbsent(spec, generated) != null) {
+            duplicate.release();
+            generated.release();
+            return null;
+        }
+        this.cachedBytes.addAndGet(generated.readableBytes());
+        log.info("Cached %d bytes payload of %s", generated.readableBytes(), spec);
+        this.evict(spec);
+        return duplicate;
+    }
+
+    /**
+     * <p>Evicts payloads, other than the given one, until the cached ones fit in the cache</p>
+     */
+    private void evict(final PayloadSpec keep) {
+        final Iterator<Map.Entry<PayloadSpec, ByteBuf>> entries = this.payloads.entrySet().iterator();
+        while (this.cachedBytes.get() > this.maxCachedBytes && entries.hasNext()) {
+            final PayloadSpec spec = entries.next().getKey();
+            if (!spec.equals(keep)) {
+                this.remove(spec);
+                log.info("Evicted payload of %s", spec);
+            }
+        }
+    }
+
+    private void remove(final PayloadSpec spec) {
+        final ByteBuf removed = this.payloads.remove(spec);
+        if (removed != null) {
+            this.cachedBytes.addAndGet(-removed.readableBytes());
+            removed.release();
+        }
+    }
+
+    private ByteBuf generate(final PayloadSpec spec) throws EchoRejectedException, IOException {
+        switch (spec.getKind()) {
+            case PATTERN:
+                return pattern(spec.getSize(), spec.getPattern().getBytes(CharsetUtil.UTF_8));
+            case RANDOM:
+                return random(spec.getSize(), spec.getSeed());
+            case FILE:
+                return this.map(spec.getFile());
+            default:
+                throw new IllegalArgumentException(String.format("Unknown payload %s", spec));
+        }
+    }
+
+    private static ByteBuf pattern(final int size, final byte[] pattern) {
+        final ByteBuf payload = Unpooled.directBuffer(size, size);
+        payload.writeBytes(pattern, 0, Math.min(pattern.length, size));
+        // doubles the written bytes on every copy, rather than writing the pattern once per repetition
+        while (payload.writerIndex() < size) {
+            payload.writeBytes(payload, 0, Math.min(payload.writerIndex(), size - payload.writerIndex()));
+        }
+        return payload;
+    }
+
+    private static ByteBuf random(final int size, final long seed) {
+        final ByteBuf payload = Unpooled.directBuffer(size, size);
+        final SplittableRandom random = new SplittableRandom(seed);
+        while (payload.writableBytes() >= Long.BYTES) {
+            payload.writeLong(random.nextLong());
+        }
+        while (payload.isWritable()) {
+            payload.writeByte(random.nextInt());
+        }
+        return payload;
+    }
+
+    private ByteBuf map(final String file) throws EchoRejectedException, IOException {
+        if (this.directory == null) {
+            throw new IOException(String.format("Cannot read payload file [%s]; the server has no payload directory", file));
+        }
+        final Path path = this.directory.resolve(file).normalize();
+        if (!path.startsWith(this.directory)) {
+            throw new IOException(String.format("Payload file [%s] is not within the payload directory", file));
+        }
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > this.maxPayloadBytes) {
+                throw new EchoRejectedException(EchoRejection.PAYLOAD_LIMIT, size, this.maxPayloadBytes);
+            }
+            return Unpooled.wrappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nikoskatsanos.chatty.echo.payload;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Objects;
+
+/**
+ * <p>Describes a payload the server generates, rather than one the client sends: {@code size} bytes of a repeated {@code pattern}, {@code size} pseudo random
+ * bytes of a {@code seed}, or the contents of a {@code file} of the server's payload directory. Two equal specs describe the same bytes, hence a spec is the
+ * key the generated payload is cached by in the {@link com.nikoskatsanos.chatty.echo.payload.PayloadCache}</p>
+ *
+ * @author nikkatsa
+ */
+public final class PayloadSpec {
+
+    public static final String DEFAULT_PATTERN = "chatty-echo ";
+
+    public enum Kind {
+        PATTERN,
+        RANDOM,
+        FILE
+    }
+
+    private final Kind kind;
+    private final int size;
+    private final String pattern;
+    private final long seed;
+    private final String file;
+
+    private PayloadSpec(final Kind kind, final int size, final String pattern, final long seed, final String file) {
+        this.kind = kind;
+        this.size = size;
+        this.pattern = pattern;
+        this.seed = seed;
+        this.file = file;
+    }
+
+    public static PayloadSpec pattern(final int size, final String pattern) {
+        if (size < 0 || pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Invalid pattern payload of %d bytes and pattern '%s'", size, pattern));
+        }
+        return new PayloadSpec(Kind.PATTERN, size, pattern, 0L, null);
+    }
+
+    public static PayloadSpec random(final int size, final long seed) {
+        if (size < 0) {
+            throw new IllegalArgumentException(String.format("Invalid random payload of %d bytes", size));
+        }
+        return new PayloadSpec(Kind.RANDOM, size, null, seed, null);
+    }
+
+    public static PayloadSpec file(final String file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Payload file name cannot be empty");
+        }
+        return new PayloadSpec(Kind.FILE, -1, null, 0L, file);
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @return The size of the payload in bytes, {@code -1} for files, whose size is only known once read
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public String getFile() {
+        return this.file;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.kind, this.size, this.pattern, this.seed, this.file);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PayloadSpec)) {
+            return false;
+        }
+        final PayloadSpec other = (PayloadSpec) obj;
+        return this.kind == other.kind && this.size == other.size && this.seed == other.seed && Objects.equals(this.pattern, other.pattern) && Objects
+                .equals(this.file, other.file);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues().add("kind", this.kind).add("size", this.size).add("pattern", this.pattern).add("seed", this
+                .kind == Kind.RANDOM ? this.seed : null).add("file", this.file).toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.nikoskatsanos.chatty.echo.transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>The network transports the <em>Chatty Echo Server</em> and client can run on. The native {@link #EPOLL} transport is only available on Linux, when the
+ * native library can be loaded, and it is the only one which supports {@code SO_REUSEPORT}</p>
+ *
+ * @author nikkatsa
+ */
+public enum Transport {
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public Throwable unavailabilityCause() {
+            return null;
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return false;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(final int threads, final ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+    },
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public Throwable unavailabilityCause() {
+            return Epoll.unavailabilityCause();
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(final int threads, final ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+    };
+
+    private static final Logger log = LogManager.getFormatterLogger(Transport.class);
+
+    public static final String AUTO = "auto";
+
+    public abstract boolean isAvailable();
+
+    public abstract Throwable unavailabilityCause();
+
+    public abstract boolean isReusePortSupported();
+
+    public abstract EventLoopGroup newEventLoopGroup(final int threads, final ThreadFactory threadFactory);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    /**
+     * <p>Resolves the {@link com.nikoskatsanos.chatty.echo.transport.Transport} to use. {@code auto} picks the native transport if it is available. If the
+     * requested transport is not available it falls back to {@link #NIO}</p>
+     *
+     * @throws java.lang.IllegalArgumentException If there is no transport of that name
+     */
+    public static Transport select(final String name) {
+        if (AUTO.equalsIgnoreCase(name)) {
+            return EPOLL.isAvailable() ? EPOLL : NIO;
+        }
+
+        final Transport requested = Transport.valueOf(name.toUpperCase());
+        if (requested.isAvailable()) {
+            return requested;
+        }
+        log.warn("Transport %s is not available, falling back to %s. Cause: %s", requested, NIO, String.valueOf(requested.unavailabilityCause()));
+        return NIO;
+    }
+}
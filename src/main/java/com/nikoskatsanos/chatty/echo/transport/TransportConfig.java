@@ -0,0 +1,107 @@
+package com.nikoskatsanos.chatty.echo.transport;
+
+import com.google.common.base.MoreObjects;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.EpollChannelOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>Transport level settings of the <em>Chatty Echo Server</em>: the {@link com.nikoskatsanos.chatty.echo.transport.Transport}, the number of acceptor and
+ * worker event loops and the socket options. More than one acceptor requires {@code SO_REUSEPORT}, in which case the server binds one listening socket per
+ * acceptor on the same port and lets the kernel balance the incoming connections between them. Without it, for example when the native transport is not
+ * available, the server falls back to a single acceptor</p>
+ *
+ * @author nikkatsa
+ */
+public class TransportConfig {
+
+    private static final Logger log = LogManager.getFormatterLogger(TransportConfig.class);
+
+    public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors() / 2;
+
+    private final Transport transport;
+    private final int acceptors;
+    private final int workers;
+    private final boolean reusePort;
+    private final boolean tcpNoDelay;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+
+    /**
+     * @param sendBufferSize    {@code SO_SNDBUF} of the accepted sockets. Zero or negative leaves the OS default
+     * @param receiveBufferSize {@code SO_RCVBUF} of the accepted sockets. Zero or negative leaves the OS default
+     */
+    public TransportConfig(final Transport transport, final int acceptors, final int workers, final boolean reusePort, final boolean tcpNoDelay, final int
+            sendBufferSize, final int receiveBufferSize) {
+        if (acceptors <= 0) {
+            throw new IllegalArgumentException(String.format("Acceptors must be positive, was %d", acceptors));
+        }
+        final boolean reusePortEnabled = reusePort && transport.isReusePortSupported();
+        if (acceptors > 1 && !reusePortEnabled) {
+            log.warn("Multiple acceptors need SO_REUSEPORT, which is %s by %s. Using a single acceptor instead of %d", reusePort ? "not supported" :
+                    "not enabled", transport, acceptors);
+        }
+        this.transport = transport;
+        this.acceptors = reusePortEnabled ? acceptors : 1;
+        this.workers = workers;
+        this.reusePort = reusePort;
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * <p>Applies the socket options to the given {@link io.netty.bootstrap.ServerBootstrap}</p>
+     */
+    public ServerBootstrap apply(final ServerBootstrap serverBootstrap) {
+        serverBootstrap.channel(this.transport.serverChannelClass());
+        if (this.reusePort && this.transport.isReusePortSupported()) {
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        serverBootstrap.childOption(ChannelOption.TCP_NODELAY, this.tcpNoDelay);
+        if (this.sendBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, this.sendBufferSize);
+        }
+        if (this.receiveBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_RCVBUF, this.receiveBufferSize);
+        }
+        return serverBootstrap;
+    }
+
+    public Transport getTransport() {
+        return this.transport;
+    }
+
+    public int getAcceptors() {
+        return this.acceptors;
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    public boolean isReusePort() {
+        return this.reusePort;
+    }
+
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("transport", this.transport).add("acceptors", this.acceptors).add("workers", this.workers).add
+                ("reusePort", this.reusePort).add("tcpNoDelay", this.tcpNoDelay).add("sendBufferSize", this.sendBufferSize).add("receiveBufferSize", this
+                .receiveBufferSize).toString();
+    }
+}
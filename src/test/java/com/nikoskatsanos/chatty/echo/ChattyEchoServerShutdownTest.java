@@ -0,0 +1,62 @@
+package com.nikoskatsanos.chatty.echo;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author nikkatsa
+ */
+public class ChattyEchoServerShutdownTest {
+
+    @Test(timeout = 10_000L)
+    public void shutdownClosesTheServerChannelsWhileMainAwaitsThem() throws Exception {
+        final EventLoopGroup eventLoop = new DefaultEventLoopGroup(1);
+        final Channel serverChannel = new ServerBootstrap().group(eventLoop).channel(LocalServerChannel.class).childHandler(new
+                ChannelInboundHandlerAdapter()).bind(new LocalAddress("chatty-echo-shutdown-test")).sync().channel();
+        final List<Channel> serverChannels = Collections.synchronizedList(new ArrayList<>());
+        serverChannels.add(serverChannel);
+
+        final CountDownLatch awaiting = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread main = new Thread(() -> {
+            awaiting.countDown();
+            try {
+                ChattyEchoServer.awaitClosed(serverChannels);
+            } catch (final Throwable e) {
+                failure.set(e);
+            }
+        }, "main");
+        main.start();
+        awaiting.await();
+        // let main block on the close future
+        TimeUnit.MILLISECONDS.sleep(100L);
+
+        final Thread hook = new Thread(new ChattyEchoServerShutdown(new EchoScheduler(), serverChannels, null, 0L, TimeUnit.SECONDS, eventLoop),
+                "ChattyEchoServer-Shutdown");
+        hook.start();
+        hook.join(5_000L);
+        main.join(5_000L);
+
+        assertFalse("Shutdown did not complete", hook.isAlive());
+        assertFalse("Main is still waiting", main.isAlive());
+        assertFalse(serverChannel.isOpen());
+        assertNull(failure.get());
+    }
+}
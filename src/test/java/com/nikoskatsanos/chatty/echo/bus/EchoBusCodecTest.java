@@ -0,0 +1,149 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class EchoBusCodecTest {
+
+    @Test
+    public void broadcastRoundTrip() {
+        final WebSocketFrame[] frames = {new TextWebSocketFrame("{\"msg\":\"hello\"}"), new BinaryWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new
+                byte[]{1, 2, 3})), new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(new byte[]{4, 5}))};
+        final ByteBuf message = EchoBusCodec.encodeBroadcast(UnpooledByteBufAllocator.DEFAULT, "news", frames);
+        final RecordingListener listener = new RecordingListener();
+        EchoBusCodec.decode(message, listener);
+
+        assertEquals("news", listener.topic);
+        assertEquals(3, listener.frames.size());
+        assertTrue(listener.frames.get(0) instanceof TextWebSocketFrame);
+        assertTrue(listener.frames.get(0).isFinalFragment());
+        assertEquals("{\"msg\":\"hello\"}", listener.frames.get(0).content().toString(CharsetUtil.UTF_8));
+        assertTrue(listener.frames.get(1) instanceof BinaryWebSocketFrame);
+        assertFalse(listener.frames.get(1).isFinalFragment());
+        assertEquals(Unpooled.wrappedBuffer(new byte[]{1, 2, 3}), listener.frames.get(1).content());
+        assertTrue(listener.frames.get(2) instanceof ContinuationWebSocketFrame);
+        assertTrue(listener.frames.get(2).isFinalFragment());
+        assertEquals(Unpooled.wrappedBuffer(new byte[]{4, 5}), listener.frames.get(2).content());
+        listener.release();
+
+        assertFalse(message.isReadable());
+        assertEquals(1, message.refCnt());
+        message.release();
+        for (final WebSocketFrame frame : frames) {
+            assertEquals(1, frame.refCnt());
+            frame.release();
+        }
+    }
+
+    @Test
+    public void decodedFramesAreReleasedAfterTheListenerReturns() {
+        final WebSocketFrame frame = new TextWebSocketFrame("hello");
+        final ByteBuf message = EchoBusCodec.encodeBroadcast(UnpooledByteBufAllocator.DEFAULT, "news", new WebSocketFrame[]{frame});
+        final int[] refCntWithinListener = new int[1];
+        EchoBusCodec.decode(message, new RecordingListener() {
+            @Override
+            public void onBroadcast(final String topic, final WebSocketFrame[] frames) {
+                refCntWithinListener[0] = message.refCnt();
+            }
+        });
+        // the decoded frames are slices of the message
+        assertEquals(2, refCntWithinListener[0]);
+        assertEquals(1, message.refCnt());
+        message.release();
+        assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void metricsRoundTrip() {
+        final long[] values = new long[EchoMetricsSnapshot.VALUES];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 1_000L + 7L;
+        }
+        final ByteBuf message = EchoBusCodec.encodeMetrics(UnpooledByteBufAllocator.DEFAULT, new EchoMetricsSnapshot("node-a", 1_234L, values));
+        final RecordingListener listener = new RecordingListener();
+        EchoBusCodec.decode(message, listener);
+        message.release();
+
+        assertEquals("node-a", listener.snapshot.getNodeId());
+        assertEquals(1_234L, listener.snapshot.getTimestampMillis());
+        assertArrayEquals(values, listener.snapshot.values());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsUnknownMessageTypes() {
+        EchoBusCodec.decode(Unpooled.wrappedBuffer(new byte[]{42}), new RecordingListener());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsFrameCountsBeyondTheMessage() {
+        final ByteBuf message = Unpooled.buffer().writeByte(EchoBusCodec.BROADCAST).writeShort(0).writeInt(1_000);
+        EchoBusCodec.decode(message, new RecordingListener());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsFrameLengthsBeyondTheMessage() {
+        final ByteBuf message = Unpooled.buffer().writeByte(EchoBusCodec.BROADCAST).writeShort(0).writeInt(1).writeByte(0).writeInt(1_000);
+        EchoBusCodec.decode(message, new RecordingListener());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsMetricsCountsBeyondTheMessage() {
+        final ByteBuf message = Unpooled.buffer().writeByte(EchoBusCodec.METRICS).writeShort(0).writeLong(0L).writeInt(Integer.MAX_VALUE).writeLong(1L);
+        EchoBusCodec.decode(message, new RecordingListener());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsNegativeMetricsCounts() {
+        final ByteBuf message = Unpooled.buffer().writeByte(EchoBusCodec.METRICS).writeShort(0).writeLong(0L).writeInt(-1);
+        EchoBusCodec.decode(message, new RecordingListener());
+    }
+
+    /**
+     * <p>Keeps retained duplicates of the frames it receives, and the last metrics</p>
+     */
+    static class RecordingListener implements EchoBusListener {
+
+        final List<WebSocketFrame> frames = new ArrayList<>();
+        String topic;
+        EchoMetricsSnapshot snapshot;
+
+        @Override
+        public void onBroadcast(final String topic, final WebSocketFrame[] frames) {
+            this.topic = topic;
+            for (final WebSocketFrame frame : frames) {
+                this.frames.add(frame.retainedDuplicate());
+            }
+        }
+
+        @Override
+        public void onMetrics(final EchoMetricsSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        void release() {
+            this.frames.forEach(WebSocketFrame::release);
+            this.frames.clear();
+        }
+    }
+}
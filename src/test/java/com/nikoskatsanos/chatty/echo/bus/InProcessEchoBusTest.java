@@ -0,0 +1,51 @@
+package com.nikoskatsanos.chatty.echo.bus;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetricsSnapshot;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class InProcessEchoBusTest {
+
+    @Test
+    public void messagesReachEveryOtherNode() {
+        final InProcessEchoBus.Network network = new InProcessEchoBus.Network();
+        final EchoBusCodecTest.RecordingListener a = new EchoBusCodecTest.RecordingListener();
+        final EchoBusCodecTest.RecordingListener b = new EchoBusCodecTest.RecordingListener();
+        final EchoBusCodecTest.RecordingListener c = new EchoBusCodecTest.RecordingListener();
+        final InProcessEchoBus nodeA = new InProcessEchoBus("a", network);
+        final InProcessEchoBus nodeB = new InProcessEchoBus("b", network);
+        final InProcessEchoBus nodeC = new InProcessEchoBus("c", network);
+        nodeA.start(a);
+        nodeB.start(b);
+        nodeC.start(c);
+
+        final WebSocketFrame frame = new TextWebSocketFrame("hello");
+        nodeA.publish("news", new WebSocketFrame[]{frame});
+        assertTrue(a.frames.isEmpty());
+        for (final EchoBusCodecTest.RecordingListener listener : new EchoBusCodecTest.RecordingListener[]{b, c}) {
+            assertEquals("news", listener.topic);
+            assertEquals(1, listener.frames.size());
+            assertEquals("hello", listener.frames.get(0).content().toString(CharsetUtil.UTF_8));
+            listener.release();
+        }
+        // the publisher still owns its frames, and the bus holds on to none of them
+        assertEquals(1, frame.refCnt());
+        frame.release();
+
+        nodeC.close();
+        nodeB.publishMetrics(new EchoMetricsSnapshot("b", 1L, new long[EchoMetricsSnapshot.VALUES]));
+        assertEquals("b", a.snapshot.getNodeId());
+        assertNull(c.snapshot);
+        nodeA.close();
+        nodeB.close();
+    }
+}
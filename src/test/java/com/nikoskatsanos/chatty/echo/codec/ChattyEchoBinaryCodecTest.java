@@ -0,0 +1,123 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import com.nikoskatsanos.chatty.echo.engine.PacingDistribution;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author nikkatsa
+ */
+public class ChattyEchoBinaryCodecTest {
+
+    private static final byte[] PAYLOAD = "binary payload".getBytes(StandardCharsets.UTF_8);
+
+    private final ChattyEchoRequest request = new ChattyEchoRequest();
+
+    @Test
+    public void requestRoundTrip() throws Exception {
+        final ByteBuf content = ChattyEchoBinaryCodec.encodeRequest(UnpooledByteBufAllocator.DEFAULT, 7, 5L, 0, PAYLOAD);
+        ChattyEchoBinaryCodec.decodeRequest(content, this.request);
+        assertEquals(7, this.request.getTimes());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5L), this.request.getIntervalNanos());
+        assertEquals(PacingDistribution.CONSTANT, this.request.getPacing());
+        assertFalse(this.request.isSequenced());
+        assertEquals(Unpooled.wrappedBuffer(PAYLOAD), this.request.getPayload());
+        this.request.getPayload().release();
+        content.release();
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void requestRoundTripOfFlags() throws Exception {
+        for (final PacingDistribution pacing : PacingDistribution.values()) {
+            final int flags = ChattyEchoBinaryCodec.FLAG_SEQUENCED | ChattyEchoBinaryCodec.FLAG_DELAY_MICROS | ChattyEchoBinaryCodec.pacingFlags(pacing);
+            final ByteBuf content = ChattyEchoBinaryCodec.encodeRequest(UnpooledByteBufAllocator.DEFAULT, 3, 250L, flags, new byte[0]);
+            ChattyEchoBinaryCodec.decodeRequest(content, this.request);
+            assertEquals(TimeUnit.MICROSECONDS.toNanos(250L), this.request.getIntervalNanos());
+            assertEquals(pacing, this.request.getPacing());
+            assertTrue(this.request.isSequenced());
+            assertEquals(0, this.request.getPayload().readableBytes());
+            this.request.getPayload().release();
+            content.release();
+        }
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsShortRequests() throws Exception {
+        ChattyEchoBinaryCodec.decodeRequest(Unpooled.buffer().writeInt(1).writeLong(0L), this.request);
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsNegativeDelays() throws Exception {
+        ChattyEchoBinaryCodec.decodeRequest(ChattyEchoBinaryCodec.encodeRequest(UnpooledByteBufAllocator.DEFAULT, 1, -1L, 0, PAYLOAD), this.request);
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsUnknownPacing() throws Exception {
+        ChattyEchoBinaryCodec.decodeRequest(ChattyEchoBinaryCodec.encodeRequest(UnpooledByteBufAllocator.DEFAULT, 1, 0L, 0b1100, PAYLOAD), this.request);
+    }
+
+    @Test
+    public void rejectsDelaysAboveTheLimit() throws Exception {
+        final long delayMillis = TimeUnit.NANOSECONDS.toMillis(EchoPacing.MAX_INTERVAL_NANOS) + 1L;
+        try {
+            ChattyEchoBinaryCodec.decodeRequest(ChattyEchoBinaryCodec.encodeRequest(UnpooledByteBufAllocator.DEFAULT, 1, delayMillis, 0, PAYLOAD), this
+                    .request);
+            fail("Expected the request to be rejected");
+        } catch (final EchoRejectedException e) {
+            assertEquals(EchoRejection.MAX_DELAY_LIMIT, e.getRejection());
+        }
+    }
+
+    @Test
+    public void sequencedResponseCarriesItsHeaderAndThePayload() {
+        final BinaryEchoFrameSource source = new BinaryEchoFrameSource(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(PAYLOAD), 42L, true);
+        final WebSocketFrame frame = source.frame(9L);
+        final ByteBuf content = frame.content();
+        assertEquals(source.frameSize(), content.readableBytes());
+        assertEquals(42L, content.readLong());
+        assertEquals(9L, content.readLong());
+        assertTrue(content.readLong() > 0L);
+        assertEquals(Unpooled.wrappedBuffer(PAYLOAD), content);
+        frame.release();
+        source.release();
+    }
+
+    @Test
+    public void fragmentedResponseReassemblesToTheEcho() {
+        final BinaryEchoFrameSource source = new BinaryEchoFrameSource(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(PAYLOAD), 42L, true,
+                ChattyEchoBinaryCodec.RESPONSE_HEADER_LENGTH + 4);
+        assertTrue(source.fragments() > 1);
+        final ByteBuf echo = Unpooled.buffer();
+        final WebSocketFrame first = source.frame(1L);
+        assertFalse(first.isFinalFragment());
+        echo.writeBytes(first.content());
+        first.release();
+        for (int fragment = 1; fragment < source.fragments(); fragment++) {
+            final WebSocketFrame continuation = source.continuation(1L, fragment);
+            assertEquals(fragment == source.fragments() - 1, continuation.isFinalFragment());
+            echo.writeBytes(continuation.content());
+            continuation.release();
+        }
+        assertEquals(source.frameSize(), echo.readableBytes());
+        echo.skipBytes(ChattyEchoBinaryCodec.RESPONSE_HEADER_LENGTH);
+        assertEquals(Unpooled.wrappedBuffer(PAYLOAD), echo);
+        source.release();
+    }
+}
@@ -0,0 +1,178 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoPacing;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import com.nikoskatsanos.chatty.echo.model.ChattyEchoRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author nikkatsa
+ */
+public class ChattyEchoRequestDecoderTest {
+
+    private final ChattyEchoRequestDecoder decoder = new ChattyEchoRequestDecoder();
+    private final ChattyEchoRequest request = new ChattyEchoRequest();
+
+    @Test
+    public void decodesAnEchoRequest() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"sequenced\":true,\"topic\":\"news\"}");
+        assertEquals("hello", this.request.getMsg());
+        assertEquals(3, this.request.getTimes());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5L), this.request.getIntervalNanos());
+        assertTrue(this.request.isSequenced());
+        assertEquals("news", this.request.getTopic());
+    }
+
+    @Test
+    public void decodesDirectBuffers() throws Exception {
+        final byte[] json = "{\"msg\":\"hello\",\"times\":3,\"delay\":5}".getBytes(StandardCharsets.UTF_8);
+        final ByteBuf content = Unpooled.directBuffer(json.length).writeBytes(json);
+        this.decoder.decode(content, this.request);
+        assertEquals("hello", this.request.getMsg());
+        assertFalse(content.isReadable());
+        content.release();
+    }
+
+    @Test
+    public void advancesTheReaderIndexOfHeapBuffers() throws Exception {
+        final ByteBuf content = Unpooled.copiedBuffer("xx{\"msg\":\"hello\",\"times\":3,\"delay\":5}", StandardCharsets.UTF_8);
+        content.skipBytes(2);
+        this.decoder.decode(content, this.request);
+        assertEquals("hello", this.request.getMsg());
+        assertFalse(content.isReadable());
+        content.release();
+    }
+
+    @Test
+    public void decodingResetsThePreviousRequest() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"sequenced\":true,\"topic\":\"news\"}");
+        this.decode("{\"msg\":\"again\",\"times\":1,\"delay\":0}");
+        assertFalse(this.request.isSequenced());
+        assertNull(this.request.getTopic());
+        assertEquals(0L, this.request.getIntervalNanos());
+    }
+
+    @Test
+    public void delayMicrosTakesPrecedenceOverDelay() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"delayMicros\":250}");
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(250L), this.request.getIntervalNanos());
+    }
+
+    @Test
+    public void zeroDelayMicrosTakesPrecedenceOverDelay() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"delayMicros\":0}");
+        assertEquals(0L, this.request.getIntervalNanos());
+    }
+
+    @Test
+    public void rateTakesPrecedenceOverDelays() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"delayMicros\":250,\"rate\":1000}");
+        assertEquals(EchoPacing.rateToIntervalNanos(1000.0D), this.request.getIntervalNanos());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingTimes() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"delay\":5}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingPace() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingMsg() throws Exception {
+        this.decode("{\"times\":3,\"delay\":5}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownFields() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"colour\":\"blue\"}");
+    }
+
+    @Test
+    public void negativeDelayIsNoDelay() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":-1}");
+        assertEquals(0L, this.request.getIntervalNanos());
+        assertEquals(0L, this.request.toPacing().getIntervalNanos());
+    }
+
+    @Test
+    public void negativeDelayMicrosIsNoDelay() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"delay\":5,\"delayMicros\":" + Long.MIN_VALUE + "}");
+        assertEquals(0L, this.request.getIntervalNanos());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonPositiveRates() throws Exception {
+        this.decode("{\"msg\":\"hello\",\"times\":3,\"rate\":0}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsSubscriptionsWithEchoFields() throws Exception {
+        this.decode("{\"subscribe\":\"news\",\"times\":3}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonObjects() throws Exception {
+        this.decode("[1, 2]");
+    }
+
+    @Test
+    public void rejectsDelaysAboveTheLimit() throws Exception {
+        this.assertRejected("{\"msg\":\"hello\",\"times\":3,\"delay\":" + (TimeUnit.NANOSECONDS.toMillis(EchoPacing.MAX_INTERVAL_NANOS) + 1L) + "}");
+        this.assertRejected("{\"msg\":\"hello\",\"times\":3,\"delay\":0,\"delayMicros\":" + Long.MAX_VALUE + "}");
+    }
+
+    @Test
+    public void rejectsScenarioStepsPacedAboveTheLimit() throws Exception {
+        this.assertRejected("{\"steps\":[{\"echo\":{\"msg\":\"hello\",\"times\":3,\"delay\":" + Long.MAX_VALUE + "}}]}");
+    }
+
+    @Test
+    public void decodesScenarios() throws Exception {
+        this.decode("{\"repeat\":0,\"steps\":[{\"echo\":{\"msg\":\"hello\",\"times\":3,\"delayMicros\":10}},{\"pause\":20}]}");
+        assertTrue(this.request.isScenario());
+        assertEquals(0, this.request.getRepeat());
+        assertEquals(2, this.request.getSteps().size());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10L), this.request.getSteps().get(0).getIntervalNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20L), this.request.getSteps().get(1).getPauseNanos());
+    }
+
+    @Test
+    public void decodesStop() throws Exception {
+        this.decode("{\"stop\":true}");
+        assertTrue(this.request.isStop());
+    }
+
+    private void decode(final String json) throws IOException, EchoRejectedException {
+        final ByteBuf content = Unpooled.copiedBuffer(json, StandardCharsets.UTF_8);
+        try {
+            this.decoder.decode(content, this.request);
+        } finally {
+            content.release();
+        }
+    }
+
+    private void assertRejected(final String json) throws IOException {
+        try {
+            this.decode(json);
+            fail("Expected the request to be rejected: " + json);
+        } catch (final EchoRejectedException e) {
+            assertEquals(EchoRejection.MAX_DELAY_LIMIT, e.getRejection());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.nikoskatsanos.chatty.echo.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class JsonEchoFrameSourceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void sequencedFramesCarryTheirFieldsAndTheMessage() throws Exception {
+        this.assertSequencedFrames("{\"msg\":\"hello\"}");
+    }
+
+    @Test
+    public void sequencedFramesOfLargeMessagesCarryTheirFieldsAndTheMessage() throws Exception {
+        final StringBuilder msg = new StringBuilder();
+        for (int i = 0; i <= JsonEchoFrameSource.MAX_COPIED_BYTES; i++) {
+            msg.append('a');
+        }
+        this.assertSequencedFrames("{\"msg\":\"" + msg + "\"}");
+    }
+
+    @Test
+    public void frameSizeIsTheSizeOfTheFirstFrame() {
+        final JsonEchoFrameSource source = new JsonEchoFrameSource(UnpooledByteBufAllocator.DEFAULT, encoded("{\"msg\":\"hello\"}"), 12345L, true);
+        final WebSocketFrame frame = source.frame(0L);
+        assertEquals(frame.content().readableBytes(), source.frameSize());
+        frame.release();
+        source.release();
+    }
+
+    @Test
+    public void unsequencedFramesShareTheMessage() {
+        final ByteBuf encoded = encoded("{\"msg\":\"hello\"}");
+        final JsonEchoFrameSource source = new JsonEchoFrameSource(encoded);
+        final WebSocketFrame frame = source.frame(7L);
+        assertEquals("{\"msg\":\"hello\"}", frame.content().toString(StandardCharsets.UTF_8));
+        assertEquals(encoded.readableBytes(), source.frameSize());
+        frame.release();
+        source.release();
+        assertEquals(0, encoded.refCnt());
+    }
+
+    @Test
+    public void digits() {
+        assertEquals(1, JsonEchoFrameSource.digits(0L));
+        assertEquals(1, JsonEchoFrameSource.digits(9L));
+        assertEquals(2, JsonEchoFrameSource.digits(10L));
+        assertEquals(19, JsonEchoFrameSource.digits(Long.MAX_VALUE));
+    }
+
+    private void assertSequencedFrames(final String msg) throws Exception {
+        final JsonEchoFrameSource source = new JsonEchoFrameSource(UnpooledByteBufAllocator.DEFAULT, encoded(msg), 42L, true);
+        for (final long sequence : new long[]{0L, 9L, 10L, 123456789L}) {
+            final WebSocketFrame frame = source.frame(sequence);
+            final JsonNode echo = MAPPER.readTree(frame.content().toString(StandardCharsets.UTF_8));
+            frame.release();
+            assertEquals(42L, echo.get("burstId").asLong());
+            assertEquals(sequence, echo.get("seq").asLong());
+            assertTrue(echo.get("sentNanos").asLong() > 0L);
+            assertEquals(MAPPER.readTree(msg).get("msg"), echo.get("msg"));
+        }
+        source.release();
+    }
+
+    private static ByteBuf encoded(final String json) {
+        return Unpooled.copiedBuffer(json, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package com.nikoskatsanos.chatty.echo.compression;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Inflates what the {@link com.nikoskatsanos.chatty.echo.compression.EchoDeflater} produces as a RFC 7692 client does: the {@code 00 00 ff ff} tail
+ * removed from the last frame of a message is appended again before inflating it</p>
+ *
+ * @author nikkatsa
+ */
+public class EchoDeflaterTest {
+
+    private static final byte[] SYNC_FLUSH_TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    private final EchoMetrics metrics = new EchoMetrics();
+    private final EchoDeflater deflater = new EchoDeflater(Deflater.DEFAULT_COMPRESSION, this.metrics);
+    private final Inflater inflater = new Inflater(true);
+
+    @After
+    public void tearDown() {
+        this.deflater.end();
+        this.inflater.end();
+    }
+
+    @Test
+    public void heapPayloadInflatesToTheOriginal() throws Exception {
+        final byte[] message = message(1_024);
+        final ByteBuf deflated = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message), true);
+        assertArrayEquals(message, this.inflate(deflated, true));
+        assertEquals(1L, this.metrics.getDeflatedFrames());
+        assertEquals(message.length, this.metrics.getDeflateInputBytes());
+    }
+
+    @Test
+    public void directPayloadLargerThanAChunkInflatesToTheOriginal() throws Exception {
+        final byte[] message = message(50_000);
+        final ByteBuf payload = Unpooled.directBuffer(message.length).writeBytes(message);
+        final ByteBuf deflated = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, payload, true);
+        payload.release();
+        assertArrayEquals(message, this.inflate(deflated, true));
+    }
+
+    @Test
+    public void onlyTheLastFragmentHasItsTailRemoved() throws Exception {
+        final byte[] message = message(4_096);
+        final ByteBuf first = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message, 0, 1_000), false);
+        assertArrayEquals(SYNC_FLUSH_TAIL, ByteBufUtil.getBytes(first, first.writerIndex() - SYNC_FLUSH_TAIL.length, SYNC_FLUSH_TAIL.length));
+        final ByteBuf last = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message, 1_000, message.length - 1_000), true);
+
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        inflated.write(this.inflate(first, false));
+        inflated.write(this.inflate(last, true));
+        assertArrayEquals(message, inflated.toByteArray());
+    }
+
+    @Test
+    public void messagesShareTheContextUntilReset() throws Exception {
+        final byte[] message = message(2_048);
+        final ByteBuf first = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message), true);
+        final ByteBuf second = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message), true);
+        // the second message refers back to the first, hence it is smaller and needs the same inflater
+        assertArrayEquals(message, this.inflate(first, true));
+        final int secondLength = second.readableBytes();
+        assertArrayEquals(message, this.inflate(second, true));
+
+        this.deflater.reset();
+        final ByteBuf afterReset = this.deflater.deflate(UnpooledByteBufAllocator.DEFAULT, Unpooled.wrappedBuffer(message), true);
+        final Inflater freshInflater = new Inflater(true);
+        try {
+            final int afterResetLength = afterReset.readableBytes();
+            assertArrayEquals(message, inflate(afterReset, true, freshInflater));
+            assertTrue(afterResetLength > secondLength);
+        } finally {
+            freshInflater.end();
+        }
+    }
+
+    private byte[] inflate(final ByteBuf deflated, final boolean finalFragment) throws DataFormatException {
+        return inflate(deflated, finalFragment, this.inflater);
+    }
+
+    /**
+     * <p>Inflates a frame's payload, which is released</p>
+     */
+    private static byte[] inflate(final ByteBuf deflated, final boolean finalFragment, final Inflater inflater) throws DataFormatException {
+        final ByteBuf input = finalFragment ? Unpooled.wrappedBuffer(deflated, Unpooled.wrappedBuffer(SYNC_FLUSH_TAIL)) : deflated;
+        try {
+            inflater.setInput(ByteBufUtil.getBytes(input));
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4_096];
+            while (!inflater.needsInput() && !inflater.finished()) {
+                out.write(buffer, 0, inflater.inflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            input.release();
+        }
+    }
+
+    /**
+     * <p>A compressible message of the given size: repeated text with some noise</p>
+     */
+    private static byte[] message(final int size) {
+        final Random random = new Random(42L);
+        final byte[] text = "{\"msg\":\"Chatty Echo Server\",\"seq\":".getBytes(StandardCharsets.US_ASCII);
+        final byte[] message = new byte[size];
+        for (int i = 0; i < size; i++) {
+            message[i] = i % 64 == 63 ? (byte) ('0' + random.nextInt(10)) : text[i % text.length];
+        }
+        return message;
+    }
+}
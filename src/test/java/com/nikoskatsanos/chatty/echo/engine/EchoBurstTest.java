@@ -0,0 +1,283 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class EchoBurstTest {
+
+    private static final long NO_LOG = 0L;
+
+    private final RecordingSink sink = new RecordingSink();
+    private final ByteBuf payload = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+    private EchoScheduler echoScheduler;
+    private EmbeddedChannel channel;
+
+    @After
+    public void tearDown() {
+        this.sink.release();
+        if (this.channel != null) {
+            this.channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void emitsEveryEchoAndCompletes() {
+        this.connect(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT);
+        final EchoBurst burst = this.newBurst(this.sink, 5, 0L);
+        this.echoScheduler.start(this.channel, burst);
+        assertEquals(5, burst.getRemaining());
+
+        this.channel.runPendingTasks();
+        assertTrue(burst.isDone());
+        assertEquals(5, burst.getEmitted());
+        assertEquals(0, burst.getRemaining());
+        assertEquals(5, this.sink.frames.size());
+        assertEquals("hello", this.sink.frames.get(4).content().toString(CharsetUtil.UTF_8));
+        assertEquals(5L, this.echoScheduler.getMetrics().getFramesSent());
+        // the burst released its source once done, the frames still share the payload
+        this.sink.release();
+        assertEquals(0, this.payload.refCnt());
+    }
+
+    @Test
+    public void flushesOnceTheFlushLimitIsReached() {
+        this.connect(new FlushPolicy(2, Integer.MAX_VALUE, 0), BackpressurePolicy.DEFAULT);
+        final EchoBurst burst = this.newBurst(this.sink, 5, 0L);
+        this.echoScheduler.start(this.channel, burst);
+        this.channel.runPendingTasks();
+        assertTrue(burst.isDone());
+        assertEquals(5, this.sink.frames.size());
+        assertEquals(3, this.sink.flushes);
+    }
+
+    @Test
+    public void pausesWhileTheSinkIsNotWritable() {
+        this.connect(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT);
+        final EchoBurst burst = this.newBurst(this.sink, 5, 0L);
+        this.sink.writable = false;
+        this.echoScheduler.start(this.channel, burst);
+        this.channel.runPendingTasks();
+        assertTrue(burst.isPaused());
+        assertEquals(0, this.sink.frames.size());
+        assertEquals(1L, this.echoScheduler.getMetrics().getStalls());
+
+        this.sink.writable = true;
+        this.echoScheduler.writabilityChanged(this.channel);
+        this.channel.runPendingTasks();
+        assertFalse(burst.isPaused());
+        assertTrue(burst.isDone());
+        assertEquals(5, this.sink.frames.size());
+    }
+
+    @Test
+    public void dropsTheEchoesDueWhilePaused() throws Exception {
+        this.connect(FlushPolicy.DEFAULT, new BackpressurePolicy(SlowConsumerPolicy.DROP, BackpressurePolicy.DEFAULT_LOW_WATER_MARK, BackpressurePolicy
+                .DEFAULT_HIGH_WATER_MARK));
+        final EchoBurst burst = this.pauseAndResume(1_000);
+        final long dropped = this.echoScheduler.getMetrics().getDroppedEchoes();
+        assertTrue("Expected the echoes due while paused to be dropped, were " + dropped, dropped >= 10L);
+        assertEquals(1_000L - dropped, burst.getRemaining());
+        assertEquals(0, burst.getEmitted());
+        burst.cancel();
+    }
+
+    @Test
+    public void coalescesTheEchoesDueWhilePausedIntoTheLastOfThem() throws Exception {
+        this.connect(FlushPolicy.DEFAULT, new BackpressurePolicy(SlowConsumerPolicy.COALESCE, BackpressurePolicy.DEFAULT_LOW_WATER_MARK, BackpressurePolicy
+                .DEFAULT_HIGH_WATER_MARK));
+        final EchoBurst burst = this.pauseAndResume(1_000);
+        final long coalesced = this.echoScheduler.getMetrics().getCoalescedEchoes();
+        assertTrue("Expected the echoes due while paused to be coalesced, were " + coalesced, coalesced >= 10L);
+        assertEquals(1_000L - coalesced, burst.getRemaining());
+
+        // the last of the due echoes is emitted right away
+        this.channel.runPendingTasks();
+        assertTrue(burst.getEmitted() >= 1);
+        burst.cancel();
+    }
+
+    @Test
+    public void disconnectsAConnectionWhichIsNotWritable() {
+        this.connect(FlushPolicy.DEFAULT, new BackpressurePolicy(SlowConsumerPolicy.DISCONNECT, 8, 16));
+        // written but not flushed, hence held against the connection's water marks
+        this.channel.write(Unpooled.wrappedBuffer(new byte[64]));
+        assertFalse(this.channel.isWritable());
+
+        final EchoBurst burst = new EchoBurst(this.channel, new PayloadSource(this.payload), echoes -> {
+        }, 5, 0L, TimeUnit.MILLISECONDS);
+        this.echoScheduler.start(this.channel, burst);
+        this.channel.runPendingTasks();
+        assertFalse(this.channel.isActive());
+        assertTrue(burst.isDone());
+        assertEquals(1L, this.echoScheduler.getMetrics().getSlowConsumerDisconnects());
+    }
+
+    @Test
+    public void pausesRatherThanDisconnectsIfOnlyTheSinkIsNotWritable() {
+        this.connect(FlushPolicy.DEFAULT, new BackpressurePolicy(SlowConsumerPolicy.DISCONNECT, BackpressurePolicy.DEFAULT_LOW_WATER_MARK,
+                BackpressurePolicy.DEFAULT_HIGH_WATER_MARK));
+        final EchoBurst burst = this.newBurst(this.sink, 5, 0L);
+        this.sink.writable = false;
+        this.echoScheduler.start(this.channel, burst);
+        this.channel.runPendingTasks();
+        assertTrue(this.channel.isActive());
+        assertTrue(burst.isPaused());
+        assertEquals(0L, this.echoScheduler.getMetrics().getSlowConsumerDisconnects());
+        burst.cancel();
+    }
+
+    @Test
+    public void cancellingReleasesTheSource() {
+        this.connect(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT);
+        final EchoBurst burst = this.newBurst(this.sink, 5, 0L);
+        this.echoScheduler.start(this.channel, burst);
+        assertTrue(this.echoScheduler.cancel(this.channel));
+        this.channel.runPendingTasks();
+        assertTrue(burst.isDone());
+        assertEquals(0, this.sink.frames.size());
+        assertEquals(0, this.payload.refCnt());
+        assertEquals(5L, this.echoScheduler.getMetrics().getCancelledEchoes());
+    }
+
+    @Test
+    public void reportsTheEchoesNotSampledOnceComplete() {
+        this.connect(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT, new EchoLogPolicy(false, 1L, TimeUnit.HOURS));
+        final List<Long> reported = new ArrayList<>();
+        final EchoBurst burst = new EchoBurst(this.channel, this.sink, new PayloadSource(this.payload), reported::add, 5, EchoPacing.constant(0L, TimeUnit
+                .MILLISECONDS));
+        this.echoScheduler.start(this.channel, burst);
+        this.channel.runPendingTasks();
+        assertTrue(burst.isDone());
+        assertEquals(Arrays.asList(1L, 4L), reported);
+    }
+
+    @Test
+    public void reportsTheEchoesNotSampledOnceCancelled() throws Exception {
+        this.connect(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT, new EchoLogPolicy(false, 1L, TimeUnit.HOURS));
+        final List<Long> reported = new ArrayList<>();
+        final EchoBurst burst = new EchoBurst(this.channel, this.sink, new PayloadSource(this.payload), reported::add, 1_000, EchoPacing.constant(1L, TimeUnit
+                .MILLISECONDS));
+        this.echoScheduler.start(this.channel, burst);
+        for (int round = 0; round < 1_000 && burst.getEmitted() < 3; round++) {
+            TimeUnit.MILLISECONDS.sleep(1L);
+            this.channel.runScheduledPendingTasks();
+            this.channel.runPendingTasks();
+        }
+        assertEquals(Collections.singletonList(1L), reported);
+
+        assertTrue(this.echoScheduler.cancel(this.channel));
+        this.channel.runPendingTasks();
+        assertEquals(Arrays.asList(1L, burst.getEmitted() - 1L), reported);
+    }
+
+    /**
+     * <p>Starts a burst echoing every millisecond to a sink which is not writable, lets echoes become due while it is paused and then resumes it</p>
+     */
+    private EchoBurst pauseAndResume(final int times) throws InterruptedException {
+        final EchoBurst burst = this.newBurst(this.sink, times, 1L);
+        this.sink.writable = false;
+        this.echoScheduler.start(this.channel, burst);
+        TimeUnit.MILLISECONDS.sleep(2L);
+        this.channel.runScheduledPendingTasks();
+        assertTrue(burst.isPaused());
+
+        TimeUnit.MILLISECONDS.sleep(20L);
+        this.sink.writable = true;
+        this.echoScheduler.writabilityChanged(this.channel);
+        assertFalse(burst.isPaused());
+        return burst;
+    }
+
+    private void connect(final FlushPolicy flushPolicy, final BackpressurePolicy backpressurePolicy) {
+        this.connect(flushPolicy, backpressurePolicy, new EchoLogPolicy(false, NO_LOG, TimeUnit.MILLISECONDS));
+    }
+
+    private void connect(final FlushPolicy flushPolicy, final BackpressurePolicy backpressurePolicy, final EchoLogPolicy echoLogPolicy) {
+        this.echoScheduler = new EchoScheduler(flushPolicy, backpressurePolicy, echoLogPolicy, new EchoLimits(0, 0L, 0L, 0L, 0L, 0L));
+        this.channel = new EmbeddedChannel();
+        this.echoScheduler.register(this.channel);
+    }
+
+    private EchoBurst newBurst(final EchoSink echoSink, final int times, final long delayMillis) {
+        return new EchoBurst(this.channel, echoSink, new PayloadSource(this.payload), echoes -> {
+        }, times, EchoPacing.constant(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * <p>Echoes text frames sharing the given payload</p>
+     */
+    static class PayloadSource implements EchoFrameSource {
+
+        private final ByteBuf payload;
+
+        PayloadSource(final ByteBuf payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public WebSocketFrame frame(final long sequence) {
+            return new TextWebSocketFrame(this.payload.retainedDuplicate());
+        }
+
+        @Override
+        public int frameSize() {
+            return this.payload.readableBytes();
+        }
+
+        @Override
+        public void release() {
+            this.payload.release();
+        }
+    }
+
+    /**
+     * <p>Keeps the frames written to it, and counts its flushes</p>
+     */
+    static class RecordingSink implements EchoSink {
+
+        final List<WebSocketFrame> frames = new ArrayList<>();
+        boolean writable = true;
+        int flushes;
+
+        @Override
+        public boolean isWritable() {
+            return this.writable;
+        }
+
+        @Override
+        public void write(final WebSocketFrame frame) {
+            this.frames.add(frame);
+        }
+
+        @Override
+        public void flush() {
+            this.flushes++;
+        }
+
+        void release() {
+            for (final WebSocketFrame frame : this.frames) {
+                frame.release();
+            }
+            this.frames.clear();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class EchoPacingTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void constantPacingSpacesEchoesExactlyByTheInterval() {
+        final EchoPacing pacing = new EchoPacing(PacingDistribution.CONSTANT, INTERVAL_NANOS, EchoPacing.DEFAULT_BURST_SIZE);
+        for (long sequence = 0L; sequence < 100L; sequence++) {
+            assertEquals(INTERVAL_NANOS, pacing.nextIntervalNanos(sequence));
+        }
+    }
+
+    @Test
+    public void burstyPacingAveragesTheIntervalOverWholeGroups() {
+        final int burstSize = 10;
+        final EchoPacing pacing = new EchoPacing(PacingDistribution.BURSTY, INTERVAL_NANOS, burstSize);
+        assertEquals(INTERVAL_NANOS * burstSize, pacing.nextIntervalNanos(0L));
+        for (long sequence = 1L; sequence < burstSize; sequence++) {
+            assertEquals(0L, pacing.nextIntervalNanos(sequence));
+        }
+        assertEquals(INTERVAL_NANOS, this.meanIntervalNanos(pacing, 100 * burstSize), 0.0D);
+    }
+
+    @Test
+    public void poissonPacingAveragesTheInterval() {
+        final EchoPacing pacing = new EchoPacing(PacingDistribution.POISSON, INTERVAL_NANOS, EchoPacing.DEFAULT_BURST_SIZE);
+        // the standard error of the mean of 200k exponential samples is about 0.2% of the interval
+        assertEquals(INTERVAL_NANOS, this.meanIntervalNanos(pacing, 200_000), INTERVAL_NANOS * 0.02D);
+    }
+
+    @Test
+    public void rampChangesTheRateLinearly() {
+        final long fromNanos = EchoPacing.rateToIntervalNanos(100.0D);
+        final long toNanos = EchoPacing.rateToIntervalNanos(1_000.0D);
+        final EchoPacing pacing = new EchoPacing(PacingDistribution.CONSTANT, fromNanos, EchoPacing.DEFAULT_BURST_SIZE, toNanos, 1_001);
+        assertTrue(pacing.isRamp());
+        assertEquals(toNanos, pacing.getMinIntervalNanos());
+        assertEquals(fromNanos, pacing.nextIntervalNanos(0L));
+        assertEquals(EchoPacing.rateToIntervalNanos(550.0D), pacing.nextIntervalNanos(500L));
+        assertEquals(toNanos, pacing.nextIntervalNanos(1_000L));
+        // the ramp holds its target after its last echo
+        assertEquals(toNanos, pacing.nextIntervalNanos(2_000L));
+    }
+
+    @Test
+    public void zeroIntervalEmitsAllTheEchoesAtOnce() {
+        for (final PacingDistribution distribution : PacingDistribution.values()) {
+            assertEquals(0L, new EchoPacing(distribution, 0L, EchoPacing.DEFAULT_BURST_SIZE).nextIntervalNanos(0L));
+        }
+    }
+
+    @Test
+    public void rateToIntervalNanos() {
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1L), EchoPacing.rateToIntervalNanos(1_000.0D));
+        assertEquals(TimeUnit.SECONDS.toNanos(2L), EchoPacing.rateToIntervalNanos(0.5D));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIntervalsAboveTheMaximum() {
+        new EchoPacing(PacingDistribution.CONSTANT, EchoPacing.MAX_INTERVAL_NANOS + 1L, EchoPacing.DEFAULT_BURST_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRampsFromNoInterval() {
+        new EchoPacing(PacingDistribution.CONSTANT, 0L, EchoPacing.DEFAULT_BURST_SIZE, INTERVAL_NANOS, 10);
+    }
+
+    private double meanIntervalNanos(final EchoPacing pacing, final int echoes) {
+        long total = 0L;
+        for (int sequence = 0; sequence < echoes; sequence++) {
+            total += pacing.nextIntervalNanos(sequence);
+        }
+        return (double) total / echoes;
+    }
+}
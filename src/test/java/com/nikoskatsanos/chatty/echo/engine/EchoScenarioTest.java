@@ -0,0 +1,166 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nikkatsa
+ */
+public class EchoScenarioTest {
+
+    private final EchoBurstTest.RecordingSink sink = new EchoBurstTest.RecordingSink();
+    private final ByteBuf payload = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+    private EchoScheduler echoScheduler;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        this.echoScheduler = new EchoScheduler(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT, new EchoLogPolicy(false, 0L, TimeUnit.MILLISECONDS), new
+                EchoLimits(0, 0L, 0L, 0L, 0L, 0L));
+        this.channel = new EmbeddedChannel();
+        this.echoScheduler.register(this.channel);
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+        this.sink.release();
+        this.payload.release();
+    }
+
+    @Test
+    public void runsTheStepsTheGivenNumberOfTimes() {
+        final EchoScenario<TestStep> scenario = this.newScenario(2, TestStep.burst(2, 0L), TestStep.burst(3, 0L));
+        this.echoScheduler.start(this.channel, scenario);
+        this.channel.runPendingTasks();
+        assertTrue(scenario.isDone());
+        assertEquals(2, scenario.getIteration());
+        assertEquals(10, this.sink.frames.size());
+        assertEquals(4L, this.echoScheduler.getMetrics().getScenarioSteps());
+        assertEquals(0L, this.echoScheduler.getMetrics().getActiveScenarios());
+    }
+
+    @Test
+    public void pausesBetweenSteps() throws Exception {
+        final EchoScenario<TestStep> scenario = this.newScenario(1, TestStep.burst(1, 0L), TestStep.pause(5L), TestStep.burst(1, 0L));
+        this.echoScheduler.start(this.channel, scenario);
+        this.channel.runPendingTasks();
+        assertEquals(1, this.sink.frames.size());
+        assertEquals(1, scenario.getStep());
+        assertFalse(scenario.isDone());
+
+        this.runFor(scenario::isDone);
+        assertTrue(scenario.isDone());
+        assertEquals(2, this.sink.frames.size());
+    }
+
+    @Test
+    public void runsUntilStoppedIfNotRepeated() throws Exception {
+        final EchoScenario<TestStep> scenario = this.newScenario(0, TestStep.burst(1, 1L));
+        this.echoScheduler.start(this.channel, scenario);
+        this.runFor(() -> scenario.getIteration() >= 3);
+        assertFalse(scenario.isDone());
+
+        assertTrue(this.echoScheduler.cancel(this.channel));
+        assertTrue(scenario.isDone());
+        assertEquals(0L, this.echoScheduler.getMetrics().getActiveScenarios());
+        final int frames = this.sink.frames.size();
+        TimeUnit.MILLISECONDS.sleep(5L);
+        this.channel.runScheduledPendingTasks();
+        this.channel.runPendingTasks();
+        assertEquals(frames, this.sink.frames.size());
+    }
+
+    @Test
+    public void drainingFinishesTheCurrentStepAndStops() throws Exception {
+        final EchoScenario<TestStep> scenario = this.newScenario(1, TestStep.burst(2, 1L), TestStep.burst(2, 0L));
+        this.echoScheduler.start(this.channel, scenario);
+        assertEquals(2L, this.echoScheduler.drain(0L, TimeUnit.MILLISECONDS));
+
+        this.runFor(scenario::isDone);
+        assertTrue(scenario.isDone());
+        assertEquals(0, scenario.getStep());
+        assertEquals(2, this.sink.frames.size());
+        assertEquals(0L, this.echoScheduler.getMetrics().getActiveScenarios());
+    }
+
+    @Test
+    public void stepWhichCannotStartStopsTheScenario() {
+        final EchoScenario<TestStep> scenario = new EchoScenario<>(this.channel, Arrays.asList(TestStep.burst(1, 0L), TestStep.burst(1, 0L)), 1, step -> {
+            if (this.sink.frames.isEmpty()) {
+                return this.newBurst(step);
+            }
+            throw new EchoRejectedException(EchoRejection.TIMES_LIMIT, 1L, 0L);
+        });
+        this.echoScheduler.start(this.channel, scenario);
+        this.channel.runPendingTasks();
+        assertTrue(scenario.isDone());
+        assertEquals(1, scenario.getStep());
+        assertEquals(1, this.sink.frames.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsScenariosWithoutSteps() {
+        new EchoScenario<TestStep>(this.channel, Collections.emptyList(), 1, this::newBurst);
+    }
+
+    private EchoScenario<TestStep> newScenario(final int repeat, final TestStep... steps) {
+        return new EchoScenario<>(this.channel, Arrays.asList(steps), repeat, this::newBurst);
+    }
+
+    private EchoBurst newBurst(final TestStep step) {
+        return new EchoBurst(this.channel, this.sink, new EchoBurstTest.PayloadSource(this.payload.retain()), echoes -> {
+        }, step.times, EchoPacing.constant(step.delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * <p>Runs the channel's tasks, scheduled ones included, until the condition holds or a number of rounds has passed</p>
+     */
+    private void runFor(final BooleanSupplier condition) throws InterruptedException {
+        for (int round = 0; round < 1_000 && !condition.getAsBoolean(); round++) {
+            TimeUnit.MILLISECONDS.sleep(1L);
+            this.channel.runScheduledPendingTasks();
+            this.channel.runPendingTasks();
+        }
+    }
+
+    private static class TestStep implements EchoScenario.Step {
+
+        private final int times;
+        private final long delayMillis;
+        private final long pauseNanos;
+
+        private TestStep(final int times, final long delayMillis, final long pauseNanos) {
+            this.times = times;
+            this.delayMillis = delayMillis;
+            this.pauseNanos = pauseNanos;
+        }
+
+        static TestStep burst(final int times, final long delayMillis) {
+            return new TestStep(times, delayMillis, 0L);
+        }
+
+        static TestStep pause(final long millis) {
+            return new TestStep(0, 0L, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        @Override
+        public long getPauseNanos() {
+            return this.pauseNanos;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import com.nikoskatsanos.chatty.echo.metrics.EchoMetrics;
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author nikkatsa
+ */
+public class EchoTopicsTest {
+
+    private final EchoTopics topics = new EchoTopics();
+
+    @Test
+    public void subscribingCreatesTheTopic() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        assertNull(this.topics.find("news"));
+        assertTrue(this.topics.subscribe("news", channel));
+        assertFalse(this.topics.subscribe("news", channel));
+        final EchoTopic topic = this.topics.find("news");
+        assertEquals("news", topic.getName());
+        assertEquals(1, topic.size());
+
+        assertTrue(this.topics.subscribe("news", new EmbeddedChannel()));
+        assertSame(topic, this.topics.find("news"));
+        assertEquals(2, topic.size());
+        assertEquals(1, this.topics.size());
+    }
+
+    @Test
+    public void topicIsRemovedOnceItsLastSubscriberUnsubscribes() throws Exception {
+        final EmbeddedChannel first = new EmbeddedChannel();
+        final EmbeddedChannel second = new EmbeddedChannel();
+        this.topics.subscribe("news", first);
+        this.topics.subscribe("news", second);
+
+        assertTrue(this.topics.unsubscribe("news", first));
+        assertFalse(this.topics.unsubscribe("news", first));
+        assertEquals(1, this.topics.find("news").size());
+        assertTrue(this.topics.unsubscribe("news", second));
+        assertNull(this.topics.find("news"));
+        assertEquals(0, this.topics.size());
+        assertFalse(this.topics.unsubscribe("news", second));
+    }
+
+    @Test
+    public void topicIsRemovedOnceItsLastSubscriberCloses() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        this.topics.subscribe("news", channel);
+        channel.close();
+        assertNull(this.topics.find("news"));
+    }
+
+    @Test
+    public void rejectsTopicNamesAboveTheLimit() {
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i <= EchoTopics.MAX_TOPIC_NAME_LENGTH; i++) {
+            name.append('x');
+        }
+        try {
+            this.topics.subscribe(name.toString(), new EmbeddedChannel());
+            fail("Expected the subscription to be rejected");
+        } catch (final EchoRejectedException e) {
+            assertEquals(EchoRejection.TOPIC_NAME_LIMIT, e.getRejection());
+        }
+        assertEquals(0, this.topics.size());
+    }
+
+    @Test
+    public void broadcastReachesEverySubscriber() throws Exception {
+        final EmbeddedChannel first = new EmbeddedChannel();
+        final EmbeddedChannel second = new EmbeddedChannel();
+        this.topics.subscribe("news", first);
+        this.topics.subscribe("news", second);
+        final EchoMetrics metrics = new EchoMetrics();
+
+        final WebSocketFrame frame = new TextWebSocketFrame("hello");
+        this.topics.find("news").broadcast(new WebSocketFrame[]{frame}, metrics);
+        for (final EmbeddedChannel subscriber : new EmbeddedChannel[]{first, second}) {
+            final WebSocketFrame received = subscriber.readOutbound();
+            assertEquals("hello", received.content().toString(CharsetUtil.UTF_8));
+            received.release();
+            assertNull(subscriber.readOutbound());
+        }
+        assertEquals(2L, metrics.getFramesFannedOut());
+        // the caller still owns the frame
+        assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void topicIsNotWritableWhileTooManyFanOutsArePending() throws Exception {
+        final EventLoopGroup eventLoop = new DefaultEventLoopGroup(1);
+        try {
+            final Channel subscriber = new LocalChannel();
+            eventLoop.register(subscriber).sync();
+            this.topics.subscribe("news", subscriber);
+            final EchoTopic topic = this.topics.find("news");
+
+            final CountDownLatch blocked = new CountDownLatch(1);
+            eventLoop.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            final WebSocketFrame frame = new TextWebSocketFrame("hello");
+            for (int i = 0; i < EchoTopic.MAX_PENDING_FAN_OUTS; i++) {
+                assertTrue(topic.isWritable());
+                topic.broadcast(new WebSocketFrame[]{frame}, new EchoMetrics());
+            }
+            assertFalse(topic.isWritable());
+            assertEquals(EchoTopic.MAX_PENDING_FAN_OUTS, topic.getPendingFanOuts());
+
+            final CountDownLatch writable = new CountDownLatch(1);
+            topic.onWritable(writable::countDown);
+            assertEquals(1L, writable.getCount());
+            blocked.countDown();
+            assertTrue(writable.await(5L, TimeUnit.SECONDS));
+            assertTrue(topic.isWritable());
+            subscriber.close().sync();
+            assertEquals(0, topic.getPendingFanOuts());
+            assertEquals(1, frame.refCnt());
+            frame.release();
+        } finally {
+            eventLoop.shutdownGracefully(0L, 0L, TimeUnit.SECONDS).sync();
+        }
+    }
+}
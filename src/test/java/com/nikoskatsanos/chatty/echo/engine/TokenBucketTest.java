@@ -0,0 +1,63 @@
+package com.nikoskatsanos.chatty.echo.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author nikkatsa
+ */
+public class TokenBucketTest {
+
+    private static final long NOW = TimeUnit.SECONDS.toNanos(100L);
+
+    @Test
+    public void aFullBucketHoldsASecondsWorthOfTokens() {
+        final TokenBucket bucket = new TokenBucket(10L);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0L, bucket.tryAcquire(1L, NOW));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), bucket.tryAcquire(1L, NOW));
+    }
+
+    @Test
+    public void tokensRefillAtTheRate() {
+        final TokenBucket bucket = new TokenBucket(10L);
+        assertEquals(0L, bucket.tryAcquire(10L, NOW));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50L), bucket.tryAcquire(1L, NOW + TimeUnit.MILLISECONDS.toNanos(50L)));
+        assertEquals(0L, bucket.tryAcquire(1L, NOW + TimeUnit.MILLISECONDS.toNanos(100L)));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), bucket.tryAcquire(1L, NOW + TimeUnit.MILLISECONDS.toNanos(100L)));
+    }
+
+    @Test
+    public void anIdleBucketDoesNotHoldMoreThanASecondsWorthOfTokens() {
+        final TokenBucket bucket = new TokenBucket(10L);
+        assertEquals(0L, bucket.tryAcquire(1L, NOW));
+        final long later = NOW + TimeUnit.SECONDS.toNanos(60L);
+        assertEquals(0L, bucket.tryAcquire(10L, later));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), bucket.tryAcquire(1L, later));
+    }
+
+    @Test
+    public void aFullBucketAdmitsAnAcquisitionLargerThanItsCapacity() {
+        final TokenBucket bucket = new TokenBucket(10L);
+        assertEquals(0L, bucket.tryAcquire(20L, NOW));
+        assertEquals(TimeUnit.SECONDS.toNanos(1L) + TimeUnit.MILLISECONDS.toNanos(100L), bucket.tryAcquire(1L, NOW));
+    }
+
+    @Test
+    public void releasedTokensCanBeAcquiredAgain() {
+        final TokenBucket bucket = new TokenBucket(10L);
+        assertEquals(0L, bucket.tryAcquire(10L, NOW));
+        bucket.release(3L);
+        assertEquals(0L, bucket.tryAcquire(3L, NOW));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), bucket.tryAcquire(1L, NOW));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRates() {
+        new TokenBucket(0L);
+    }
+}
@@ -0,0 +1,155 @@
+package com.nikoskatsanos.chatty.echo.handlers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikoskatsanos.chatty.echo.codec.ChattyEchoProtocol;
+import com.nikoskatsanos.chatty.echo.engine.BackpressurePolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoLimits;
+import com.nikoskatsanos.chatty.echo.engine.EchoLogPolicy;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import com.nikoskatsanos.chatty.echo.engine.EchoScheduler;
+import com.nikoskatsanos.chatty.echo.engine.FlushPolicy;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Feeds WebSocket frames, encoded as a client sends them, through the full pipeline of a connection and decodes the frames it writes back</p>
+ *
+ * @author nikkatsa
+ */
+public class ChattyEchoHandlerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String HANDSHAKE = "GET " + ChattyEchoServerInitializer.WEBSOCKET_PATH + " HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+            "Sec-WebSocket-Version: 13\r\n" +
+            "Sec-WebSocket-Protocol: " + ChattyEchoProtocol.JSON.getSubprotocol() + "\r\n" +
+            "\r\n";
+    private static final int MAX_TIMES = 5;
+
+    private EchoScheduler echoScheduler;
+    private EmbeddedChannel channel;
+    private EmbeddedChannel client;
+
+    @Before
+    public void setUp() {
+        this.echoScheduler = new EchoScheduler(FlushPolicy.DEFAULT, BackpressurePolicy.DEFAULT, new EchoLogPolicy(false, 0L, TimeUnit.MILLISECONDS), new
+                EchoLimits(MAX_TIMES, 0L, 0L, 0L, 0L, 0L));
+        this.channel = new EmbeddedChannel(new ChattyEchoServerInitializer(this.echoScheduler));
+        this.client = new EmbeddedChannel(new WebSocket08FrameEncoder(true), new WebSocket08FrameDecoder(false, true, 65_536));
+
+        this.channel.writeInbound(Unpooled.copiedBuffer(HANDSHAKE, CharsetUtil.US_ASCII));
+        Object response;
+        int responses = 0;
+        while ((response = this.channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(response);
+            responses++;
+        }
+        assertTrue("WebSocket handshake did not complete", responses > 0);
+        assertEquals(1L, this.echoScheduler.getMetrics().getActiveConnections());
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+        this.client.finishAndReleaseAll();
+    }
+
+    @Test
+    public void admittedRequestIsEchoed() throws Exception {
+        this.send("{\"msg\":\"hello\",\"times\":3,\"delay\":0}");
+        final List<JsonNode> echoes = this.receive(3);
+        assertEquals(3, echoes.size());
+        for (final JsonNode echo : echoes) {
+            assertEquals("hello", echo.get("msg").asText());
+        }
+        assertEquals(1L, this.echoScheduler.getMetrics().getRequests());
+        assertEquals(0L, this.echoScheduler.getMetrics().getRequestsRejected());
+    }
+
+    @Test
+    public void requestAboveTheLimitsIsAnsweredWithAnError() throws Exception {
+        this.send("{\"msg\":\"hello\",\"times\":" + (MAX_TIMES + 1) + ",\"delay\":0}");
+        final List<JsonNode> replies = this.receive(1);
+        assertEquals(1, replies.size());
+        assertEquals(EchoRejection.TIMES_LIMIT.name(), replies.get(0).get("error").asText());
+        assertEquals(1L, this.echoScheduler.getMetrics().getRequestsRejected());
+        assertEquals(0L, this.echoScheduler.getMetrics().getRequests());
+    }
+
+    @Test
+    public void requestPacedAboveTheMaximumDelayIsAnsweredWithAnError() throws Exception {
+        this.send("{\"msg\":\"hello\",\"times\":2,\"delay\":" + Long.MAX_VALUE + "}");
+        final List<JsonNode> replies = this.receive(1);
+        assertEquals(1, replies.size());
+        assertEquals(EchoRejection.MAX_DELAY_LIMIT.name(), replies.get(0).get("error").asText());
+        assertEquals(1L, this.echoScheduler.getMetrics().getRequestsRejected());
+    }
+
+    @Test
+    public void invalidRequestIsCountedAsAnError() throws Exception {
+        this.send("{\"msg\":\"hello\",\"delay\":0}");
+        assertEquals(0, this.receive(0).size());
+        assertEquals(1L, this.echoScheduler.getMetrics().getRequestErrors());
+        assertTrue(this.channel.isActive());
+
+        this.send("{\"msg\":\"again\",\"times\":1,\"delay\":0}");
+        assertEquals("again", this.receive(1).get(0).get("msg").asText());
+    }
+
+    private void send(final String request) {
+        this.client.writeOutbound(new TextWebSocketFrame(request));
+        ByteBuf encoded;
+        while ((encoded = this.client.readOutbound()) != null) {
+            this.channel.writeInbound(encoded);
+        }
+    }
+
+    /**
+     * <p>Runs the channel's tasks until the given number of text frames has been written, or a number of rounds has passed</p>
+     */
+    private List<JsonNode> receive(final int expected) throws Exception {
+        final List<JsonNode> frames = new ArrayList<>();
+        for (int round = 0; round < 100 && (frames.size() < expected || round == 0); round++) {
+            this.channel.runPendingTasks();
+            this.channel.runScheduledPendingTasks();
+            Object outbound;
+            while ((outbound = this.channel.readOutbound()) != null) {
+                this.client.writeInbound(outbound);
+            }
+            WebSocketFrame frame;
+            while ((frame = this.client.readInbound()) != null) {
+                try {
+                    assertTrue(frame instanceof TextWebSocketFrame);
+                    frames.add(MAPPER.readTree(frame.content().toString(CharsetUtil.UTF_8)));
+                } finally {
+                    frame.release();
+                }
+            }
+            if (frames.size() < expected) {
+                TimeUnit.MILLISECONDS.sleep(1L);
+            }
+        }
+        return frames;
+    }
+}
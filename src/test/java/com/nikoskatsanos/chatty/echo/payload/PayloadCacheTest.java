@@ -0,0 +1,161 @@
+package com.nikoskatsanos.chatty.echo.payload;
+
+import com.nikoskatsanos.chatty.echo.engine.EchoRejectedException;
+import com.nikoskatsanos.chatty.echo.engine.EchoRejection;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author nikkatsa
+ */
+public class PayloadCacheTest {
+
+    private static final int MAX_PAYLOAD_BYTES = 1_024;
+
+    private final PayloadCache cache = new PayloadCache(null, MAX_PAYLOAD_BYTES, 2L * MAX_PAYLOAD_BYTES, 1_024);
+
+    @After
+    public void tearDown() {
+        this.cache.clear();
+    }
+
+    @Test
+    public void patternPayloadRepeatsThePattern() throws Exception {
+        final ByteBuf payload = this.cache.acquire(PayloadSpec.pattern(10, "abc"));
+        assertEquals("abcabcabca", payload.toString(CharsetUtil.UTF_8));
+        payload.release();
+    }
+
+    @Test
+    public void randomPayloadIsReproducibleBySeed() throws Exception {
+        final ByteBuf first = this.cache.acquire(PayloadSpec.random(100, 42L));
+        this.cache.clear();
+        final ByteBuf second = this.cache.acquire(PayloadSpec.random(100, 42L));
+        assertEquals(first, second);
+        first.release();
+        second.release();
+    }
+
+    @Test
+    public void cachedPayloadIsSharedNotCopied() throws Exception {
+        final PayloadSpec spec = PayloadSpec.pattern(MAX_PAYLOAD_BYTES, PayloadSpec.DEFAULT_PATTERN);
+        assertNull(this.cache.acquireCached(spec));
+        final ByteBuf generated = this.cache.acquire(spec);
+        final ByteBuf cached = this.cache.acquireCached(spec);
+        assertSame(generated.unwrap(), cached.unwrap());
+        assertEquals(1, this.cache.size());
+        assertEquals(MAX_PAYLOAD_BYTES, this.cache.getCachedBytes());
+        generated.release();
+        cached.release();
+    }
+
+    @Test
+    public void evictsPayloadsBeyondTheCacheSize() throws Exception {
+        final List<ByteBuf> payloads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            payloads.add(this.cache.acquire(PayloadSpec.random(MAX_PAYLOAD_BYTES, i)));
+        }
+        assertEquals(2, this.cache.size());
+        assertEquals(2L * MAX_PAYLOAD_BYTES, this.cache.getCachedBytes());
+        // the last payload cached is never the one evicted
+        final ByteBuf last = this.cache.acquireCached(PayloadSpec.random(MAX_PAYLOAD_BYTES, 2L));
+        assertSame(payloads.get(2).unwrap(), last.unwrap());
+        last.release();
+        // evicted payloads stay readable by whoever still holds them
+        for (final ByteBuf payload : payloads) {
+            assertEquals(MAX_PAYLOAD_BYTES, payload.readableBytes());
+            payload.getLong(0);
+            payload.release();
+        }
+    }
+
+    @Test
+    public void concurrentAcquisitionsCacheThePayloadOnce() throws Exception {
+        final PayloadSpec spec = PayloadSpec.pattern(MAX_PAYLOAD_BYTES, PayloadSpec.DEFAULT_PATTERN);
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<ByteBuf>> acquired = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                acquired.add(executor.submit(() -> {
+                    start.await();
+                    return this.cache.acquire(spec);
+                }));
+            }
+            start.countDown();
+            final ByteBuf first = acquired.get(0).get(5L, TimeUnit.SECONDS);
+            for (final Future<ByteBuf> payload : acquired) {
+                final ByteBuf duplicate = payload.get(5L, TimeUnit.SECONDS);
+                assertSame(first.unwrap(), duplicate.unwrap());
+                duplicate.release();
+            }
+            assertEquals(1, this.cache.size());
+            assertEquals(MAX_PAYLOAD_BYTES, this.cache.getCachedBytes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void asynchronousAcquisitionsGenerateThePayloadOnce() throws Exception {
+        final PayloadSpec spec = PayloadSpec.random(MAX_PAYLOAD_BYTES, 7L);
+        final List<CompletableFuture<ByteBuf>> acquired = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            acquired.add(this.cache.acquireAsync(spec));
+        }
+        final ByteBuf first = acquired.get(0).get(5L, TimeUnit.SECONDS);
+        for (final CompletableFuture<ByteBuf> payload : acquired) {
+            final ByteBuf duplicate = payload.get(5L, TimeUnit.SECONDS);
+            assertSame(first.unwrap(), duplicate.unwrap());
+            duplicate.release();
+        }
+        assertEquals(1, this.cache.size());
+    }
+
+    @Test
+    public void rejectsPayloadsAboveTheMaximumSize() throws Exception {
+        try {
+            this.cache.acquire(PayloadSpec.pattern(MAX_PAYLOAD_BYTES + 1, PayloadSpec.DEFAULT_PATTERN));
+            fail("Expected the payload to be rejected");
+        } catch (final EchoRejectedException e) {
+            assertEquals(EchoRejection.PAYLOAD_LIMIT, e.getRejection());
+        }
+        assertEquals(0, this.cache.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void payloadFilesNeedAPayloadDirectory() throws Exception {
+        this.cache.acquire(PayloadSpec.file("payload.bin"));
+    }
+
+    @Test
+    public void clearReleasesTheCachedPayloads() throws Exception {
+        final ByteBuf payload = this.cache.acquire(PayloadSpec.pattern(16, "x"));
+        final ByteBuf cached = payload.unwrap();
+        this.cache.clear();
+        assertEquals(0, this.cache.size());
+        assertEquals(0L, this.cache.getCachedBytes());
+        assertTrue(cached.refCnt() > 0);
+        payload.release();
+        assertEquals(0, cached.refCnt());
+    }
+}